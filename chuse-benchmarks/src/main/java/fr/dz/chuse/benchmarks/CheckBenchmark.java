@@ -0,0 +1,153 @@
+package fr.dz.chuse.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.dz.chuse.core.check.service.support.CheckServiceImpl;
+import fr.dz.chuse.core.data.ChangeSet;
+import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.repository.RepositoryConstants;
+import fr.dz.chuse.core.repository.support.JdbcCheckedFileRepository;
+
+/**
+ * Benchmarks of the check pipeline : finding the files, comparing them to the repository and
+ * updating it, on synthetic source trees, with an in-memory or a file-backed H2 database.
+ * Run them with : java -jar chuse-benchmarks/target/benchmarks.jar
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckBenchmark {
+
+    // Number of files of the source tree
+    @Param({ "100", "1000", "10000", "100000" })
+    private int fileCount;
+
+    // Where the H2 database is stored : MEMORY or FILE
+    @Param({ "MEMORY", "FILE" })
+    private String database;
+
+    private Path directory;
+
+    private JdbcConnectionPool dataSource;
+
+    private CheckServiceImpl checkService;
+
+    private SourceTree sourceTree;
+
+    // The files, as stored in the repository
+    private List<CheckedFile> files;
+
+    // The files, the content of one of them having been modified since they were stored
+    private List<CheckedFile> modifiedFiles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("chuse-benchmarks");
+        this.sourceTree = SourceTree.generate(this.directory, this.fileCount);
+        this.dataSource = JdbcConnectionPool.create("MEMORY".equals(this.database)
+                ? "jdbc:h2:mem:" + UUID.randomUUID()
+                : "jdbc:h2:" + this.directory.resolve("database").toAbsolutePath(), "sa", "");
+        this.checkService = new CheckServiceImpl(new JdbcCheckedFileRepository(this.dataSource,
+                null, JdbcCheckedFileRepository.DEFAULT_BATCH_SIZE,
+                RepositoryConstants.DEFAULT_SCOPE));
+
+        // Only the source tree is searched
+        this.checkService.setClassLoader(null);
+        this.checkService.setJarLookup(false);
+
+        // Store the files
+        this.files = new ArrayList<>(this.extractResources());
+        this.files.addAll(this.extractJavaClasses());
+        this.checkService.updateCheckedFiles(this.checkService.checkChanges(this.files));
+
+        // Modify the content of a class, then find the files again
+        this.sourceTree.modifyClass(this.sourceTree.getClasses().get(0));
+        this.modifiedFiles = new ArrayList<>(this.extractResources());
+        this.modifiedFiles.addAll(this.extractJavaClasses());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.dataSource.dispose();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Finds the resources of the source tree.
+     *
+     * @return The found files
+     */
+    @Benchmark
+    public List<CheckedFile> extractResources() {
+        return this.checkService.extractResources(this.sourceTree.getResources(),
+                Collections.singletonList(this.sourceTree.getResourcesFolder().toString()));
+    }
+
+    /**
+     * Finds the classes of the source tree.
+     *
+     * @return The found files
+     */
+    @Benchmark
+    public List<CheckedFile> extractJavaClasses() {
+        return this.checkService.extractJavaClasses(this.sourceTree.getClasses(),
+                Collections.singletonList(this.sourceTree.getJavaClassesFolder().toString()));
+    }
+
+    /**
+     * Checks unchanged files : the common case, decided by the root hash.
+     *
+     * @return The changes
+     */
+    @Benchmark
+    public ChangeSet checkChanges_unchanged() {
+        return this.checkService.checkChanges(this.files);
+    }
+
+    /**
+     * Checks files with a modified one : every file is compared to the repository.
+     *
+     * @return The changes
+     */
+    @Benchmark
+    public ChangeSet checkChanges_modified() {
+        return this.checkService.checkChanges(this.modifiedFiles);
+    }
+
+    /**
+     * Replaces all the files of the repository.
+     */
+    @Benchmark
+    public void updateCheckedFiles() {
+        this.checkService.updateCheckedFiles(this.files);
+    }
+}
@@ -0,0 +1,99 @@
+package fr.dz.chuse.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+/**
+ * Synthetic source tree : a resources folder with mapping files and a Java folder with entities,
+ * split in packages of a hundred files, like a real project.
+ */
+@Getter
+public final class SourceTree {
+
+    // Number of files in each package
+    private static final int FILES_PER_PACKAGE = 100;
+
+    private final Path resourcesFolder;
+
+    private final Path javaClassesFolder;
+
+    // Resource names, relative to the resources folder
+    private final List<String> resources = new ArrayList<>();
+
+    // Class names
+    private final List<String> classes = new ArrayList<>();
+
+    private SourceTree(final Path root) {
+        this.resourcesFolder = root.resolve("resources");
+        this.javaClassesFolder = root.resolve("java");
+    }
+
+    /**
+     * Generates a source tree, half of its files being resources and the other half classes.
+     *
+     * @param root
+     *            The folder to generate it in
+     * @param fileCount
+     *            The number of files
+     * @return The source tree
+     */
+    public static SourceTree generate(final Path root, final int fileCount) {
+        SourceTree tree = new SourceTree(root);
+        try {
+            for (int i = 0; i < fileCount; i++) {
+                String packageName = "bench.pkg" + i / FILES_PER_PACKAGE;
+                if (i % 2 == 0) {
+                    String resource = "mappings/" + packageName.replace('.', '/') + "/Mapping" + i
+                            + ".orm.xml";
+                    write(tree.resourcesFolder.resolve(resource), "<entity-mappings><entity "
+                            + "class=\"" + packageName + ".Mapped" + i + "\"/></entity-mappings>");
+                    tree.resources.add(resource);
+                } else {
+                    String className = packageName + ".Entity" + i;
+                    write(tree.javaClassesFolder
+                            .resolve(className.replace('.', '/') + ".java"), "package "
+                                    + packageName + ";\n\n@javax.persistence.Entity\npublic class "
+                                    + "Entity" + i + " {\n\n    @javax.persistence.Id\n"
+                                    + "    private Long id;\n}\n");
+                    tree.classes.add(className);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to generate the source tree in " + root, e);
+        }
+        return tree;
+    }
+
+    /**
+     * Modifies the content of a class, and moves its last modified time a second forward (so
+     * that the change is seen whatever the file system time resolution).
+     *
+     * @param className
+     *            The class name
+     */
+    public void modifyClass(final String className) {
+        Path file = this.javaClassesFolder.resolve(className.replace('.', '/') + ".java");
+        try {
+            Files.write(file, "// Modified\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(
+                    Files.getLastModifiedTime(file).toMillis() + TimeUnit.SECONDS.toMillis(1)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to modify " + file, e);
+        }
+    }
+
+    private static void write(final Path file, final String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
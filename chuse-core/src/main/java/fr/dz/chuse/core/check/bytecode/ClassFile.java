@@ -0,0 +1,70 @@
+package fr.dz.chuse.core.check.bytecode;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The structure of a compiled class, as far as Chuse needs it.
+ * Code is not kept : only the class hierarchy, the members and their annotations.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ClassFile {
+
+    // Class name, using '/' as separator
+    private final String name;
+
+    // Super class name (null for java/lang/Object)
+    private final String superName;
+
+    // Access flags
+    private final int access;
+
+    // Implemented interfaces names
+    private final List<String> interfaces;
+
+    private final List<Annotation> annotations;
+
+    private final List<Member> fields;
+
+    private final List<Member> methods;
+
+    /**
+     * A field or a method.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Member {
+
+        private final int access;
+
+        private final String name;
+
+        private final String descriptor;
+
+        // Generic signature (null if not generic)
+        private final String signature;
+
+        private final List<Annotation> annotations;
+    }
+
+    /**
+     * A runtime visible annotation.
+     */
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Annotation {
+
+        // Type descriptor, as Ljavax/persistence/Entity;
+        private final String type;
+
+        // Element values, in canonical form
+        private final String values;
+    }
+}
@@ -0,0 +1,271 @@
+package fr.dz.chuse.core.check.bytecode;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import fr.dz.chuse.core.check.bytecode.ClassFile.Annotation;
+import fr.dz.chuse.core.check.bytecode.ClassFile.Member;
+
+/**
+ * Minimal class file parser (JVMS chapter 4).
+ * It reads the constant pool, the class hierarchy, the fields and methods declarations and
+ * their runtime visible annotations. Code and every other attribute are skipped.
+ */
+public final class ClassFileParser {
+
+    private static final int MAGIC_NUMBER = 0xCAFEBABE;
+
+    // Constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private static final String SIGNATURE_ATTRIBUTE = "Signature";
+
+    private static final String ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleAnnotations";
+
+    /**
+     * Parses a class file.
+     *
+     * @param bytes
+     *            The class file content
+     * @return The class structure
+     */
+    public static ClassFile parse(final byte[] bytes) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (input.readInt() != MAGIC_NUMBER) {
+                throw new IllegalArgumentException("Not a class file");
+            }
+            // Minor and major versions
+            input.readUnsignedShort();
+            input.readUnsignedShort();
+            Object[] constants = readConstantPool(input);
+            int access = input.readUnsignedShort();
+            String name = className(constants, input.readUnsignedShort());
+            int superIndex = input.readUnsignedShort();
+            String superName = superIndex == 0 ? null : className(constants, superIndex);
+            int interfacesCount = input.readUnsignedShort();
+            List<String> interfaces = new ArrayList<>(interfacesCount);
+            for (int i = 0; i < interfacesCount; i++) {
+                interfaces.add(className(constants, input.readUnsignedShort()));
+            }
+            List<Member> fields = readMembers(input, constants);
+            List<Member> methods = readMembers(input, constants);
+            List<Annotation> annotations = new ArrayList<>();
+            readAttributes(input, constants, annotations);
+            return new ClassFile(name, superName, access, interfaces, annotations, fields,
+                    methods);
+        } catch (IOException | ClassCastException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid class file", e);
+        }
+    }
+
+    /**
+     * Reads the constant pool.
+     * Only UTF-8 strings, class references and numeric values are kept.
+     *
+     * @param input
+     *            The input
+     * @return The constants, by index
+     * @throws IOException
+     *            I/O Error
+     */
+    private static Object[] readConstantPool(final DataInputStream input) throws IOException {
+        int count = input.readUnsignedShort();
+        Object[] constants = new Object[count];
+        for (int i = 1; i < count; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+            case CONSTANT_UTF8:
+                constants[i] = input.readUTF();
+                break;
+            case CONSTANT_INTEGER:
+                constants[i] = input.readInt();
+                break;
+            case CONSTANT_FLOAT:
+                constants[i] = input.readFloat();
+                break;
+            case CONSTANT_LONG:
+                constants[i++] = input.readLong();
+                break;
+            case CONSTANT_DOUBLE:
+                constants[i++] = input.readDouble();
+                break;
+            case CONSTANT_CLASS:
+                constants[i] = new ClassReference(input.readUnsignedShort());
+                break;
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+                input.readUnsignedShort();
+                break;
+            case CONSTANT_FIELDREF:
+            case CONSTANT_METHODREF:
+            case CONSTANT_INTERFACE_METHODREF:
+            case CONSTANT_NAME_AND_TYPE:
+            case CONSTANT_DYNAMIC:
+            case CONSTANT_INVOKE_DYNAMIC:
+                input.readInt();
+                break;
+            case CONSTANT_METHOD_HANDLE:
+                input.readUnsignedByte();
+                input.readUnsignedShort();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+        return constants;
+    }
+
+    private static List<Member> readMembers(final DataInputStream input, final Object[] constants)
+            throws IOException {
+        int count = input.readUnsignedShort();
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int access = input.readUnsignedShort();
+            String name = (String) constants[input.readUnsignedShort()];
+            String descriptor = (String) constants[input.readUnsignedShort()];
+            List<Annotation> annotations = new ArrayList<>();
+            String signature = readAttributes(input, constants, annotations);
+            members.add(new Member(access, name, descriptor, signature, annotations));
+        }
+        return members;
+    }
+
+    /**
+     * Reads attributes, keeping only the signature and the runtime visible annotations.
+     *
+     * @param input
+     *            The input
+     * @param constants
+     *            The constant pool
+     * @param annotations
+     *            The annotations (filled by this method)
+     * @return The generic signature (null if there is none)
+     * @throws IOException
+     *            I/O Error
+     */
+    private static String readAttributes(final DataInputStream input, final Object[] constants,
+            final List<Annotation> annotations) throws IOException {
+        String signature = null;
+        int count = input.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String name = (String) constants[input.readUnsignedShort()];
+            int length = input.readInt();
+            if (SIGNATURE_ATTRIBUTE.equals(name)) {
+                signature = (String) constants[input.readUnsignedShort()];
+            } else if (ANNOTATIONS_ATTRIBUTE.equals(name)) {
+                int annotationsCount = input.readUnsignedShort();
+                for (int j = 0; j < annotationsCount; j++) {
+                    annotations.add(readAnnotation(input, constants));
+                }
+            } else {
+                skipFully(input, length);
+            }
+        }
+        return signature;
+    }
+
+    private static Annotation readAnnotation(final DataInputStream input,
+            final Object[] constants) throws IOException {
+        String type = (String) constants[input.readUnsignedShort()];
+        int count = input.readUnsignedShort();
+
+        // Elements are sorted, as their order doesn't matter
+        Map<String, String> values = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = (String) constants[input.readUnsignedShort()];
+            values.put(name, readElementValue(input, constants));
+        }
+        StringBuilder canonical = new StringBuilder();
+        values.forEach((name, value) -> canonical.append(canonical.length() == 0 ? "" : ",")
+                .append(name).append('=').append(value));
+        return new Annotation(type, canonical.toString());
+    }
+
+    private static String readElementValue(final DataInputStream input, final Object[] constants)
+            throws IOException {
+        int tag = input.readUnsignedByte();
+        switch (tag) {
+        case 'B':
+        case 'C':
+        case 'D':
+        case 'F':
+        case 'I':
+        case 'J':
+        case 'S':
+        case 'Z':
+        case 's':
+            return String.valueOf(constants[input.readUnsignedShort()]);
+        case 'e':
+            String enumType = (String) constants[input.readUnsignedShort()];
+            return enumType + '.' + constants[input.readUnsignedShort()];
+        case 'c':
+            return (String) constants[input.readUnsignedShort()];
+        case '@':
+            Annotation annotation = readAnnotation(input, constants);
+            return '@' + annotation.getType() + '(' + annotation.getValues() + ')';
+        case '[':
+            int count = input.readUnsignedShort();
+            List<String> elements = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                elements.add(readElementValue(input, constants));
+            }
+            return '{' + String.join(",", elements) + '}';
+        default:
+            throw new IllegalArgumentException("Unknown element value tag " + (char) tag);
+        }
+    }
+
+    private static String className(final Object[] constants, final int index) {
+        return (String) constants[((ClassReference) constants[index]).nameIndex];
+    }
+
+    private static void skipFully(final DataInputStream input, final int length)
+            throws IOException {
+        int skipped = 0;
+        while (skipped < length) {
+            int count = input.skipBytes(length - skipped);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of class file");
+            }
+            skipped += count;
+        }
+    }
+
+    /**
+     * A CONSTANT_Class entry, pointing to its name.
+     */
+    private static final class ClassReference {
+
+        private final int nameIndex;
+
+        private ClassReference(final int nameIndex) {
+            this.nameIndex = nameIndex;
+        }
+    }
+
+    private ClassFileParser() {
+    }
+}
@@ -0,0 +1,395 @@
+package fr.dz.chuse.core.check.bytecode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.check.bytecode.ClassFile.Annotation;
+import fr.dz.chuse.core.check.bytecode.ClassFile.Member;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Graph of the types the schema of entities depends on.
+ * Entities bytecode is scanned for the types they reference (super classes, fields types,
+ * converters...), and the ones having an impact on the schema are kept : mapped super classes,
+ * embeddables, entities, enums and attribute converters.
+ * The graph is cached in memory and in a file : a class is scanned again only if its compiled
+ * class has changed. Graphs are shared by the whole JVM, by file.
+ */
+public final class SchemaDependencyGraph {
+
+    /**
+     * Default location of the graph.
+     */
+    public static final String DEFAULT_PATH = "target/chuse/schema-dependencies.bin";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaDependencyGraph.class);
+
+    // Shared graphs, by absolute file path
+    private static final ConcurrentMap<Path, SchemaDependencyGraph> SHARED =
+            new ConcurrentHashMap<>();
+
+    // "CHUD"
+    private static final int MAGIC_NUMBER = 0x43485544;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    // Types in a descriptor or a signature
+    private static final Pattern TYPE_PATTERN = Pattern.compile("L([\\w/$]+)[;<]");
+
+    // Packages which can't contain application types
+    private static final List<String> PLATFORM_PACKAGES = Arrays.asList("java/", "javax/",
+            "jakarta/", "sun/", "jdk/");
+
+    // Annotations making a type relevant for the schema
+    private static final List<String> SCHEMA_TYPE_ANNOTATIONS = Arrays.asList(
+            "Ljavax/persistence/Entity;", "Ljavax/persistence/MappedSuperclass;",
+            "Ljavax/persistence/Embeddable;", "Ljavax/persistence/Converter;",
+            "Ljakarta/persistence/Entity;", "Ljakarta/persistence/MappedSuperclass;",
+            "Ljakarta/persistence/Embeddable;", "Ljakarta/persistence/Converter;");
+
+    private static final List<String> CONVERTER_INTERFACES = Arrays.asList(
+            "javax/persistence/AttributeConverter", "jakarta/persistence/AttributeConverter");
+
+    // Enum class access flag (not in java.lang.reflect.Modifier)
+    private static final int ACC_ENUM = 0x4000;
+
+    private final Path path;
+
+    // Scanned classes, by internal name (null until the file has been read)
+    private Map<String, Node> nodes;
+
+    private boolean modified;
+
+    private SchemaDependencyGraph(final Path path) {
+        super();
+        this.path = path;
+    }
+
+    /**
+     * Gets the shared graph stored in a file.
+     *
+     * @param path
+     *            The file storing the graph
+     * @return The graph
+     */
+    public static SchemaDependencyGraph get(final Path path) {
+        return SHARED.computeIfAbsent(path.toAbsolutePath().normalize(),
+                SchemaDependencyGraph::new);
+    }
+
+    /**
+     * Invalidates all the shared graphs, so that they are read again from their file.
+     */
+    public static void invalidateAll() {
+        SHARED.clear();
+    }
+
+    /**
+     * Finds the types the schema of the given classes depends on.
+     *
+     * @param classNames
+     *            The classes (entities), using '.' as separator
+     * @param classLoader
+     *            The class loader used to read the compiled classes
+     * @return The dependencies which are not in the given classes, using '.' as separator
+     */
+    public synchronized List<String> findDependencies(final Collection<String> classNames,
+            final ClassLoader classLoader) {
+        if (this.nodes == null) {
+            this.nodes = this.read();
+        }
+
+        // Walk the graph from the given classes, following only schema types
+        Set<String> roots = new LinkedHashSet<>();
+        classNames.forEach(className -> roots.add(className.replace('.', '/')));
+        Set<String> visited = new LinkedHashSet<>(roots);
+        Set<String> dependencies = new LinkedHashSet<>();
+        Deque<String> toBeVisited = new ArrayDeque<>(roots);
+        while (!toBeVisited.isEmpty()) {
+            String name = toBeVisited.poll();
+            Node node = this.getNode(name, classLoader);
+            if (node == null) {
+                continue;
+            }
+            if (!roots.contains(name)) {
+                if (!node.isSchemaType()) {
+                    continue;
+                }
+                dependencies.add(name.replace('/', '.'));
+            }
+            for (String reference : node.getReferences()) {
+                if (visited.add(reference)) {
+                    toBeVisited.add(reference);
+                }
+            }
+        }
+
+        if (this.modified) {
+            this.write();
+            this.modified = false;
+        }
+        return new ArrayList<>(dependencies);
+    }
+
+    /**
+     * Gets the node of a class, scanning it only if it has changed since it was scanned.
+     *
+     * @param name
+     *            The internal class name
+     * @param classLoader
+     *            The class loader
+     * @return The node, null if the class is not found
+     */
+    private Node getNode(final String name, final ClassLoader classLoader) {
+        URL url = classLoader.getResource(name + CLASS_FILE_EXTENSION);
+        if (url == null) {
+            return null;
+        }
+        Node node;
+        try {
+            String key = versionKey(url);
+            node = this.nodes.get(name);
+            if (node != null && node.getKey().equals(key)) {
+                return node;
+            }
+            try (InputStream input = url.openStream()) {
+                node = scan(key, readAll(input));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Unable to scan class {} : its dependencies will not be checked", name,
+                    e);
+            return null;
+        }
+        this.nodes.put(name, node);
+        this.modified = true;
+        return node;
+    }
+
+    /**
+     * Computes the key of the version of a compiled class : its last modified time and its size.
+     *
+     * @param url
+     *            The compiled class location
+     * @return The key
+     * @throws IOException
+     *             I/O Error
+     */
+    private static String versionKey(final URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(Paths.get(url.toURI()),
+                        BasicFileAttributes.class);
+                return attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Invalid class location " + url, e);
+            }
+        }
+
+        // Inside a JAR, the entry is described by the (cached) JAR central directory
+        URLConnection connection = url.openConnection();
+        return connection.getLastModified() + ":" + connection.getContentLengthLong();
+    }
+
+    /**
+     * Scans a compiled class.
+     *
+     * @param key
+     *            The key of the compiled class version
+     * @param bytes
+     *            The class file content
+     * @return The node
+     */
+    private static Node scan(final String key, final byte[] bytes) {
+        ClassFile classFile = ClassFileParser.parse(bytes);
+        Set<String> references = new LinkedHashSet<>();
+        if (classFile.getSuperName() != null) {
+            references.add(classFile.getSuperName());
+        }
+        addReferences(references, classFile.getAnnotations());
+        for (Member field : classFile.getFields()) {
+            if (!Modifier.isStatic(field.getAccess())
+                    && !Modifier.isTransient(field.getAccess())) {
+                addReferences(references, field.getDescriptor());
+                addReferences(references, field.getSignature());
+                addReferences(references, field.getAnnotations());
+            }
+        }
+        for (Member method : classFile.getMethods()) {
+            if (method.getAnnotations().stream().anyMatch(SchemaFingerprint::isSchemaAnnotation)) {
+                addReferences(references, method.getDescriptor());
+                addReferences(references, method.getSignature());
+                addReferences(references, method.getAnnotations());
+            }
+        }
+        references.remove(classFile.getName());
+        references.removeIf(
+                reference -> PLATFORM_PACKAGES.stream().anyMatch(reference::startsWith));
+
+        boolean schemaType = (classFile.getAccess() & ACC_ENUM) != 0
+                || classFile.getAnnotations().stream()
+                        .anyMatch(annotation -> SCHEMA_TYPE_ANNOTATIONS
+                                .contains(annotation.getType()))
+                || classFile.getInterfaces().stream().anyMatch(CONVERTER_INTERFACES::contains);
+        return new Node(key, schemaType, new ArrayList<>(references));
+    }
+
+    private static void addReferences(final Set<String> references,
+            final List<Annotation> annotations) {
+        for (Annotation annotation : annotations) {
+            addReferences(references, annotation.getValues());
+        }
+    }
+
+    private static void addReferences(final Set<String> references, final String descriptor) {
+        if (descriptor == null) {
+            return;
+        }
+        Matcher matcher = TYPE_PATTERN.matcher(descriptor);
+        while (matcher.find()) {
+            references.add(matcher.group(1));
+        }
+    }
+
+    private static byte[] readAll(final InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Reads the graph file.
+     * A missing, unknown or truncated file is considered as empty.
+     *
+     * @return The nodes, by internal class name
+     */
+    private Map<String, Node> read() {
+        Map<String, Node> read = new HashMap<>();
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(this.path)))) {
+            if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION) {
+                LOGGER.warn("Unknown schema dependencies file format {} : it will be re-built",
+                        this.path);
+                return read;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = input.readUTF();
+                String key = input.readUTF();
+                boolean schemaType = input.readBoolean();
+                int referencesCount = input.readInt();
+                List<String> references = new ArrayList<>(referencesCount);
+                for (int j = 0; j < referencesCount; j++) {
+                    references.add(input.readUTF());
+                }
+                read.put(name, new Node(key, schemaType, references));
+            }
+        } catch (NoSuchFileException e) {
+            return read;
+        } catch (EOFException e) {
+            LOGGER.warn("Truncated schema dependencies file {} : it will be re-built", this.path);
+            read.clear();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read schema dependencies file "
+                    + this.path, e);
+        }
+        return read;
+    }
+
+    /**
+     * Writes the graph file, atomically.
+     */
+    private void write() {
+        try {
+            Path directory = this.path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, this.path.getFileName().toString(),
+                    ".tmp");
+            try {
+                try (DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    output.writeInt(MAGIC_NUMBER);
+                    output.writeInt(FORMAT_VERSION);
+                    output.writeInt(this.nodes.size());
+                    for (Map.Entry<String, Node> entry : this.nodes.entrySet()) {
+                        output.writeUTF(entry.getKey());
+                        output.writeUTF(entry.getValue().getKey());
+                        output.writeBoolean(entry.getValue().isSchemaType());
+                        output.writeInt(entry.getValue().getReferences().size());
+                        for (String reference : entry.getValue().getReferences()) {
+                            output.writeUTF(reference);
+                        }
+                    }
+                }
+                try {
+                    Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, this.path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write schema dependencies file "
+                    + this.path, e);
+        }
+    }
+
+    /**
+     * A scanned class.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class Node {
+
+        // Version of the compiled class when it has been scanned (last modified time and size)
+        private final String key;
+
+        // Whether the class itself has an impact on the schema
+        private final boolean schemaType;
+
+        // Referenced types, by internal name
+        private final List<String> references;
+    }
+}
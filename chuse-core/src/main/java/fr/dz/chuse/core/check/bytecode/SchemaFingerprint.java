@@ -0,0 +1,126 @@
+package fr.dz.chuse.core.check.bytecode;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.dz.chuse.core.check.bytecode.ClassFile.Annotation;
+import fr.dz.chuse.core.check.bytecode.ClassFile.Member;
+import fr.dz.chuse.core.utils.HashUtils;
+
+/**
+ * Fingerprint of the schema-relevant structure of a compiled class.
+ * It covers the class hierarchy, the persistent fields and their types, and the persistence
+ * annotations (JPA, Hibernate, Bean Validation) with their values. Method bodies, comments and
+ * helper methods are ignored, so that a code-only edit doesn't change the fingerprint.
+ */
+public final class SchemaFingerprint {
+
+    /**
+     * Prefix of the schema fingerprints, which distinguishes them from content hashes.
+     */
+    public static final String PREFIX = "schema:";
+
+    // Annotations packages having an impact on the schema
+    private static final List<String> SCHEMA_ANNOTATIONS_PACKAGES = Arrays.asList(
+            "Ljavax/persistence/", "Ljakarta/persistence/", "Lorg/hibernate/annotations/",
+            "Ljavax/validation/constraints/", "Ljakarta/validation/constraints/",
+            "Lorg/hibernate/validator/constraints/");
+
+    // Prefix of the members added by Hibernate bytecode enhancement
+    private static final String HIBERNATE_ENHANCEMENT_PREFIX = "$$_hibernate_";
+
+    // Synthetic and enum constant access flags (not in java.lang.reflect.Modifier)
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final int ACC_ENUM = 0x4000;
+
+    /**
+     * Computes the schema fingerprint of a class file.
+     *
+     * @param path
+     *            The class file
+     * @return The fingerprint
+     */
+    public static String of(final Path path) {
+        try {
+            return of(ClassFileParser.parse(Files.readAllBytes(path)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read class file " + path, e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unable to parse class file " + path, e);
+        }
+    }
+
+    /**
+     * Computes the schema fingerprint of a class.
+     *
+     * @param classFile
+     *            The class structure
+     * @return The fingerprint
+     */
+    public static String of(final ClassFile classFile) {
+        StringBuilder canonical = new StringBuilder();
+        canonical.append("class ").append(classFile.getName()).append(" extends ")
+                .append(classFile.getSuperName()).append('\n');
+        appendAnnotations(canonical, classFile.getAnnotations());
+
+        // Instance fields are persistent unless they are transient, enum constants are values
+        for (Member field : classFile.getFields()) {
+            boolean enumConstant = (field.getAccess() & ACC_ENUM) != 0;
+            if (isGenerated(field) || Modifier.isStatic(field.getAccess()) && !enumConstant) {
+                continue;
+            }
+            canonical.append(enumConstant ? "constant " : "field ").append(field.getName())
+                    .append(' ').append(field.getDescriptor()).append(' ')
+                    .append(field.getSignature())
+                    .append(Modifier.isTransient(field.getAccess()) ? " transient" : "")
+                    .append('\n');
+            appendAnnotations(canonical, field.getAnnotations());
+        }
+
+        // Methods matter only with persistence annotations (property access)
+        for (Member method : classFile.getMethods()) {
+            if (isGenerated(method) || method.getAnnotations().stream()
+                    .noneMatch(SchemaFingerprint::isSchemaAnnotation)) {
+                continue;
+            }
+            canonical.append("method ").append(method.getName()).append(' ')
+                    .append(method.getDescriptor()).append(' ').append(method.getSignature())
+                    .append('\n');
+            appendAnnotations(canonical, method.getAnnotations());
+        }
+        return PREFIX + HashUtils.hash(canonical.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks if an annotation has an impact on the schema.
+     *
+     * @param annotation
+     *            The annotation
+     * @return true if the annotation belongs to a persistence package
+     */
+    public static boolean isSchemaAnnotation(final Annotation annotation) {
+        return SCHEMA_ANNOTATIONS_PACKAGES.stream()
+                .anyMatch(annotationPackage -> annotation.getType().startsWith(annotationPackage));
+    }
+
+    private static boolean isGenerated(final Member member) {
+        return (member.getAccess() & ACC_SYNTHETIC) != 0
+                || member.getName().startsWith(HIBERNATE_ENHANCEMENT_PREFIX);
+    }
+
+    private static void appendAnnotations(final StringBuilder canonical,
+            final List<Annotation> annotations) {
+        annotations.stream().filter(SchemaFingerprint::isSchemaAnnotation)
+                .forEach(annotation -> canonical.append('@').append(annotation.getType())
+                        .append('(').append(annotation.getValues()).append(")\n"));
+    }
+
+    private SchemaFingerprint() {
+    }
+}
@@ -0,0 +1,183 @@
+package fr.dz.chuse.core.check.database;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.utils.HashUtils;
+
+/**
+ * Fingerprint of the live database schema, read from the JDBC metadata.
+ * It covers the tables of the persistence unit schema (see {@link DatabaseSchema}), their columns
+ * (with type, size and nullability), their primary keys and their indexes. The other schemas and
+ * the Chuse tables are ignored, as they are not built by the persistence unit.
+ */
+public final class DatabaseFingerprint {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseFingerprint.class);
+
+    // Prefix of the Chuse tables
+    private static final String CHUSE_TABLES_PREFIX = "CHUSE_";
+
+    private static final String[] TABLE_TYPES = { "TABLE" };
+
+    /**
+     * Computes the fingerprint of the current schema of the database.
+     *
+     * @param dataSource
+     *            The database
+     * @return The fingerprint
+     */
+    public static String of(final DataSource dataSource) {
+        return of(dataSource, null);
+    }
+
+    /**
+     * Computes the fingerprint of a schema of the database.
+     *
+     * @param dataSource
+     *            The database
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null to use the current schema)
+     * @return The fingerprint
+     */
+    public static String of(final DataSource dataSource, final String defaultSchema) {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            DatabaseSchema schema = DatabaseSchema.of(connection, defaultSchema);
+            String schemaPattern = schema.getSchemaPattern(metaData);
+            List<String> lines = new ArrayList<>();
+
+            // Tables of the schema
+            List<String[]> tables = new ArrayList<>();
+            Set<String> qualifiedNames = new HashSet<>();
+            try (ResultSet rs = metaData.getTables(schema.getCatalog(), schemaPattern, "%",
+                    TABLE_TYPES)) {
+                while (rs.next()) {
+                    String table = rs.getString("TABLE_NAME");
+                    if (schema.contains(rs.getString("TABLE_CAT"), rs.getString("TABLE_SCHEM"))
+                            && !table.toUpperCase(Locale.ROOT).startsWith(CHUSE_TABLES_PREFIX)) {
+                        tables.add(new String[] { rs.getString("TABLE_CAT"),
+                                rs.getString("TABLE_SCHEM"), table });
+                        qualifiedNames.add(rs.getString("TABLE_SCHEM") + "." + table);
+                        lines.add("table " + rs.getString("TABLE_SCHEM") + "." + table);
+                    }
+                }
+            }
+
+            // Primary keys and indexes of the whole schema at once, if the driver allows it,
+            // otherwise table by table
+            List<String> keyLines = null;
+            if (!tables.isEmpty()) {
+                keyLines = readKeys(metaData, schema.getCatalog(), schema.getSchema(), null,
+                        qualifiedNames);
+            }
+            if (keyLines != null) {
+                lines.addAll(keyLines);
+            } else {
+                for (String[] table : tables) {
+                    keyLines = readKeys(metaData, table[0], table[1], table[2], qualifiedNames);
+                    if (keyLines == null) {
+                        throw new SQLException("Unable to read the keys of table " + table[2]);
+                    }
+                    lines.addAll(keyLines);
+                }
+            }
+
+            // Columns of all the tables, at once
+            try (ResultSet rs = metaData.getColumns(schema.getCatalog(), schemaPattern, "%",
+                    "%")) {
+                while (rs.next()) {
+                    String qualifiedName = rs.getString("TABLE_SCHEM") + "."
+                            + rs.getString("TABLE_NAME");
+                    if (qualifiedNames.contains(qualifiedName)) {
+                        lines.add("column " + qualifiedName + " "
+                                + rs.getString("COLUMN_NAME") + " " + rs.getString("TYPE_NAME")
+                                + " " + rs.getInt("COLUMN_SIZE") + " "
+                                + rs.getInt("DECIMAL_DIGITS") + " " + rs.getInt("NULLABLE"));
+                    }
+                }
+            }
+
+            // The metadata order is not the same for every driver
+            Collections.sort(lines);
+            return HashUtils.hash(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read the database metadata", e);
+        }
+    }
+
+    /**
+     * Reads the primary keys and the indexes of a table, or of all the tables of a schema.
+     * Drivers are not required to support a null table name : they may fail or return nothing,
+     * so that a schema without any primary key or index is also read table by table.
+     *
+     * @param metaData
+     *            The database metadata
+     * @param catalog
+     *            The catalog
+     * @param schema
+     *            The schema
+     * @param table
+     *            The table name (null for all the tables of the schema)
+     * @param qualifiedNames
+     *            The fingerprinted tables, qualified by their schema
+     * @return The fingerprint lines, null if nothing could be read for a whole schema
+     * @throws SQLException
+     *             SQL Error, while reading a single table
+     */
+    private static List<String> readKeys(final DatabaseMetaData metaData, final String catalog,
+            final String schema, final String table, final Set<String> qualifiedNames)
+            throws SQLException {
+        List<String> lines = new ArrayList<>();
+        boolean foundKeys = false;
+        boolean foundIndexes = false;
+        try {
+            try (ResultSet rs = metaData.getPrimaryKeys(catalog, schema, table)) {
+                while (rs.next()) {
+                    foundKeys = true;
+                    String prefix = rs.getString("TABLE_SCHEM") + "." + rs.getString("TABLE_NAME");
+                    if (qualifiedNames.contains(prefix)) {
+                        lines.add("pk " + prefix + " " + rs.getString("COLUMN_NAME") + " "
+                                + rs.getShort("KEY_SEQ"));
+                    }
+                }
+            }
+            try (ResultSet rs = metaData.getIndexInfo(catalog, schema, table, false, true)) {
+                while (rs.next()) {
+                    foundIndexes = true;
+                    String prefix = rs.getString("TABLE_SCHEM") + "." + rs.getString("TABLE_NAME");
+                    if (qualifiedNames.contains(prefix)) {
+                        lines.add("index " + prefix + " " + rs.getString("INDEX_NAME") + " "
+                                + rs.getBoolean("NON_UNIQUE") + " " + rs.getString("COLUMN_NAME")
+                                + " " + rs.getShort("ORDINAL_POSITION"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            if (table != null) {
+                throw e;
+            }
+            LOGGER.debug("Unable to read the keys of the whole schema : "
+                    + "they will be read table by table", e);
+            return null;
+        }
+        return foundKeys && foundIndexes || table != null ? lines : null;
+    }
+
+    private DatabaseFingerprint() {
+    }
+}
@@ -0,0 +1,139 @@
+package fr.dz.chuse.core.check.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Objects;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The schema holding the tables of a persistence unit : its default schema
+ * (hibernate.default_schema) if any, the current schema of the connection otherwise.
+ * Databases without schemas (MySQL, MariaDB) use their catalog instead.
+ * The database metadata, the rebuilds and the snapshots are limited to this schema, so that the
+ * other schemas of the database are left untouched.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class DatabaseSchema {
+
+    // Catalog of the tables (null if unknown)
+    private final String catalog;
+
+    // Schema of the tables (null if the database has no schemas, or if it is unknown)
+    private final String schema;
+
+    private DatabaseSchema(final String catalog, final String schema) {
+        super();
+        this.catalog = catalog;
+        this.schema = schema;
+    }
+
+    /**
+     * Determines the schema of a persistence unit.
+     *
+     * @param connection
+     *            A connection to the database
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null or empty to use the current
+     *            schema of the connection), quoted if it is case sensitive
+     * @return The schema
+     * @throws SQLException
+     *             SQL Error
+     */
+    public static DatabaseSchema of(final Connection connection, final String defaultSchema)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String configured = defaultSchema == null || defaultSchema.trim().isEmpty() ? null
+                : toStoredCase(metaData, defaultSchema.trim());
+        if (!metaData.supportsSchemasInTableDefinitions()) {
+            return new DatabaseSchema(configured != null ? configured : connection.getCatalog(),
+                    null);
+        }
+        return new DatabaseSchema(connection.getCatalog(),
+                configured != null ? configured : currentSchema(connection));
+    }
+
+    /**
+     * Gets the schema as a metadata search pattern, its wildcards being escaped.
+     *
+     * @param metaData
+     *            The database metadata
+     * @return The pattern, null if the schema is unknown
+     * @throws SQLException
+     *             SQL Error
+     */
+    public String getSchemaPattern(final DatabaseMetaData metaData) throws SQLException {
+        if (this.schema == null) {
+            return null;
+        }
+        String escape = metaData.getSearchStringEscape();
+        if (escape == null || escape.isEmpty()) {
+            return this.schema;
+        }
+        return this.schema.replace(escape, escape + escape).replace("_", escape + "_")
+                .replace("%", escape + "%");
+    }
+
+    /**
+     * Checks if a table, as described by the database metadata, belongs to the schema.
+     *
+     * @param tableCatalog
+     *            The catalog of the table
+     * @param tableSchema
+     *            The schema of the table
+     * @return true if it belongs to the schema
+     */
+    public boolean contains(final String tableCatalog, final String tableSchema) {
+        return (this.catalog == null || tableCatalog == null
+                || this.catalog.equals(tableCatalog))
+                && (this.schema == null || this.schema.equals(tableSchema));
+    }
+
+    /**
+     * Converts an identifier to the case the database stores it with, unless it is quoted.
+     *
+     * @param metaData
+     *            The database metadata
+     * @param identifier
+     *            The identifier
+     * @return The stored identifier
+     * @throws SQLException
+     *             SQL Error
+     */
+    public static String toStoredCase(final DatabaseMetaData metaData, final String identifier)
+            throws SQLException {
+        String quote = Objects.toString(metaData.getIdentifierQuoteString(), "").trim();
+        if (identifier.length() > 1 && (identifier.charAt(0) == '"' || identifier.charAt(0) == '`'
+                || !quote.isEmpty() && identifier.startsWith(quote))) {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return identifier.toUpperCase(Locale.ROOT);
+        }
+        if (metaData.storesLowerCaseIdentifiers()) {
+            return identifier.toLowerCase(Locale.ROOT);
+        }
+        return identifier;
+    }
+
+    /**
+     * Gets the current schema of a connection.
+     *
+     * @param connection
+     *            The connection
+     * @return The schema, null if the driver doesn't give it
+     */
+    private static String currentSchema(final Connection connection) {
+        try {
+            return connection.getSchema();
+        } catch (SQLException | AbstractMethodError e) {
+            return null;
+        }
+    }
+}
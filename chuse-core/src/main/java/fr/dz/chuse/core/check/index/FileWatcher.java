@@ -0,0 +1,313 @@
+package fr.dz.chuse.core.check.index;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Watches the directories of the checked files, for the whole JVM, so that a JVM re-creating
+ * its persistence unit many times (development restarts, IDE test runners...) knows that none
+ * of the checked files has changed without reading their attributes nor the repository.
+ * Each event increments a generation : a consistent state (a baseline) is saved with the
+ * generation it has been read at, and is still valid as long as none of its files got an event
+ * since. An overflow (lost events) invalidates all the baselines.
+ * As events are delivered asynchronously (and only polled every few seconds on some platforms,
+ * macOS for instance), a baseline without any event is only trusted once the attributes of its
+ * files have been read again : the events spare the folders listing and the repository reading,
+ * not the attributes reading. Events older than all the baselines are pruned.
+ */
+public final class FileWatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileWatcher.class);
+
+    // The shared watcher (null until it is used)
+    private static volatile FileWatcher shared;
+
+    private static final int MIN_PRUNE_THRESHOLD = 1024;
+
+    private final WatchService watchService;
+
+    // Watched directories, by absolute path
+    private final ConcurrentMap<Path, WatchKey> directories = new ConcurrentHashMap<>();
+
+    // Generation of the last event of each file, by absolute path
+    private final ConcurrentMap<Path, Long> events = new ConcurrentHashMap<>();
+
+    // Saved baselines, by key
+    private final ConcurrentMap<String, Baseline> baselines = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    // Generation of the last overflow (or of the last directory which can't be watched anymore)
+    private volatile long overflowGeneration = -1;
+
+    // Number of events from which they are pruned
+    private volatile int pruneThreshold = MIN_PRUNE_THRESHOLD;
+
+    private FileWatcher(final WatchService watchService) {
+        super();
+        this.watchService = watchService;
+    }
+
+    /**
+     * Gets the shared watcher, starting it if necessary.
+     *
+     * @return The watcher
+     */
+    public static FileWatcher get() {
+        FileWatcher watcher = shared;
+        if (watcher == null) {
+            synchronized (FileWatcher.class) {
+                watcher = shared;
+                if (watcher == null) {
+                    watcher = start();
+                    shared = watcher;
+                }
+            }
+        }
+        return watcher;
+    }
+
+    /**
+     * Starts a new watcher.
+     *
+     * @return The watcher
+     */
+    static FileWatcher start() {
+        FileWatcher watcher;
+        try {
+            watcher = new FileWatcher(FileSystems.getDefault().newWatchService());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to watch files", e);
+        }
+        Thread thread = new Thread(watcher::run, "chuse-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    /**
+     * Watches the directories of the given files, if they are not already.
+     *
+     * @param files
+     *            The files
+     */
+    public void watch(final Collection<Path> files) {
+        for (Path file : files) {
+            Path directory = file.toAbsolutePath().normalize().getParent();
+            if (directory == null || this.directories.containsKey(directory)
+                    || !Files.isDirectory(directory)) {
+                continue;
+            }
+            this.directories.computeIfAbsent(directory, key -> {
+                try {
+                    return key.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to watch " + key, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the current generation, to be saved with a baseline read after it.
+     *
+     * @return The generation
+     */
+    public long generation() {
+        return this.generation.get();
+    }
+
+    /**
+     * Saves a baseline, with the current attributes of its files.
+     *
+     * @param key
+     *            The baseline key
+     * @param fingerprint
+     *            What the baseline is about (the checked files names for instance)
+     * @param files
+     *            The files of the baseline
+     * @param baselineGeneration
+     *            The generation the files have been read after
+     */
+    public void saveBaseline(final String key, final String fingerprint,
+            final Collection<Path> files, final long baselineGeneration) {
+        List<Path> paths = files.stream().map(file -> file.toAbsolutePath().normalize())
+                .collect(Collectors.toList());
+        List<BasicFileAttributes> attributes = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            BasicFileAttributes fileAttributes = readAttributes(path);
+            if (fileAttributes == null) {
+                LOGGER.debug("{} can't be read anymore : baseline not saved", path);
+                this.removeBaseline(key);
+                return;
+            }
+            attributes.add(fileAttributes);
+        }
+        this.baselines.put(key,
+                new Baseline(fingerprint, paths, attributes, baselineGeneration));
+        this.prune();
+    }
+
+    /**
+     * Removes a baseline.
+     *
+     * @param key
+     *            The baseline key
+     */
+    public void removeBaseline(final String key) {
+        if (this.baselines.remove(key) != null) {
+            this.prune();
+        }
+    }
+
+    /**
+     * Checks if a baseline has been saved.
+     *
+     * @param key
+     *            The baseline key
+     * @return true if there is a baseline
+     */
+    public boolean hasBaseline(final String key) {
+        return this.baselines.containsKey(key);
+    }
+
+    /**
+     * Checks if a baseline is still valid : if it has the same fingerprint, if none of its files
+     * got an event since it has been saved, and if its files still have the same attributes
+     * (their events may not have been delivered yet).
+     * The folders are never listed, and the files never read.
+     *
+     * @param key
+     *            The baseline key
+     * @param fingerprint
+     *            The expected fingerprint
+     * @return true if the baseline is still valid
+     */
+    public boolean isValid(final String key, final String fingerprint) {
+        Baseline baseline = this.baselines.get(key);
+        if (baseline == null || !baseline.fingerprint.equals(fingerprint)) {
+            return false;
+        }
+        if (this.generation.get() != baseline.generation) {
+            if (this.overflowGeneration > baseline.generation) {
+                return false;
+            }
+            if (baseline.files.stream().map(this.events::get)
+                    .anyMatch(event -> event != null && event > baseline.generation)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < baseline.files.size(); i++) {
+            BasicFileAttributes attributes = readAttributes(baseline.files.get(i));
+            BasicFileAttributes baselineAttributes = baseline.attributes.get(i);
+            if (attributes == null
+                    || !attributes.lastModifiedTime().equals(
+                            baselineAttributes.lastModifiedTime())
+                    || attributes.size() != baselineAttributes.size()) {
+                LOGGER.debug("{} has changed before its event has been delivered",
+                        baseline.files.get(i));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of events kept to check the baselines.
+     *
+     * @return The number of events
+     */
+    int eventCount() {
+        return this.events.size();
+    }
+
+    /**
+     * Prunes the events which can't invalidate any baseline anymore : the ones older than all
+     * the baselines (all of them, if there is no baseline).
+     */
+    private void prune() {
+        long oldest = this.baselines.values().stream().mapToLong(baseline -> baseline.generation)
+                .min().orElse(Long.MAX_VALUE);
+        this.events.values().removeIf(event -> event <= oldest);
+        this.pruneThreshold = Math.max(MIN_PRUNE_THRESHOLD, this.events.size() * 2);
+    }
+
+    private static BasicFileAttributes readAttributes(final Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Handles the events, until the watch service is closed.
+     */
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = this.watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    LOGGER.debug("File events have been lost in {}", directory);
+                    this.overflowGeneration = this.generation.incrementAndGet();
+                } else {
+                    this.events.put(directory.resolve((Path) event.context()),
+                            this.generation.incrementAndGet());
+                }
+            }
+            if (!key.reset()) {
+
+                // The directory can't be watched anymore (deleted for instance)
+                this.directories.remove(directory);
+                this.overflowGeneration = this.generation.incrementAndGet();
+            }
+            if (this.events.size() >= this.pruneThreshold) {
+                this.prune();
+            }
+        }
+    }
+
+    /**
+     * A consistent state, with the generation it has been read after.
+     */
+    @AllArgsConstructor
+    private static final class Baseline {
+
+        private final String fingerprint;
+
+        private final List<Path> files;
+
+        // Attributes of the files, when the baseline has been saved
+        private final List<BasicFileAttributes> attributes;
+
+        private final long generation;
+    }
+}
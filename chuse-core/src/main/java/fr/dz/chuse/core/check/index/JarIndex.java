@@ -0,0 +1,126 @@
+package fr.dz.chuse.core.check.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Index of the entries of a JAR, read from its ZIP central directory.
+ * Entries content is never read nor extracted : CRC-32, size and time are enough to detect
+ * changes. Indexes are shared by the whole JVM and reused as long as the JAR itself has not
+ * been modified.
+ */
+public final class JarIndex {
+
+    // Shared indexes, by absolute JAR path
+    private static final ConcurrentMap<Path, JarIndex> SHARED = new ConcurrentHashMap<>();
+
+    // JAR attributes when it has been indexed
+    private final FileTime lastModifiedTime;
+
+    private final long size;
+
+    // Entries, by name
+    private final Map<String, Entry> entries;
+
+    private JarIndex(final FileTime lastModifiedTime, final long size,
+            final Map<String, Entry> entries) {
+        super();
+        this.lastModifiedTime = lastModifiedTime;
+        this.size = size;
+        this.entries = entries;
+    }
+
+    /**
+     * Gets the shared index of a JAR.
+     * The central directory is read only if the JAR has never been indexed, or if it has been
+     * modified since.
+     *
+     * @param jar
+     *            The JAR
+     * @return The index
+     */
+    public static JarIndex get(final Path jar) {
+        Path absoluteJar = jar.toAbsolutePath().normalize();
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(absoluteJar,
+                    BasicFileAttributes.class);
+            return SHARED.compute(absoluteJar, (key, index) -> {
+                if (index != null && index.lastModifiedTime.equals(attributes.lastModifiedTime())
+                        && index.size == attributes.size()) {
+                    return index;
+                }
+                return build(key, attributes);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to index JAR " + absoluteJar, e);
+        }
+    }
+
+    /**
+     * Finds an entry in the index.
+     *
+     * @param name
+     *            The entry name
+     * @return The entry, if it exists
+     */
+    public Optional<Entry> find(final String name) {
+        return Optional.ofNullable(this.entries.get(name));
+    }
+
+    /**
+     * Builds the index of a JAR.
+     *
+     * @param jar
+     *            The absolute JAR path
+     * @param attributes
+     *            The JAR attributes
+     * @return The index
+     */
+    private static JarIndex build(final Path jar, final BasicFileAttributes attributes) {
+        Map<String, Entry> entries = new HashMap<>();
+        try (ZipFile zip = new ZipFile(jar.toFile())) {
+            Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                if (!zipEntry.isDirectory()) {
+                    entries.put(zipEntry.getName(), new Entry(zipEntry.getCrc(),
+                            zipEntry.getSize(), zipEntry.getTime()));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read JAR " + jar, e);
+        }
+        return new JarIndex(attributes.lastModifiedTime(), attributes.size(), entries);
+    }
+
+    /**
+     * A JAR entry, as described by the central directory.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Entry {
+
+        // CRC-32 of the uncompressed content
+        private final long crc;
+
+        // Uncompressed size
+        private final long size;
+
+        // Last modification time, in milliseconds since the epoch
+        private final long time;
+    }
+}
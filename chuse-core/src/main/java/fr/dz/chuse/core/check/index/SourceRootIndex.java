@@ -0,0 +1,180 @@
+package fr.dz.chuse.core.check.index;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import lombok.Getter;
+
+/**
+ * Index of all the files of a source root (src/main/java, src/test/resources...).
+ * The root is walked once, and files are then found with in-memory lookups.
+ * Indexes are shared by the whole JVM : an index is reused as long as none of its directories
+ * has been modified (which is the case when a file is created, deleted or renamed). A reused
+ * index reads again the attributes of the files it finds, as their content may have changed.
+ */
+public final class SourceRootIndex {
+
+    // Shared indexes, by absolute root path
+    private static final ConcurrentMap<Path, SourceRootIndex> SHARED = new ConcurrentHashMap<>();
+
+    // The absolute root path
+    @Getter
+    private final Path root;
+
+    // Files attributes read while walking the root, by path relative to the root
+    private final Map<String, BasicFileAttributes> files;
+
+    // Directories last modified times read while walking the root (null if the root is missing)
+    private final Map<Path, FileTime> directories;
+
+    // Whether the index has already been used, so that attributes may be outdated
+    private volatile boolean reused;
+
+    private SourceRootIndex(final Path root, final Map<String, BasicFileAttributes> files,
+            final Map<Path, FileTime> directories) {
+        super();
+        this.root = root;
+        this.files = files;
+        this.directories = directories;
+    }
+
+    /**
+     * Gets the shared index of a source root.
+     * The root is walked only if it has never been, or if its structure has changed since.
+     *
+     * @param root
+     *            The source root
+     * @return The index
+     */
+    public static SourceRootIndex get(final Path root) {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        return SHARED.compute(absoluteRoot, (key, index) -> {
+            if (index != null && index.isUpToDate()) {
+                index.reused = true;
+                return index;
+            }
+            return build(key);
+        });
+    }
+
+    /**
+     * Removes all the shared indexes, so that roots are walked again.
+     */
+    public static void invalidateAll() {
+        SHARED.clear();
+    }
+
+    /**
+     * Finds a file in the index.
+     *
+     * @param relativePath
+     *            The file path, relative to the root and using '/' as separator
+     * @return The file attributes, if it exists
+     */
+    public Optional<BasicFileAttributes> find(final String relativePath) {
+        BasicFileAttributes attributes = this.files.get(relativePath);
+        if (attributes == null || !this.reused) {
+            return Optional.ofNullable(attributes);
+        }
+        Path path = this.root.resolve(relativePath);
+        try {
+            return Optional.of(Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read attributes of file " + path, e);
+        }
+    }
+
+    /**
+     * Counts the indexed files.
+     *
+     * @return The number of files
+     */
+    public int size() {
+        return this.files.size();
+    }
+
+    /**
+     * Checks if the root structure has changed since it has been walked.
+     *
+     * @return true if no directory has been created, deleted or modified
+     */
+    private boolean isUpToDate() {
+        for (Map.Entry<Path, FileTime> directory : this.directories.entrySet()) {
+            FileTime lastModifiedTime;
+            try {
+                lastModifiedTime = Files.getLastModifiedTime(directory.getKey());
+            } catch (IOException e) {
+                lastModifiedTime = null;
+            }
+            if (!Objects.equals(lastModifiedTime, directory.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the index of a root by walking it.
+     *
+     * @param root
+     *            The absolute root path
+     * @return The index
+     */
+    private static SourceRootIndex build(final Path root) {
+        if (!Files.isDirectory(root)) {
+            return new SourceRootIndex(root, Collections.emptyMap(),
+                    Collections.singletonMap(root, null));
+        }
+        Map<String, BasicFileAttributes> files = new HashMap<>();
+        Map<Path, FileTime> directories = new HashMap<>();
+        try {
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<Path>() {
+
+                        @Override
+                        public FileVisitResult preVisitDirectory(final Path directory,
+                                final BasicFileAttributes attributes) {
+                            directories.put(directory, attributes.lastModifiedTime());
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(final Path file,
+                                final BasicFileAttributes attributes) {
+                            if (attributes.isRegularFile()) {
+                                files.put(root.relativize(file).toString().replace('\\', '/'),
+                                        attributes);
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(final Path file,
+                                final IOException e) {
+                            // Broken links and file system loops are ignored
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to index source root " + root, e);
+        }
+        return new SourceRootIndex(root, files, directories);
+    }
+}
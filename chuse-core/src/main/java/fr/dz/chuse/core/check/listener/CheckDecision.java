@@ -0,0 +1,32 @@
+package fr.dz.chuse.core.check.listener;
+
+/**
+ * What has been decided once the files have been checked.
+ */
+public enum CheckDecision {
+
+    /**
+     * Nothing has changed : the database is kept as is.
+     */
+    UNCHANGED,
+
+    /**
+     * The database has been re-built by the configured hbm2ddl.auto strategy.
+     */
+    REBUILD,
+
+    /**
+     * Only the tables of the changed entities have been re-built.
+     */
+    PARTIAL_REBUILD,
+
+    /**
+     * Only the data has been reloaded, keeping the schema.
+     */
+    DATA_RELOAD,
+
+    /**
+     * A snapshot of the database has been restored.
+     */
+    SNAPSHOT_RESTORE
+}
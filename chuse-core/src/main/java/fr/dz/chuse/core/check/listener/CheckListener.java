@@ -0,0 +1,39 @@
+package fr.dz.chuse.core.check.listener;
+
+/**
+ * Listener of the checks, to measure them (durations, file counts and decisions).
+ * Methods are called by the thread doing the check : they must be fast, and must not fail.
+ */
+public interface CheckListener {
+
+    /**
+     * Called when a phase of the check has been completed.
+     * A phase may be completed several times by the same check (resources, then classes).
+     *
+     * @param phase
+     *            The phase
+     * @param durationNanos
+     *            The phase duration, in nanoseconds
+     * @param fileCount
+     *            The number of files handled by the phase
+     */
+    default void phaseCompleted(final CheckPhase phase, final long durationNanos,
+            final int fileCount) {
+    }
+
+    /**
+     * Called when the check has been completed, and the database built if necessary.
+     *
+     * @param persistenceUnit
+     *            The checked persistence unit (its checked files scope)
+     * @param decision
+     *            What has been decided
+     * @param changedFileCount
+     *            The number of added, modified and deleted files
+     * @param durationNanos
+     *            The whole check duration (including the re-build), in nanoseconds
+     */
+    default void checkCompleted(final String persistenceUnit, final CheckDecision decision,
+            final int changedFileCount, final long durationNanos) {
+    }
+}
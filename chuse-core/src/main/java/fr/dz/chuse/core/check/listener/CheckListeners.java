@@ -0,0 +1,99 @@
+package fr.dz.chuse.core.check.listener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Utils for check listeners.
+ */
+public final class CheckListeners {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckListeners.class);
+
+    // Listener doing nothing
+    private static final CheckListener NONE = new CheckListener() {
+    };
+
+    /**
+     * Gets a listener doing nothing.
+     *
+     * @return The listener
+     */
+    public static CheckListener none() {
+        return NONE;
+    }
+
+    /**
+     * Creates a listener notifying all the given ones.
+     * A failing listener is logged, and doesn't prevent the other ones from being notified.
+     *
+     * @param listeners
+     *            The listeners
+     * @return The listener
+     */
+    public static CheckListener composite(final List<CheckListener> listeners) {
+        if (listeners.isEmpty()) {
+            return NONE;
+        }
+        return listeners.size() == 1 ? listeners.get(0)
+                : new CompositeCheckListener(new ArrayList<>(listeners));
+    }
+
+    /**
+     * Creates a listener committing JDK Flight Recorder events, if the runtime supports them
+     * (Java 11, or Java 8 update 262).
+     *
+     * @return The listener, if supported
+     */
+    public static Optional<CheckListener> flightRecorder() {
+        try {
+            return Optional.of(new FlightRecorderCheckListener());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.debug("JDK Flight Recorder is not available", e);
+            return Optional.empty();
+        }
+    }
+
+    private CheckListeners() {
+    }
+
+    /**
+     * Listener notifying several listeners.
+     */
+    @AllArgsConstructor
+    private static final class CompositeCheckListener implements CheckListener {
+
+        private final List<CheckListener> listeners;
+
+        @Override
+        public void phaseCompleted(final CheckPhase phase, final long durationNanos,
+                final int fileCount) {
+            for (CheckListener listener : this.listeners) {
+                try {
+                    listener.phaseCompleted(phase, durationNanos, fileCount);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Check listener {} has failed", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void checkCompleted(final String persistenceUnit, final CheckDecision decision,
+                final int changedFileCount, final long durationNanos) {
+            for (CheckListener listener : this.listeners) {
+                try {
+                    listener.checkCompleted(persistenceUnit, decision, changedFileCount,
+                            durationNanos);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Check listener {} has failed", listener, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fr.dz.chuse.core.check.listener;
+
+/**
+ * Phases of a check, reported to the {@link CheckListener}s with their duration.
+ */
+public enum CheckPhase {
+
+    /**
+     * Indexing the source folders, to resolve the names of the files to be checked.
+     */
+    PATH_RESOLUTION,
+
+    /**
+     * Finding the files in the indexes (or the JARs), which reads their attributes.
+     */
+    ATTRIBUTE_READ,
+
+    /**
+     * Reading the root hash and the checked files from the repository.
+     */
+    REPOSITORY_READ,
+
+    /**
+     * Comparing the files to the repository, including the fingerprints computation.
+     */
+    DIFF,
+
+    /**
+     * Writing the checked files to the repository.
+     */
+    REPOSITORY_WRITE,
+
+    /**
+     * Building the database, once changes have been found.
+     */
+    REBUILD
+}
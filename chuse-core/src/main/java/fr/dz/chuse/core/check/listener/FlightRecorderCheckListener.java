@@ -0,0 +1,178 @@
+package fr.dz.chuse.core.check.listener;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener committing JDK Flight Recorder events : one per phase, and one per check.
+ * Events cost nothing when no recording is running.
+ * The JDK Flight Recorder API is only used by reflection (the event types are defined by its
+ * event factory), so that Chuse can be compiled by any JDK 8. The listener must be created by
+ * {@link CheckListeners#flightRecorder()}, which checks that the runtime supports it.
+ */
+final class FlightRecorderCheckListener implements CheckListener {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(FlightRecorderCheckListener.class);
+
+    private static final String JFR_PACKAGE = "jdk.jfr.";
+
+    // A completed check phase
+    private final EventType phaseEvents;
+
+    // A completed check
+    private final EventType checkEvents;
+
+    /**
+     * Constructor : registers the event types.
+     *
+     * @throws ReflectiveOperationException
+     *             The runtime doesn't support JDK Flight Recorder events
+     */
+    FlightRecorderCheckListener() throws ReflectiveOperationException {
+        super();
+        this.phaseEvents = new EventType("fr.dz.chuse.CheckPhase", "Chuse Check Phase",
+                "A phase of the check of the files the database is built from",
+                field(String.class, "phase", "Phase", false),
+                field(long.class, "phaseDuration", "Phase Duration", true),
+                field(int.class, "fileCount", "File Count", false));
+        this.checkEvents = new EventType("fr.dz.chuse.Check", "Chuse Check",
+                "A check of the files the database is built from, and its decision",
+                field(String.class, "persistenceUnit", "Persistence Unit", false),
+                field(String.class, "decision", "Decision", false),
+                field(int.class, "changedFileCount", "Changed File Count", false),
+                field(long.class, "checkDuration", "Check Duration", true));
+    }
+
+    @Override
+    public void phaseCompleted(final CheckPhase phase, final long durationNanos,
+            final int fileCount) {
+        this.phaseEvents.commit(phase.name(), durationNanos, fileCount);
+    }
+
+    @Override
+    public void checkCompleted(final String persistenceUnit, final CheckDecision decision,
+            final int changedFileCount, final long durationNanos) {
+        this.checkEvents.commit(persistenceUnit, decision.name(), changedFileCount,
+                durationNanos);
+    }
+
+    /**
+     * Creates an annotation of an event type or of a field (jdk.jfr.AnnotationElement).
+     *
+     * @param type
+     *            The simple name of the annotation type, in the jdk.jfr package
+     * @param value
+     *            The annotation value
+     * @return The annotation
+     * @throws ReflectiveOperationException
+     *             The runtime doesn't support JDK Flight Recorder events
+     */
+    private static Object annotation(final String type, final Object value)
+            throws ReflectiveOperationException {
+        return Class.forName(JFR_PACKAGE + "AnnotationElement")
+                .getConstructor(Class.class, Object.class)
+                .newInstance(Class.forName(JFR_PACKAGE + type), value);
+    }
+
+    /**
+     * Creates a field of an event type (jdk.jfr.ValueDescriptor).
+     *
+     * @param type
+     *            The field type
+     * @param name
+     *            The field name
+     * @param label
+     *            The field label
+     * @param timespan
+     *            true if the field is a duration, in nanoseconds
+     * @return The field
+     * @throws ReflectiveOperationException
+     *             The runtime doesn't support JDK Flight Recorder events
+     */
+    private static Object field(final Class<?> type, final String name, final String label,
+            final boolean timespan) throws ReflectiveOperationException {
+        List<Object> annotations = new ArrayList<>();
+        annotations.add(annotation("Label", label));
+        if (timespan) {
+            annotations.add(annotation("Timespan", "NANOSECONDS"));
+        }
+        return Class.forName(JFR_PACKAGE + "ValueDescriptor")
+                .getConstructor(Class.class, String.class, List.class)
+                .newInstance(type, name, annotations);
+    }
+
+    /**
+     * A type of events, registered by the JDK Flight Recorder event factory.
+     */
+    private static final class EventType {
+
+        private final String name;
+
+        private final Object factory;
+
+        private final Method newEvent;
+
+        private final Method shouldCommit;
+
+        private final Method set;
+
+        private final Method commit;
+
+        /**
+         * Constructor : registers the event type.
+         *
+         * @param name
+         *            The event name
+         * @param label
+         *            The event label
+         * @param description
+         *            The event description
+         * @param fields
+         *            The event fields, as created by
+         *            {@link FlightRecorderCheckListener#field(Class, String, String, boolean)}
+         * @throws ReflectiveOperationException
+         *             The runtime doesn't support JDK Flight Recorder events
+         */
+        EventType(final String name, final String label, final String description,
+                final Object... fields) throws ReflectiveOperationException {
+            this.name = name;
+            List<Object> annotations = Arrays.asList(annotation("Name", name),
+                    annotation("Label", label), annotation("Category", new String[] { "Chuse" }),
+                    annotation("Description", description));
+            Class<?> factoryClass = Class.forName(JFR_PACKAGE + "EventFactory");
+            this.factory = factoryClass.getMethod("create", List.class, List.class).invoke(null,
+                    annotations, Arrays.asList(fields));
+            this.newEvent = factoryClass.getMethod("newEvent");
+            Class<?> eventClass = Class.forName(JFR_PACKAGE + "Event");
+            this.shouldCommit = eventClass.getMethod("shouldCommit");
+            this.set = eventClass.getMethod("set", int.class, Object.class);
+            this.commit = eventClass.getMethod("commit");
+        }
+
+        /**
+         * Commits an event, if a recording is running.
+         *
+         * @param values
+         *            The values of the event fields, in their order
+         */
+        void commit(final Object... values) {
+            try {
+                Object event = this.newEvent.invoke(this.factory);
+                if ((Boolean) this.shouldCommit.invoke(event)) {
+                    for (int i = 0; i < values.length; i++) {
+                        this.set.invoke(event, i, values[i]);
+                    }
+                    this.commit.invoke(event);
+                }
+            } catch (ReflectiveOperationException e) {
+                LOGGER.warn("Unable to commit the {} event", this.name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package fr.dz.chuse.core.check.listener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener appending a JSON summary of each check to a file (JSON Lines : one object per line),
+ * so that CI dashboards can track how often the database is re-built, and what it costs :
+ * <pre>
+ * {"timestamp":"...","persistenceUnit":"default","decision":"REBUILD","changedFiles":2,
+ *  "durationMs":1234.567,"phases":{"REPOSITORY_READ":{"durationMs":3.210,"files":120},...}}
+ * </pre>
+ */
+public class JsonSummaryWriter implements CheckListener {
+
+    /**
+     * Default summary file.
+     */
+    public static final String DEFAULT_PATH = "target/chuse/check-summary.jsonl";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonSummaryWriter.class);
+
+    private final Path path;
+
+    // Durations and file counts of the current check phases
+    private final Map<CheckPhase, long[]> phases = new EnumMap<>(CheckPhase.class);
+
+    /**
+     * Constructor.
+     *
+     * @param path
+     *            The summary file
+     */
+    public JsonSummaryWriter(final Path path) {
+        super();
+        this.path = path;
+    }
+
+    @Override
+    public synchronized void phaseCompleted(final CheckPhase phase, final long durationNanos,
+            final int fileCount) {
+        long[] totals = this.phases.computeIfAbsent(phase, key -> new long[2]);
+        totals[0] += durationNanos;
+        totals[1] += fileCount;
+    }
+
+    @Override
+    public synchronized void checkCompleted(final String persistenceUnit,
+            final CheckDecision decision, final int changedFileCount, final long durationNanos) {
+        StringBuilder json = new StringBuilder("{\"timestamp\":\"").append(Instant.now())
+                .append("\",\"persistenceUnit\":");
+        appendString(json, persistenceUnit);
+        json.append(",\"decision\":\"").append(decision.name()).append("\",\"changedFiles\":")
+                .append(changedFileCount).append(",\"durationMs\":")
+                .append(toMillis(durationNanos)).append(",\"phases\":{");
+        String separator = "";
+        for (Map.Entry<CheckPhase, long[]> phase : this.phases.entrySet()) {
+            json.append(separator).append('"').append(phase.getKey().name())
+                    .append("\":{\"durationMs\":").append(toMillis(phase.getValue()[0]))
+                    .append(",\"files\":").append(phase.getValue()[1]).append('}');
+            separator = ",";
+        }
+        json.append("}}").append(System.lineSeparator());
+        this.phases.clear();
+        try {
+            Path parent = this.path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(this.path, json.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write the check summary to {}", this.path, e);
+        }
+    }
+
+    private static String toMillis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000d);
+    }
+
+    private static void appendString(final StringBuilder json, final String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
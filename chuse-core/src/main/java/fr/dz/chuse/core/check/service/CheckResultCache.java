@@ -0,0 +1,67 @@
+package fr.dz.chuse.core.check.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Results of the checks done in this JVM, so that the persistence units created again and again
+ * by the same JVM (one per Spring test context for instance) don't check the same database
+ * again : once a database has been verified or re-built for some files, it is known to be up to
+ * date for the same files.
+ * Files are not watched : changes made while the JVM is running are not seen (see the live mode
+ * for that).
+ */
+public final class CheckResultCache {
+
+    // Fingerprint of the checked files names, by database key
+    private static final ConcurrentMap<String, String> VERIFIED = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if a database has already been verified or re-built, for the same files.
+     *
+     * @param key
+     *            The database key (URL, schema and persistence unit)
+     * @param fingerprint
+     *            The fingerprint of the checked files names
+     * @return true if the database is up to date
+     */
+    public static boolean isVerified(final String key, final String fingerprint) {
+        return fingerprint.equals(VERIFIED.get(key));
+    }
+
+    /**
+     * Checks if a database has already been verified or re-built, whatever the files.
+     *
+     * @param key
+     *            The database key (URL, schema and persistence unit)
+     * @return true if the database has been verified or re-built
+     */
+    public static boolean contains(final String key) {
+        return VERIFIED.containsKey(key);
+    }
+
+    /**
+     * Records that a database has been verified or re-built.
+     *
+     * @param key
+     *            The database key (URL, schema and persistence unit)
+     * @param fingerprint
+     *            The fingerprint of the checked files names
+     */
+    public static void verified(final String key, final String fingerprint) {
+        VERIFIED.put(key, fingerprint);
+    }
+
+    /**
+     * Forgets a database, which must be checked again (it has been dropped for instance).
+     *
+     * @param key
+     *            The database key (URL, schema and persistence unit)
+     */
+    public static void invalidate(final String key) {
+        VERIFIED.remove(key);
+    }
+
+    private CheckResultCache() {
+    }
+}
@@ -2,6 +2,9 @@ package fr.dz.chuse.core.check.service;
 
 import java.util.List;
 
+import javax.sql.DataSource;
+
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
 
 /**
@@ -10,6 +13,46 @@ import fr.dz.chuse.core.data.CheckedFile;
  */
 public interface CheckService {
 
+    /**
+     * Starts, in the background, the work which doesn't depend on the files to be checked :
+     * reading the repository and indexing the source folders. The next call to
+     * {@link #checkChanges(List)} uses the read repository content (once), and the extract
+     * methods use the indexes, instead of doing the same work again.
+     *
+     * @param additionalResourcesFolders
+     *            Additional resources folders
+     * @param additionalJavaClassesFolders
+     *            Additional Java classes folders
+     */
+    void prefetch(final List<String> additionalResourcesFolders,
+            final List<String> additionalJavaClassesFolders);
+
+    /**
+     * Checks, in live mode, if the files found for the same names by the last check have not
+     * changed since, according to the file system events and to their attributes (events are
+     * asynchronous) : in that case, files don't need to be found, hashed nor compared to the
+     * repository.
+     * Outside live mode, or if events may have been lost, it is always false.
+     *
+     * @param names
+     *            The names of the files to be checked (resources and classes)
+     * @return true if the files are known to be unchanged
+     */
+    boolean isUnchanged(final List<String> names);
+
+    /**
+     * Finds the changes between the given files and the ones in the repository.
+     * It can be :
+     * - a file that have a different last modified time
+     * - a file that doesn't exist anymore
+     * - a file that has just been created
+     *
+     * @param actualFiles
+     *            The actual files to be compared to the ones in the repository
+     * @return The changes, {@link ChangeSet#hasChanged()} is true if there is at least one
+     */
+    ChangeSet checkChanges(final List<CheckedFile> actualFiles);
+
     /**
      * Checks if at least one of the given file have changed.
      * It can be :
@@ -20,21 +63,46 @@ public interface CheckService {
      * @param actualFiles
      *            The actual files to be compared to the ones in the repository
      * @return true if there is at least one change
+     * @deprecated Use {@link #checkChanges(List)}, whose changes can be written to the repository
+     *             by {@link #updateCheckedFiles(ChangeSet)}
      */
-    boolean hasChanged(final List<CheckedFile> actualFiles);
+    @Deprecated
+    default boolean hasChanged(final List<CheckedFile> actualFiles) {
+        return this.checkChanges(actualFiles).hasChanged();
+    }
 
     /**
      * Updates the checked files.
-     * Removes all existing checked files and inserts the given ones.
+     * Removes all existing checked files and inserts the given ones, atomically.
      *
      * @param actualFiles
      *            The actual files to be updated in the repository
      */
     void updateCheckedFiles(final List<CheckedFile> actualFiles);
 
+    /**
+     * Updates the checked files.
+     * Only the given changes are written to the repository.
+     *
+     * @param changes
+     *            The changes found by {@link #checkChanges(List)}
+     */
+    void updateCheckedFiles(final ChangeSet changes);
+
+    /**
+     * Invalidates the checked files concerned by the given changes.
+     * It must be called before re-building the database, so that the same changes are found
+     * again if the re-build is interrupted.
+     *
+     * @param changes
+     *            The changes found by {@link #checkChanges(List)}
+     */
+    void invalidateCheckedFiles(final ChangeSet changes);
+
     /**
      * Extracts checked files from the given resources.
-     * It searches for files in src/test/resources and then src/main/resources.
+     * It searches for files in src/test/resources and then src/main/resources, and then in
+     * the JARs of the classpath.
      * Only found resources are returned.
      * 
      * @param filenames
@@ -48,7 +116,8 @@ public interface CheckService {
 
     /**
      * Extracts checked files from the given class names.
-     * It searches for files in src/test/java and then src/main/java.
+     * It searches for files in src/test/java and then src/main/java, and then for compiled
+     * classes in the JARs of the classpath.
      * Only found classes are returned.
      * 
      * @param classes
@@ -59,4 +128,77 @@ public interface CheckService {
      */
     List<CheckedFile> extractJavaClasses(final List<String> classes,
             final List<String> additionalFolders);
+
+    /**
+     * Finds the types the schema of the given classes depends on, by scanning their compiled
+     * classes : mapped super classes, embeddables, enums, attribute converters... which are not
+     * in the given classes.
+     *
+     * @param classes
+     *            The class names (entities)
+     * @return The class names of the dependencies
+     */
+    List<String> findSchemaDependencies(final List<String> classes);
+
+    /**
+     * Checks that the current database schema has not drifted since the last re-build : that its
+     * fingerprint is still the one stored by {@link #updateDatabaseFingerprint(DataSource)}.
+     *
+     * @param dataSource
+     *            The database
+     * @return true if the schema is the stored one, false if it has drifted or if no fingerprint
+     *         has been stored
+     */
+    default boolean checkDatabaseFingerprint(final DataSource dataSource) {
+        return this.checkDatabaseFingerprint(dataSource, null);
+    }
+
+    /**
+     * Checks that a database schema has not drifted since the last re-build : that its
+     * fingerprint is still the one stored by
+     * {@link #updateDatabaseFingerprint(DataSource, String)}.
+     *
+     * @param dataSource
+     *            The database
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null to use the current schema)
+     * @return true if the schema is the stored one, false if it has drifted or if no fingerprint
+     *         has been stored
+     */
+    boolean checkDatabaseFingerprint(final DataSource dataSource, final String defaultSchema);
+
+    /**
+     * Stores the fingerprint of the current database schema.
+     * It must be called once the database has been built.
+     *
+     * @param dataSource
+     *            The database
+     */
+    default void updateDatabaseFingerprint(final DataSource dataSource) {
+        this.updateDatabaseFingerprint(dataSource, null);
+    }
+
+    /**
+     * Stores the fingerprint of a database schema.
+     * It must be called once the database has been built.
+     *
+     * @param dataSource
+     *            The database
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null to use the current schema)
+     */
+    void updateDatabaseFingerprint(final DataSource dataSource, final String defaultSchema);
+
+    /**
+     * Computes the content key of the given files : a hash of their names and fingerprints
+     * (content hashes, or schema fingerprints for compiled classes in bytecode fingerprint mode).
+     * Unlike the root hash, it does not depend on the last modified times, so that the same
+     * content always gives the same key (after switching back to a branch, for instance).
+     * Files without fingerprint are hashed, so it should be called only before a re-build.
+     *
+     * @param actualFiles
+     *            The actual files, as checked by {@link #checkChanges(List)}
+     * @return The content key
+     */
+    String computeContentKey(final List<CheckedFile> actualFiles);
 }
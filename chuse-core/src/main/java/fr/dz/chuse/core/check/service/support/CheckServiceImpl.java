@@ -1,77 +1,273 @@
 package fr.dz.chuse.core.check.service.support;
 
-import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fr.dz.chuse.core.check.bytecode.SchemaDependencyGraph;
+import fr.dz.chuse.core.check.bytecode.SchemaFingerprint;
+import fr.dz.chuse.core.check.database.DatabaseFingerprint;
+import fr.dz.chuse.core.check.listener.CheckListener;
+import fr.dz.chuse.core.check.listener.CheckListeners;
+import fr.dz.chuse.core.check.listener.CheckPhase;
+import fr.dz.chuse.core.check.index.FileWatcher;
+import fr.dz.chuse.core.check.index.JarIndex;
+import fr.dz.chuse.core.check.index.SourceRootIndex;
 import fr.dz.chuse.core.check.service.CheckService;
+import fr.dz.chuse.core.config.ChangeDetectionMode;
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.data.CheckedFileSet;
 import fr.dz.chuse.core.repository.CheckedFileRepository;
-import lombok.AllArgsConstructor;
+import fr.dz.chuse.core.repository.RepositoryConstants;
+import fr.dz.chuse.core.utils.ExecutorUtils;
+import fr.dz.chuse.core.utils.HashUtils;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 /**
  * Check service implementation.
  * Is is responsible for checking all given files for updates.
  */
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class CheckServiceImpl implements CheckService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CheckServiceImpl.class);
 
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    // Separator between a JAR and an entry, in checked files names
+    private static final String JAR_SEPARATOR = "!/";
+
     private final CheckedFileRepository repository;
 
+    // How modifications are detected
+    @Setter
+    @NonNull
+    private ChangeDetectionMode changeDetectionMode = ChangeDetectionMode.LAST_MODIFIED_TIME;
+
+    // Executor used to find and hash files in parallel
+    @Setter
+    @NonNull
+    private Executor executor = ExecutorUtils.defaultExecutor();
+
+    // Class loader used to find compiled classes and files inside JARs (null to disable it)
+    @Setter
+    private ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+    // Whether files which are not in the source folders are searched inside JARs
+    @Setter
+    private boolean jarLookup = true;
+
+    // Whether classes are checked using the schema fingerprint of their compiled class, which
+    // ignores code-only changes (the class is found using the class loader)
+    @Setter
+    private boolean bytecodeFingerprint;
+
+    // Where the schema dependencies graph is cached
+    @Setter
+    @NonNull
+    private Path schemaDependenciesPath = Paths.get(SchemaDependencyGraph.DEFAULT_PATH);
+
+    // Listener of the check phases
+    @Setter
+    @NonNull
+    private CheckListener listener = CheckListeners.none();
+
+    // Whether all the changes are found and logged : otherwise, the check stops at the first
+    // change, and all the files replace the repository content once the database is re-built
+    @Setter
+    private boolean detailedChanges = true;
+
+    // Key of the live mode baseline, shared by the checks of the same files in this JVM : file
+    // system events tell if the files have changed since the last check (null to disable it)
+    @Setter
+    private String liveKey;
+
+    // Repository content read in the background, used by the next check only (null if none)
+    private volatile CompletableFuture<StoredFiles> prefetchedFiles;
+
+    // Fingerprint of the names of the files being checked in live mode (null if unknown)
+    private volatile String liveNames;
+
+    // Live mode baseline to be saved once the repository is up to date (null if none)
+    private volatile PendingBaseline pendingBaseline;
+
     @Override
-    public boolean hasChanged(final List<CheckedFile> actualFiles) {
+    public void prefetch(final List<String> additionalResourcesFolders,
+            final List<String> additionalJavaClassesFolders) {
 
-        // Get files from repository, grouped by name
-        Map<String, CheckedFile> inRepository = this.repository.findAll().stream()
-                .collect(Collectors.toMap(CheckedFile::getName, Function.identity()));
+        // In live mode, the files have probably not changed since the last check
+        if (this.liveKey != null && FileWatcher.get().hasBaseline(this.liveKey)) {
+            return;
+        }
+        this.prefetchedFiles = CompletableFuture.supplyAsync(
+                () -> new StoredFiles(this.repository.findRootHash(),
+                        this.repository.findFileSet()),
+                this.executor);
+        Stream.concat(resourcesFolders(additionalResourcesFolders).stream(),
+                javaClassesFolders(additionalJavaClassesFolders).stream())
+                .forEach(folder -> CompletableFuture
+                        .runAsync(() -> SourceRootIndex.get(Paths.get(folder)), this.executor)
+                        .exceptionally(e -> {
+                            LOGGER.debug("Unable to index {}", folder, e);
+                            return null;
+                        }));
+    }
 
-        // Get actual files grouped by name
-        Map<String, CheckedFile> actualFilesByName = actualFiles.stream()
-                .collect(Collectors.toMap(CheckedFile::getName, Function.identity()));
+    @Override
+    public boolean isUnchanged(final List<String> names) {
+        if (this.liveKey == null) {
+            return false;
+        }
+        this.liveNames = HashUtils.hash(names);
+        if (!FileWatcher.get().isValid(this.liveKey, this.liveNames)) {
+            return false;
+        }
+        this.prefetchedFiles = null;
+        return true;
+    }
 
-        /*
-         * Identify changes (to log it properly and provide information, else we could have stopped
-         * at the first change found)
-         */
+    @Override
+    public ChangeSet checkChanges(final List<CheckedFile> actualFiles) {
 
-        // Added files
-        List<CheckedFile> addedFiles = actualFiles.stream()
-                .filter(f -> !inRepository.containsKey(f.getName())).collect(Collectors.toList());
+        // In live mode, files are watched before being compared, so that no later change is
+        // missed : the baseline is valid once the repository is up to date
+        long generation = -1;
+        if (this.liveKey != null) {
+            FileWatcher.get().watch(toPaths(actualFiles.stream()));
+            generation = FileWatcher.get().generation();
+        }
+        ChangeSet changes = this.findChanges(actualFiles);
+        if (this.liveKey != null && this.liveNames != null) {
+            this.pendingBaseline = new PendingBaseline(this.liveNames,
+                    CheckedFileSet.of(actualFiles), generation);
+            if (!changes.hasChanged()) {
+                this.saveBaseline();
+            }
+        }
+        return changes;
+    }
 
-        // Deleted files
-        List<CheckedFile> deletedFiles = inRepository.values().stream()
-                .filter(f -> !actualFilesByName.containsKey(f.getName()))
-                .collect(Collectors.toList());
+    /**
+     * Finds the changes between the given files and the ones in the repository.
+     *
+     * @param actualFiles
+     *            The actual files
+     * @return The changes
+     */
+    private ChangeSet findChanges(final List<CheckedFile> actualFiles) {
 
-        // Modified files
-        List<CheckedFile> modifiedFiles = actualFiles.stream()
-                .filter(actual -> hasBeenModified(actual, inRepository))
-                .collect(Collectors.toList());
+        // The repository content may have been read in the background
+        // (durations are accumulated by phase, as the repository files are read while merged)
+        long start = System.nanoTime();
+        CompletableFuture<StoredFiles> prefetched = this.prefetchedFiles;
+        this.prefetchedFiles = null;
+        StoredFiles storedFiles = prefetched == null ? null : ExecutorUtils.join(prefetched);
+        String storedRootHash = storedFiles == null ? this.repository.findRootHash()
+                : storedFiles.rootHash;
+        long repositoryReadDuration = System.nanoTime() - start;
 
-        // Check changes
-        boolean hasChanged = !addedFiles.isEmpty() || !deletedFiles.isEmpty()
-                || !modifiedFiles.isEmpty();
+        // Nothing has changed if the root hash is the stored one (no need to load the files)
+        start = System.nanoTime();
+        List<CheckedFile> sortedActualFiles = sortByName(actualFiles);
+        String rootHash = computeRootHash(sortedActualFiles);
+        if (rootHash.equals(storedRootHash)) {
+            this.listener.phaseCompleted(CheckPhase.REPOSITORY_READ, repositoryReadDuration, 0);
+            this.phaseCompleted(CheckPhase.DIFF, start, actualFiles.size());
+            LOGGER.info("No modification has been detected : Database will not be re-built.");
+            return ChangeSet.empty();
+        }
+        long diffDuration = System.nanoTime() - start;
+
+        /*
+         * Identify changes, merging the sorted actual files with the repository ones in a single
+         * pass (to log it properly and to update only them in the repository, unless the
+         * detailed changes are disabled : then the check stops at the first change).
+         * Repository files are streamed, so that they are never all loaded : only the deleted
+         * ones and the ones whose fingerprint has to be computed are kept. The time spent
+         * reading them is measured apart from the time spent merging them.
+         */
+        start = System.nanoTime();
+        Diff diff;
+        TimedIterator<CheckedFile> storedIterator;
+        long mergeDuration;
+        try (Stream<CheckedFile> storedStream = storedFiles == null ? this.repository.streamAll()
+                : storedFiles.files.stream()) {
+            storedIterator = new TimedIterator<>(storedStream.iterator());
+            long mergeStart = System.nanoTime();
+            diff = this.merge(sortedActualFiles, storedIterator);
+            mergeDuration = System.nanoTime() - mergeStart;
+        }
+        repositoryReadDuration += System.nanoTime() - start - mergeDuration
+                + storedIterator.duration;
+        diffDuration += mergeDuration - storedIterator.duration;
+        this.listener.phaseCompleted(CheckPhase.REPOSITORY_READ, repositoryReadDuration,
+                diff.storedFileCount);
+        start = System.nanoTime();
+
+        // Modified files, and touched files whose metadata changed but not their fingerprint
+        if (this.detailedChanges || !diff.hasChanges()) {
+            this.computeFingerprints(diff.unfingerprintedActualFiles);
+            for (int i = 0; i < diff.unfingerprintedActualFiles.size(); i++) {
+                classify(diff.unfingerprintedActualFiles.get(i),
+                        diff.unfingerprintedStoredFiles.get(i), diff);
+                if (!this.detailedChanges && diff.hasChanges()) {
+                    break;
+                }
+            }
+        }
+        List<CheckedFile> addedFiles = diff.addedFiles;
+        List<CheckedFile> modifiedFiles = diff.modifiedFiles;
+        List<CheckedFile> deletedFiles = diff.deletedFiles;
+        List<CheckedFile> touchedFiles = diff.touchedFiles;
+
+        // Check changes (when the check has stopped at the first change, all the actual files
+        // will replace the repository content)
+        boolean complete = this.detailedChanges || !diff.hasChanges();
+        ChangeSet changes = new ChangeSet(addedFiles, modifiedFiles, deletedFiles,
+                complete ? touchedFiles : Collections.emptyList(), rootHash,
+                complete ? null : actualFiles);
+        this.listener.phaseCompleted(CheckPhase.DIFF, diffDuration + System.nanoTime() - start,
+                actualFiles.size());
 
         /*
          * User feedback
          */
-        if (hasChanged) {
-            LOGGER.info("Modifications have been detected :");
+        if (changes.hasChanged()) {
+            LOGGER.info(complete ? "Modifications have been detected :"
+                    : "Modifications have been detected (only the first one is listed) :");
             logChanges(addedFiles, " - ", " has been created");
             logChanges(modifiedFiles, " - ", " has been modified");
             logChanges(deletedFiles, " - ", " has been deleted");
@@ -79,103 +275,817 @@ public class CheckServiceImpl implements CheckService {
         } else {
             LOGGER.info("No modification has been detected : Database will not be re-built.");
         }
+        if (LOGGER.isDebugEnabled()) {
+            for (CheckedFile touched : touchedFiles) {
+                LOGGER.debug(" - {} has been touched but its content has not changed",
+                        touched.getName());
+            }
+        }
 
-        return hasChanged;
+        return changes;
     }
 
     @Override
     public void updateCheckedFiles(final List<CheckedFile> actualFiles) {
-        this.repository.deleteAll();
-        actualFiles.forEach(this.repository::insertOrUpdateFile);
+        this.prefetchedFiles = null;
+        long start = System.nanoTime();
+        this.repository.replaceAll(actualFiles);
+        this.phaseCompleted(CheckPhase.REPOSITORY_WRITE, start, actualFiles.size());
+        this.saveBaseline();
+    }
+
+    @Override
+    public void updateCheckedFiles(final ChangeSet changes) {
+        this.prefetchedFiles = null;
+        long start = System.nanoTime();
+        if (changes.isComplete()) {
+            this.repository.applyChanges(changes);
+        } else {
+
+            // The check has stopped at the first change : all the files are replaced
+            this.repository.replaceAll(changes.getActualFiles());
+            this.repository.applyChanges(new ChangeSet(Collections.emptyList(),
+                    Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+                    changes.getRootHash()));
+        }
+        this.phaseCompleted(CheckPhase.REPOSITORY_WRITE, start,
+                changes.size() + changes.getTouchedFiles().size());
+        this.saveBaseline();
+    }
+
+    @Override
+    public void invalidateCheckedFiles(final ChangeSet changes) {
+
+        // Added files are not in the repository and deleted files are still in it, so only
+        // modified files have to be removed to be found again (and the root hash is cleared)
+        this.prefetchedFiles = null;
+        if (this.liveKey != null) {
+            FileWatcher.get().removeBaseline(this.liveKey);
+        }
+        long start = System.nanoTime();
+        this.repository.applyChanges(new ChangeSet(Collections.emptyList(),
+                Collections.emptyList(), changes.getModifiedFiles()));
+        this.phaseCompleted(CheckPhase.REPOSITORY_WRITE, start,
+                changes.getModifiedFiles().size());
     }
 
     @Override
     public List<CheckedFile> extractResources(final List<String> filenames,
             final List<String> additionalFolders) {
-        List<String> folders = new ArrayList<>(
-                Arrays.asList("src/test/resources", "src/main/resources"));
-        folders.addAll(additionalFolders);
-        return filenames.stream()
-                // Find the files
-                .map(resource -> extractFile(resource, folders)
-                        .orElseGet(() -> handleResourceNotFound(resource)))
-                // Filter not found
-                .filter(Objects::nonNull)
-                // Deduplicate
-                .distinct()
-                // Convert to CheckedFile
-                .map(CheckServiceImpl::toCheckedFile).collect(Collectors.toList());
+        return this.extractFiles(filenames, Function.identity(), Function.identity(),
+                resourcesFolders(additionalFolders), false,
+                CheckServiceImpl::handleResourceNotFound);
     }
 
     @Override
     public List<CheckedFile> extractJavaClasses(final List<String> classes,
             final List<String> additionalFolders) {
+        return this.extractFiles(classes, CheckServiceImpl::classToFileName,
+                CheckServiceImpl::classToClasspathName, javaClassesFolders(additionalFolders),
+                this.bytecodeFingerprint, CheckServiceImpl::handleClassNotFound);
+    }
+
+    @Override
+    public boolean checkDatabaseFingerprint(final DataSource dataSource,
+            final String defaultSchema) {
+        String stored = this.repository.findState(RepositoryConstants.DATABASE_FINGERPRINT_KEY);
+        if (stored == null) {
+            LOGGER.info("No database fingerprint has been stored : Database will be re-built.");
+            return false;
+        }
+        if (!stored.equals(DatabaseFingerprint.of(dataSource, defaultSchema))) {
+            LOGGER.info("Database schema has drifted since it was built : "
+                    + "Database will be re-built.");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void updateDatabaseFingerprint(final DataSource dataSource,
+            final String defaultSchema) {
+        this.repository.saveState(RepositoryConstants.DATABASE_FINGERPRINT_KEY,
+                DatabaseFingerprint.of(dataSource, defaultSchema));
+    }
+
+    @Override
+    public List<String> findSchemaDependencies(final List<String> classes) {
+        if (this.classLoader == null) {
+            return Collections.emptyList();
+        }
+        return SchemaDependencyGraph.get(this.schemaDependenciesPath).findDependencies(classes,
+                this.classLoader);
+    }
+
+    @Override
+    public String computeContentKey(final List<CheckedFile> actualFiles) {
+
+        // Fingerprints computed by the check are reused, the other files are hashed in parallel
+        List<CheckedFile> sorted = actualFiles.stream()
+                .sorted(Comparator.comparing(CheckedFile::getName)).collect(Collectors.toList());
+        List<CompletableFuture<String>> fingerprints = sorted.stream()
+                .map(file -> file.getHash() != null
+                        ? CompletableFuture.completedFuture(file.getHash())
+                        : CompletableFuture.supplyAsync(() -> this.fingerprint(file),
+                                this.executor))
+                .collect(Collectors.toList());
+        MessageDigest digest = HashUtils.newDigest();
+        for (int i = 0; i < sorted.size(); i++) {
+            digest.update(sorted.get(i).getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(ExecutorUtils.join(fingerprints.get(i))
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return HashUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Saves the pending live mode baseline, if the files have not changed between the time they
+     * were read and the time they were watched (their metadata are read again).
+     * JAR entries are only watched through their JAR.
+     */
+    private void saveBaseline() {
+        PendingBaseline baseline = this.pendingBaseline;
+        if (baseline == null) {
+            return;
+        }
+        if (baseline.files.stream().allMatch(CheckServiceImpl::isUnmodified)) {
+            FileWatcher.get().saveBaseline(this.liveKey, baseline.names,
+                    toPaths(baseline.files.stream()), baseline.generation);
+        } else {
+            LOGGER.debug("Files have changed while being checked : live mode baseline not saved");
+        }
+    }
+
+    /**
+     * Checks if a file still has the metadata it was read with.
+     *
+     * @param file
+     *            The file
+     * @return true if it has not been modified, or if it is a JAR entry
+     */
+    private static boolean isUnmodified(final CheckedFile file) {
+        if (file.getName().contains(JAR_SEPARATOR)) {
+            return true;
+        }
+        try {
+            CheckedFile actual = toCheckedFile(file.getName(),
+                    Files.readAttributes(Paths.get(file.getName()), BasicFileAttributes.class));
+            return hasSameMetadata(actual, file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Converts checked files to the files to be watched : JAR entries are watched through their
+     * JAR.
+     *
+     * @param files
+     *            The checked files
+     * @return The paths
+     */
+    private static List<Path> toPaths(final Stream<CheckedFile> files) {
+        return files.map(file -> {
+            int separator = file.getName().indexOf(JAR_SEPARATOR);
+            return Paths.get(separator < 0 ? file.getName()
+                    : file.getName().substring(0, separator));
+        }).distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * Extracts checked files from the given names.
+     * Files are searched in the indexes of the folders, in parallel, using the executor. Files
+     * which are not in the folders are then searched inside the JARs of the classpath, unless
+     * the classpath is searched first.
+     *
+     * @param names
+     *            The names to find
+     * @param toFileName
+     *            Converts a name to a file name
+     * @param toClasspathName
+     *            Converts a name to a classpath resource name
+     * @param folders
+     *            The folders to search in, by priority
+     * @param classpathFirst
+     *            Whether the classpath (folders and JARs) is searched before the folders
+     * @param notFoundHandler
+     *            Called with each name which was not found
+     * @return The found files
+     */
+    private List<CheckedFile> extractFiles(final List<String> names,
+            final Function<String, String> toFileName,
+            final Function<String, String> toClasspathName, final List<String> folders,
+            final boolean classpathFirst, final Consumer<String> notFoundHandler) {
+
+        // Index the folders (each one is walked once, and only if necessary)
+        long start = System.nanoTime();
+        List<CompletableFuture<SourceRootIndex>> indexing = folders.stream()
+                .map(folder -> CompletableFuture
+                        .supplyAsync(() -> SourceRootIndex.get(Paths.get(folder)), this.executor))
+                .collect(Collectors.toList());
+        List<SourceRootIndex> indexes = indexing.stream().map(ExecutorUtils::join)
+                .collect(Collectors.toList());
+        this.phaseCompleted(CheckPhase.PATH_RESOLUTION, start, names.size());
+
+        // Find the files
+        start = System.nanoTime();
+        List<CompletableFuture<Optional<CheckedFile>>> resolutions = names.stream()
+                .map(name -> CompletableFuture.supplyAsync(() -> {
+                    if (classpathFirst) {
+                        Optional<CheckedFile> resource = this
+                                .resolveClasspathResource(toClasspathName.apply(name));
+                        return resource.isPresent() ? resource
+                                : resolveFile(toFileName.apply(name), folders, indexes);
+                    }
+                    Optional<CheckedFile> file = resolveFile(toFileName.apply(name), folders,
+                            indexes);
+                    return file.isPresent() ? file
+                            : this.resolveJarEntry(toClasspathName.apply(name));
+                }, this.executor))
+                .collect(Collectors.toList());
+
+        // Filter not found
+        List<CheckedFile> files = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            Optional<CheckedFile> file = ExecutorUtils.join(resolutions.get(i));
+            if (file.isPresent()) {
+                files.add(file.get());
+            } else {
+                notFoundHandler.accept(names.get(i));
+            }
+        }
+
+        // Deduplicate
+        List<CheckedFile> distinctFiles = files.stream().distinct()
+                .collect(Collectors.toList());
+        this.phaseCompleted(CheckPhase.ATTRIBUTE_READ, start, distinctFiles.size());
+        return distinctFiles;
+    }
+
+    /**
+     * Reports a completed phase to the listener.
+     *
+     * @param phase
+     *            The phase
+     * @param start
+     *            When the phase has started, from {@link System#nanoTime()}
+     * @param fileCount
+     *            The number of files handled by the phase
+     */
+    private void phaseCompleted(final CheckPhase phase, final long start, final int fileCount) {
+        this.listener.phaseCompleted(phase, System.nanoTime() - start, fileCount);
+    }
+
+    /**
+     * Lists the folders where resources are searched, by priority.
+     *
+     * @param additionalFolders
+     *            Additional resources folders
+     * @return The folders
+     */
+    private static List<String> resourcesFolders(final List<String> additionalFolders) {
+        List<String> folders = new ArrayList<>(
+                Arrays.asList("src/test/resources", "src/main/resources"));
+        folders.addAll(additionalFolders);
+        return folders;
+    }
+
+    /**
+     * Lists the folders where Java classes are searched, by priority.
+     *
+     * @param additionalFolders
+     *            Additional Java classes folders
+     * @return The folders
+     */
+    private static List<String> javaClassesFolders(final List<String> additionalFolders) {
         List<String> folders = new ArrayList<>(Arrays.asList("src/test/java", "src/main/java"));
         folders.addAll(additionalFolders);
-        return classes.stream()
-                // Find the files
-                .map(className -> extractFile(classToFileName(className), folders)
-                        .orElseGet(() -> handleClassNotFound(className)))
-                // Filter not found
-                .filter(Objects::nonNull)
-                // Deduplicate
-                .distinct()
-                // Convert to CheckedFile
-                .map(CheckServiceImpl::toCheckedFile).collect(Collectors.toList());
+        return folders;
+    }
+
+    /**
+     * Sorts files by name, unless they are already sorted (the repository ones are).
+     *
+     * @param files
+     *            The files
+     * @return The sorted files
+     */
+    private static List<CheckedFile> sortByName(final List<CheckedFile> files) {
+        for (int i = 1; i < files.size(); i++) {
+            if (files.get(i - 1).getName().compareTo(files.get(i).getName()) > 0) {
+                List<CheckedFile> sorted = new ArrayList<>(files);
+                sorted.sort(Comparator.comparing(CheckedFile::getName));
+                return sorted;
+            }
+        }
+        return files;
     }
 
     /**
-     * Checks if a file has been modified.
-     * It has been modified if :
-     * - its last modified time has changed
-     * - it is not already in the repository (it has just been created)
+     * Merges the sorted actual files with the repository ones.
+     * Files whose fingerprint has to be computed are only matched : they are compared later.
+     * If the repository files turn out not to be sorted as String.compareTo sorts them (a
+     * database collation, for instance), the merge goes on by looking them up, without reading
+     * them again.
+     *
+     * @param sortedActualFiles
+     *            The actual files, sorted by name
+     * @param storedFiles
+     *            The repository files, read one at a time
+     * @return The differences
+     */
+    private Diff merge(final List<CheckedFile> sortedActualFiles,
+            final Iterator<CheckedFile> storedFiles) {
+        Diff diff = new Diff();
+        int actualIndex = 0;
+        CheckedFile stored = null;
+        String previousStoredName = null;
+        while (this.detailedChanges || !diff.hasChanges()) {
+            if (stored == null && storedFiles.hasNext()) {
+                stored = storedFiles.next();
+                diff.storedFileCount++;
+                if (previousStoredName != null
+                        && previousStoredName.compareTo(stored.getName()) >= 0) {
+                    LOGGER.debug("Checked files are not sorted by the repository : "
+                            + "they are looked up");
+                    return this.lookUp(sortedActualFiles, actualIndex, stored, storedFiles,
+                            diff);
+                }
+                previousStoredName = stored.getName();
+            }
+            if (actualIndex == sortedActualFiles.size() && stored == null) {
+                break;
+            }
+            int comparison = actualIndex == sortedActualFiles.size() ? 1
+                    : stored == null ? -1
+                            : sortedActualFiles.get(actualIndex).getName()
+                                    .compareTo(stored.getName());
+            if (comparison < 0) {
+                diff.addedFiles.add(sortedActualFiles.get(actualIndex++));
+            } else if (comparison > 0) {
+                diff.deletedFiles.add(stored);
+                stored = null;
+            } else {
+                this.compare(sortedActualFiles.get(actualIndex++), stored, diff);
+                stored = null;
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * Goes on with a merge whose repository files are not sorted by name : each repository file
+     * is looked up among the actual files by a binary search. The files found added or deleted
+     * so far are matched again, as their counterpart may come later.
+     *
+     * @param sortedActualFiles
+     *            The actual files, sorted by name
+     * @param mergedCount
+     *            The number of actual files already merged (matched or added)
+     * @param stored
+     *            The repository file breaking the order, not merged yet
+     * @param storedFiles
+     *            The remaining repository files
+     * @param diff
+     *            The differences found so far
+     * @return The differences
+     */
+    private Diff lookUp(final List<CheckedFile> sortedActualFiles, final int mergedCount,
+            final CheckedFile stored, final Iterator<CheckedFile> storedFiles, final Diff diff) {
+        BitSet matched = new BitSet(sortedActualFiles.size());
+        matched.set(0, mergedCount);
+        for (CheckedFile added : diff.addedFiles) {
+            matched.clear(indexOfName(sortedActualFiles, added.getName()));
+        }
+        diff.addedFiles.clear();
+        List<CheckedFile> unmatchedFiles = new ArrayList<>(diff.deletedFiles);
+        unmatchedFiles.add(stored);
+        diff.deletedFiles.clear();
+        Iterator<CheckedFile> unmatched = unmatchedFiles.iterator();
+        while (this.detailedChanges || !diff.hasChanges()) {
+            CheckedFile storedFile;
+            if (unmatched.hasNext()) {
+                storedFile = unmatched.next();
+            } else if (storedFiles.hasNext()) {
+                storedFile = storedFiles.next();
+                diff.storedFileCount++;
+            } else {
+                break;
+            }
+            int index = indexOfName(sortedActualFiles, storedFile.getName());
+            if (index >= 0 && !matched.get(index)) {
+                matched.set(index);
+                this.compare(sortedActualFiles.get(index), storedFile, diff);
+            } else {
+                diff.deletedFiles.add(storedFile);
+            }
+        }
+
+        // Actual files without repository file have been added
+        for (int i = matched.nextClearBit(0); i < sortedActualFiles.size()
+                && (this.detailedChanges || !diff.hasChanges()); i = matched.nextClearBit(i + 1)) {
+            diff.addedFiles.add(sortedActualFiles.get(i));
+        }
+        return diff;
+    }
+
+    /**
+     * Finds a file by name, using a binary search.
+     *
+     * @param sortedFiles
+     *            The files, sorted by name
+     * @param name
+     *            The file name
+     * @return The file index if it is found, otherwise a negative value
+     */
+    private static int indexOfName(final List<CheckedFile> sortedFiles, final String name) {
+        int low = 0;
+        int high = sortedFiles.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = sortedFiles.get(middle).getName().compareTo(name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares an actual file with the repository one having the same name.
+     * Its fingerprint is reused when its metadata did not change, and JAR entries already have
+     * one : otherwise the comparison is delayed until the fingerprints are computed.
+     *
+     * @param actual
+     *            The actual file
+     * @param stored
+     *            The file stored in the repository
+     * @param diff
+     *            The differences
+     */
+    private void compare(final CheckedFile actual, final CheckedFile stored, final Diff diff) {
+        if (!isFingerprinted(actual)) {
+            if (!stored.getLastModifiedTime().equals(actual.getLastModifiedTime())) {
+                diff.modifiedFiles.add(actual);
+            }
+        } else if (actual.getHash() != null) {
+            classify(actual, stored, diff);
+        } else if (stored.getHash() != null && hasSameMetadata(actual, stored)
+                && isCompiledClass(actual) == stored.getHash()
+                        .startsWith(SchemaFingerprint.PREFIX)) {
+            actual.setHash(stored.getHash());
+            classify(actual, stored, diff);
+        } else {
+            diff.unfingerprintedActualFiles.add(actual);
+            diff.unfingerprintedStoredFiles.add(stored);
+        }
+    }
+
+    /**
+     * Classifies a fingerprinted file : modified, touched (its metadata changed but not its
+     * fingerprint) or unchanged.
+     *
+     * @param actual
+     *            The actual file, with its fingerprint
+     * @param stored
+     *            The file stored in the repository
+     * @param diff
+     *            The differences
+     */
+    private static void classify(final CheckedFile actual, final CheckedFile stored,
+            final Diff diff) {
+        if (!hasSameFingerprint(actual, stored)) {
+            diff.modifiedFiles.add(actual);
+        } else if (stored.getHash() == null || !hasSameMetadata(actual, stored)) {
+            diff.touchedFiles.add(actual);
+        }
+    }
+
+    /**
+     * Computes the root hash of the files : the hash of their names, last modified times and
+     * sizes. Content hashes are not included, as they are computed only when the metadata
+     * changed.
+     *
+     * @param sortedFiles
+     *            The files, sorted by name
+     * @return The root hash
+     */
+    private static String computeRootHash(final List<CheckedFile> sortedFiles) {
+        MessageDigest digest = HashUtils.newDigest();
+        sortedFiles.forEach(file -> {
+            digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(file.getLastModifiedTime())
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(file.getSize()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        });
+        return HashUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Checks if a file is compared using its fingerprint rather than its last modified time.
+     * It is the case of :
+     * - every file in content-hash mode
+     * - compiled classes in bytecode fingerprint mode
+     * - JAR entries, whose CRC-32 is known without reading them
+     *
+     * @param file
+     *            The file
+     * @return true if the file has a fingerprint
+     */
+    private boolean isFingerprinted(final CheckedFile file) {
+        return file.getHash() != null
+                || this.changeDetectionMode == ChangeDetectionMode.CONTENT_HASH
+                || isCompiledClass(file);
+    }
+
+    private boolean isCompiledClass(final CheckedFile file) {
+        return this.bytecodeFingerprint && file.getName().endsWith(CLASS_FILE_EXTENSION);
+    }
+
+    /**
+     * Computes the fingerprints of the files, in parallel.
+     *
+     * @param files
+     *            The files
+     */
+    private void computeFingerprints(final List<CheckedFile> files) {
+        ExecutorUtils.join(CompletableFuture.allOf(files.stream()
+                .map(file -> CompletableFuture.runAsync(() -> file.setHash(fingerprint(file)),
+                        this.executor))
+                .toArray(CompletableFuture[]::new)));
+    }
+
+    /**
+     * Computes the fingerprint of a file : the schema fingerprint for compiled classes, the
+     * content hash for the other ones.
+     *
+     * @param file
+     *            The file
+     * @return The fingerprint
+     */
+    private String fingerprint(final CheckedFile file) {
+        Path path = Paths.get(file.getName());
+        return isCompiledClass(file) ? SchemaFingerprint.of(path) : HashUtils.hash(path);
+    }
+
+    /**
+     * Checks if a file has the same fingerprint as the stored one.
+     * Without stored fingerprint, the metadata are compared.
+     *
+     * @param actual
+     *            The actual file
+     * @param stored
+     *            The file stored in the repository
+     * @return true if the fingerprint has not changed
+     */
+    private static boolean hasSameFingerprint(final CheckedFile actual,
+            final CheckedFile stored) {
+        return stored.getHash() == null ? hasSameMetadata(actual, stored)
+                : stored.getHash().equals(actual.getHash());
+    }
+
+    /**
+     * Checks if a file has the same metadata as the stored one.
+     * The size is compared only if it is known.
      *
      * @param actual
      *            The actual file
-     * @param inRepository
-     *            The repository
-     * @return true if the file has changed
+     * @param stored
+     *            The file stored in the repository
+     * @return true if the last modified time and the size have not changed
      */
-    private static boolean hasBeenModified(final CheckedFile actual,
-            final Map<String, CheckedFile> inRepository) {
-        return inRepository.containsKey(actual.getName()) && !inRepository.get(actual.getName())
-                .getLastModifiedTime().equals(actual.getLastModifiedTime());
+    private static boolean hasSameMetadata(final CheckedFile actual, final CheckedFile stored) {
+        return stored.getLastModifiedTime().equals(actual.getLastModifiedTime())
+                && (stored.getSize() == null || stored.getSize().equals(actual.getSize()));
     }
 
-    private static File handleResourceNotFound(final String resource) {
+    private static void handleResourceNotFound(final String resource) {
         LOGGER.warn("Resource {} was not found : it will not be checked for modifications",
                 resource);
-        return null;
     }
 
     private static String classToFileName(final String className) {
         return className.replace(".", "/") + ".java";
     }
 
-    private static File handleClassNotFound(final String resource) {
+    private static String classToClasspathName(final String className) {
+        return className.replace(".", "/") + ".class";
+    }
+
+    private static void handleClassNotFound(final String resource) {
         LOGGER.warn("Class {} was not found : it will not be checked for modifications", resource);
-        return null;
     }
 
-    private static Optional<File> extractFile(final String filename, final List<String> folders) {
-        return folders.stream().map(folder -> folder + "/" + filename).map(File::new)
-                .filter(File::exists).findFirst();
+    /**
+     * Finds a file in the given folders.
+     *
+     * @param filename
+     *            The file name
+     * @param folders
+     *            The folders to search in, by priority
+     * @param indexes
+     *            The indexes of the folders
+     * @return The file found in the first folder containing it, if any
+     */
+    private static Optional<CheckedFile> resolveFile(final String filename,
+            final List<String> folders, final List<SourceRootIndex> indexes) {
+        for (int i = 0; i < folders.size(); i++) {
+            Optional<BasicFileAttributes> attributes = indexes.get(i).find(filename);
+            if (attributes.isPresent()) {
+                return Optional.of(toCheckedFile(folders.get(i) + "/" + filename,
+                        attributes.get()));
+            }
+        }
+        return Optional.empty();
     }
 
-    private static CheckedFile toCheckedFile(final File file) {
+    /**
+     * Finds a file in the classpath, either in a folder or inside a JAR.
+     *
+     * @param classpathName
+     *            The classpath resource name
+     * @return The file, if any
+     */
+    private Optional<CheckedFile> resolveClasspathResource(final String classpathName) {
+        if (this.classLoader == null) {
+            return Optional.empty();
+        }
+        URL url = this.classLoader.getResource(classpathName);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return this.resolveJarEntry(classpathName);
+        }
         try {
-            return new CheckedFile(file.getPath().replace("\\", "/"), LocalDateTime.ofInstant(
-                    Files.getLastModifiedTime(file.toPath()).toInstant(), ZoneId.systemDefault()));
-        } catch (IOException e) {
-            throw new IllegalStateException(
-                    "Unable to get last modified time for file " + file.getPath(), e);
+            Path path = Paths.get(url.toURI());
+            return Optional.of(toCheckedFile(toDisplayPath(path),
+                    Files.readAttributes(path, BasicFileAttributes.class)));
+        } catch (URISyntaxException | IllegalArgumentException | IOException e) {
+            LOGGER.debug("Unsupported classpath location {}", url, e);
+            return Optional.empty();
         }
     }
 
+    /**
+     * Finds a file inside a JAR of the classpath.
+     * The entry is described by the JAR central directory : its content is not read, and its
+     * CRC-32 is used as hash. Files which are not inside a JAR (or inside a nested JAR) are
+     * ignored.
+     *
+     * @param classpathName
+     *            The classpath resource name
+     * @return The JAR entry, if any
+     */
+    private Optional<CheckedFile> resolveJarEntry(final String classpathName) {
+        if (this.classLoader == null || !this.jarLookup) {
+            return Optional.empty();
+        }
+        URL url = this.classLoader.getResource(classpathName);
+        if (url == null || !"jar".equals(url.getProtocol())) {
+            return Optional.empty();
+        }
+        String spec = url.getPath();
+        int separator = spec.indexOf("!/");
+        if (separator < 0 || spec.indexOf("!/", separator + 2) >= 0) {
+            return Optional.empty();
+        }
+        Path jar;
+        try {
+            jar = Paths.get(new URI(spec.substring(0, separator)));
+        } catch (URISyntaxException | IllegalArgumentException
+                | FileSystemNotFoundException e) {
+            LOGGER.debug("Unsupported JAR location {}", spec, e);
+            return Optional.empty();
+        }
+        String entryName = spec.substring(separator + 2);
+        return JarIndex.get(jar).find(entryName)
+                .map(entry -> new CheckedFile(toDisplayPath(jar) + JAR_SEPARATOR + entryName,
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getTime()),
+                                ZoneId.systemDefault()),
+                        entry.getSize(), String.format("crc32:%08x", entry.getCrc())));
+    }
+
+    /**
+     * Converts a path to the form used in checked files names.
+     * Paths inside the working directory are relative, the other ones are absolute.
+     *
+     * @param path
+     *            The path
+     * @return The path, using '/' as separator
+     */
+    private static String toDisplayPath(final Path path) {
+        Path workingDirectory = Paths.get("").toAbsolutePath();
+        Path absolutePath = path.toAbsolutePath().normalize();
+        Path displayPath = absolutePath.startsWith(workingDirectory)
+                ? workingDirectory.relativize(absolutePath)
+                : absolutePath;
+        return displayPath.toString().replace('\\', '/');
+    }
+
+    private static CheckedFile toCheckedFile(final String path,
+            final BasicFileAttributes attributes) {
+        return new CheckedFile(path.replace("\\", "/"),
+                LocalDateTime.ofInstant(attributes.lastModifiedTime().toInstant(),
+                        ZoneId.systemDefault()),
+                attributes.size(), null);
+    }
+
     private static void logChanges(final List<CheckedFile> changes, final String prefix,
             final String suffix) {
         for (CheckedFile change : changes) {
             LOGGER.info("{}{}{}", prefix, change.getName(), suffix);
         }
     }
+
+    /**
+     * Content of the repository : the root hash and the checked files.
+     */
+    @RequiredArgsConstructor
+    private static final class StoredFiles {
+
+        private final String rootHash;
+
+        private final CheckedFileSet files;
+    }
+
+    /**
+     * Live mode baseline waiting for the repository to be up to date.
+     */
+    @RequiredArgsConstructor
+    private static final class PendingBaseline {
+
+        private final String names;
+
+        private final CheckedFileSet files;
+
+        private final long generation;
+    }
+
+    /**
+     * Differences between the actual files and the repository ones.
+     */
+    private static final class Diff {
+
+        private final List<CheckedFile> addedFiles = new ArrayList<>();
+
+        private final List<CheckedFile> modifiedFiles = new ArrayList<>();
+
+        private final List<CheckedFile> deletedFiles = new ArrayList<>();
+
+        private final List<CheckedFile> touchedFiles = new ArrayList<>();
+
+        // Files in both lists whose fingerprint has to be computed, in the same order
+        private final List<CheckedFile> unfingerprintedActualFiles = new ArrayList<>();
+
+        private final List<CheckedFile> unfingerprintedStoredFiles = new ArrayList<>();
+
+        private int storedFileCount;
+
+        private boolean hasChanges() {
+            return !this.addedFiles.isEmpty() || !this.modifiedFiles.isEmpty()
+                    || !this.deletedFiles.isEmpty();
+        }
+    }
+
+    /**
+     * Iterator measuring the time spent reading its elements.
+     *
+     * @param <T>
+     *            The elements type
+     */
+    @RequiredArgsConstructor
+    private static final class TimedIterator<T> implements Iterator<T> {
+
+        private final Iterator<T> iterator;
+
+        // Time spent in the iterator, in nanoseconds
+        private long duration;
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return this.iterator.hasNext();
+            } finally {
+                this.duration += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public T next() {
+            long start = System.nanoTime();
+            try {
+                return this.iterator.next();
+            } finally {
+                this.duration += System.nanoTime() - start;
+            }
+        }
+    }
 }
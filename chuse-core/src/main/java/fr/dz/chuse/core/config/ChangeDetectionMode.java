@@ -0,0 +1,19 @@
+package fr.dz.chuse.core.config;
+
+/**
+ * How Chuse detects that a file has been modified.
+ */
+public enum ChangeDetectionMode {
+
+    /**
+     * A file is modified if its last modified time has changed.
+     */
+    LAST_MODIFIED_TIME,
+
+    /**
+     * A file is modified if its content has changed.
+     * The content is hashed only if the last modified time or the size has changed, so that
+     * touching a file (checkout, stash...) doesn't trigger a re-build.
+     */
+    CONTENT_HASH
+}
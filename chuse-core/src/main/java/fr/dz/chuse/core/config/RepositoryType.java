@@ -0,0 +1,17 @@
+package fr.dz.chuse.core.config;
+
+/**
+ * Where Chuse stores the checked files.
+ */
+public enum RepositoryType {
+
+    /**
+     * In the checked database, using JDBC.
+     */
+    JDBC,
+
+    /**
+     * In a local binary file, which avoids database round trips.
+     */
+    FILE
+}
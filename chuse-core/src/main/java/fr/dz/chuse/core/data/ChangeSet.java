@@ -0,0 +1,155 @@
+package fr.dz.chuse.core.data;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The changes between the checked files stored in the repository and the actual ones.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+@EqualsAndHashCode
+public class ChangeSet implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Files that are not in the repository yet
+    private final List<CheckedFile> addedFiles;
+
+    // Files whose repository entry is outdated
+    private final List<CheckedFile> modifiedFiles;
+
+    // Repository entries whose file doesn't exist anymore
+    private final List<CheckedFile> deletedFiles;
+
+    // Files whose content has not changed but whose repository entry has to be refreshed
+    private final List<CheckedFile> touchedFiles;
+
+    // Root hash of the actual files, stored with the changes (null to clear the stored one)
+    private final String rootHash;
+
+    // All the actual files, if the check has stopped at the first change (null if the changes
+    // are complete) : they replace the repository content
+    private final List<CheckedFile> actualFiles;
+
+    /**
+     * Constructor for complete changes.
+     *
+     * @param addedFiles
+     *            Files that are not in the repository yet
+     * @param modifiedFiles
+     *            Files whose repository entry is outdated
+     * @param deletedFiles
+     *            Repository entries whose file doesn't exist anymore
+     * @param touchedFiles
+     *            Files whose content has not changed but whose repository entry has to be
+     *            refreshed
+     * @param rootHash
+     *            Root hash of the actual files (null to clear the stored one)
+     */
+    public ChangeSet(final List<CheckedFile> addedFiles, final List<CheckedFile> modifiedFiles,
+            final List<CheckedFile> deletedFiles, final List<CheckedFile> touchedFiles,
+            final String rootHash) {
+        this(addedFiles, modifiedFiles, deletedFiles, touchedFiles, rootHash, null);
+    }
+
+    /**
+     * Constructor for a change set without root hash.
+     *
+     * @param addedFiles
+     *            Files that are not in the repository yet
+     * @param modifiedFiles
+     *            Files whose repository entry is outdated
+     * @param deletedFiles
+     *            Repository entries whose file doesn't exist anymore
+     * @param touchedFiles
+     *            Files whose content has not changed but whose repository entry has to be
+     *            refreshed
+     */
+    public ChangeSet(final List<CheckedFile> addedFiles, final List<CheckedFile> modifiedFiles,
+            final List<CheckedFile> deletedFiles, final List<CheckedFile> touchedFiles) {
+        this(addedFiles, modifiedFiles, deletedFiles, touchedFiles, null);
+    }
+
+    /**
+     * Constructor for a change set without touched file.
+     *
+     * @param addedFiles
+     *            Files that are not in the repository yet
+     * @param modifiedFiles
+     *            Files whose repository entry is outdated
+     * @param deletedFiles
+     *            Repository entries whose file doesn't exist anymore
+     */
+    public ChangeSet(final List<CheckedFile> addedFiles, final List<CheckedFile> modifiedFiles,
+            final List<CheckedFile> deletedFiles) {
+        this(addedFiles, modifiedFiles, deletedFiles, Collections.emptyList());
+    }
+
+    /**
+     * Creates an empty change set.
+     *
+     * @return The change set
+     */
+    public static ChangeSet empty() {
+        return new ChangeSet(Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList());
+    }
+
+    /**
+     * Checks if there is at least one change.
+     *
+     * @return true if there is at least one added, modified or deleted file
+     */
+    public boolean hasChanged() {
+        return !this.addedFiles.isEmpty() || !this.modifiedFiles.isEmpty()
+                || !this.deletedFiles.isEmpty();
+    }
+
+    /**
+     * Checks if all the changes have been found.
+     * Otherwise, the check has stopped at the first change, and the actual files replace the
+     * repository content.
+     *
+     * @return true if the changes are complete
+     */
+    public boolean isComplete() {
+        return this.actualFiles == null;
+    }
+
+    /**
+     * Checks if the repository has to be updated.
+     * It is the case if there is at least one change or one touched file.
+     *
+     * @return true if the repository has to be updated
+     */
+    public boolean hasUpdates() {
+        return this.hasChanged() || !this.touchedFiles.isEmpty();
+    }
+
+    /**
+     * Checks if the root hash stored in the repository has to be replaced.
+     * Only change sets computed from a full comparison have a root hash.
+     *
+     * @return true if there is a root hash
+     */
+    public boolean hasRootHash() {
+        return this.rootHash != null;
+    }
+
+    /**
+     * Counts the changes.
+     *
+     * @return The number of added, modified and deleted files (touched files are not changes)
+     */
+    public int size() {
+        return this.addedFiles.size() + this.modifiedFiles.size() + this.deletedFiles.size();
+    }
+}
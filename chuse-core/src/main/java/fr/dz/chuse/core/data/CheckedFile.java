@@ -26,4 +26,22 @@ public class CheckedFile implements Serializable {
     private String name;
 
     private LocalDateTime lastModifiedTime;
+
+    // Size in bytes (null if unknown)
+    private Long size;
+
+    // Content hash (null if it has not been computed)
+    private String hash;
+
+    /**
+     * Constructor for a file whose size and content hash are unknown.
+     *
+     * @param name
+     *            The file name
+     * @param lastModifiedTime
+     *            The file last modified time
+     */
+    public CheckedFile(final String name, final LocalDateTime lastModifiedTime) {
+        this(name, lastModifiedTime, null, null);
+    }
 }
@@ -0,0 +1,356 @@
+package fr.dz.chuse.core.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import fr.dz.chuse.core.utils.DateUtils;
+
+/**
+ * An immutable set of checked files, sorted by name, using far less memory than one CheckedFile
+ * per file : the directories of the names are shared through a dictionary, and the last modified
+ * times and sizes are stored in primitive arrays.
+ * Files are found by name using a binary search, and CheckedFile instances are only created when
+ * they are requested.
+ */
+public final class CheckedFileSet implements Iterable<CheckedFile> {
+
+    // Marks an unknown size
+    private static final long UNKNOWN_SIZE = -1;
+
+    private static final CheckedFileSet EMPTY = builder().build();
+
+    // Directories of the names (including their trailing slash, empty for a name without any)
+    private final String[] directories;
+
+    // Index of the directory of each file
+    private final int[] directoryIndexes;
+
+    // Names without their directory
+    private final String[] fileNames;
+
+    // Last modified times, as given by DateUtils.toEpochNanos
+    private final long[] lastModifiedNanos;
+
+    private final long[] sizes;
+
+    private final String[] hashes;
+
+    /**
+     * Constructor.
+     *
+     * @param builder
+     *            The builder, whose files are sorted by name
+     */
+    private CheckedFileSet(final Builder builder) {
+        int size = builder.size;
+        this.directories = builder.directories.toArray(new String[0]);
+        this.directoryIndexes = Arrays.copyOf(builder.directoryIndexes, size);
+        this.fileNames = Arrays.copyOf(builder.fileNames, size);
+        this.lastModifiedNanos = Arrays.copyOf(builder.lastModifiedNanos, size);
+        this.sizes = Arrays.copyOf(builder.sizes, size);
+        this.hashes = Arrays.copyOf(builder.hashes, size);
+    }
+
+    /**
+     * Gets an empty set.
+     *
+     * @return The set
+     */
+    public static CheckedFileSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set containing the given files.
+     *
+     * @param files
+     *            The files, in any order
+     * @return The set
+     */
+    public static CheckedFileSet of(final Collection<CheckedFile> files) {
+        return of(files.stream());
+    }
+
+    /**
+     * Creates a set containing the given files.
+     * Files sorted by name are added one at a time : they don't have to be all loaded.
+     *
+     * @param files
+     *            The files, in any order
+     * @return The set
+     */
+    public static CheckedFileSet of(final Stream<CheckedFile> files) {
+        Builder builder = builder();
+        files.forEachOrdered(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Creates a builder.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Gets the number of files.
+     *
+     * @return The number of files
+     */
+    public int size() {
+        return this.fileNames.length;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return true if there is no file
+     */
+    public boolean isEmpty() {
+        return this.fileNames.length == 0;
+    }
+
+    /**
+     * Gets the name of a file.
+     *
+     * @param index
+     *            The file index
+     * @return The name
+     */
+    public String getName(final int index) {
+        return this.directories[this.directoryIndexes[index]].concat(this.fileNames[index]);
+    }
+
+    /**
+     * Gets the last modified time of a file, as given by {@link DateUtils#toEpochNanos}.
+     *
+     * @param index
+     *            The file index
+     * @return The last modified time
+     */
+    public long getLastModifiedNanos(final int index) {
+        return this.lastModifiedNanos[index];
+    }
+
+    /**
+     * Gets a file.
+     * A new CheckedFile is created on each call.
+     *
+     * @param index
+     *            The file index
+     * @return The file
+     */
+    public CheckedFile get(final int index) {
+        long size = this.sizes[index];
+        return new CheckedFile(this.getName(index),
+                DateUtils.fromEpochNanos(this.lastModifiedNanos[index]),
+                size == UNKNOWN_SIZE ? null : size, this.hashes[index]);
+    }
+
+    /**
+     * Finds the index of a file, using a binary search.
+     *
+     * @param name
+     *            The file name
+     * @return The file index if it is found, otherwise (-(insertion point) - 1)
+     */
+    public int indexOf(final String name) {
+        int low = 0;
+        int high = this.fileNames.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = this.compareName(middle, name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Finds a file by name.
+     *
+     * @param name
+     *            The file name
+     * @return The file, if any
+     */
+    public Optional<CheckedFile> find(final String name) {
+        int index = this.indexOf(name);
+        return index < 0 ? Optional.empty() : Optional.of(this.get(index));
+    }
+
+    /**
+     * Streams the files, sorted by name, creating them one at a time.
+     *
+     * @return The files
+     */
+    public Stream<CheckedFile> stream() {
+        return IntStream.range(0, this.fileNames.length).mapToObj(this::get);
+    }
+
+    @Override
+    public Iterator<CheckedFile> iterator() {
+        return this.stream().iterator();
+    }
+
+    /**
+     * Creates the files, sorted by name.
+     *
+     * @return The files
+     */
+    public List<CheckedFile> toList() {
+        return this.stream().collect(Collectors.toList());
+    }
+
+    /**
+     * Compares the name of a file with the given one, as String.compareTo would, without
+     * concatenating it.
+     *
+     * @param index
+     *            The file index
+     * @param name
+     *            The name
+     * @return The comparison
+     */
+    private int compareName(final int index, final String name) {
+        String directory = this.directories[this.directoryIndexes[index]];
+        String fileName = this.fileNames[index];
+        int directoryLength = directory.length();
+        int length = directoryLength + fileName.length();
+        int limit = Math.min(length, name.length());
+        for (int i = 0; i < limit; i++) {
+            char c = i < directoryLength ? directory.charAt(i)
+                    : fileName.charAt(i - directoryLength);
+            if (c != name.charAt(i)) {
+                return c - name.charAt(i);
+            }
+        }
+        return length - name.length();
+    }
+
+    /**
+     * Builder of a CheckedFileSet.
+     * Files are expected to be added sorted by name : otherwise they are sorted when the set is
+     * built.
+     */
+    public static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final List<String> directories = new ArrayList<>();
+
+        private final Map<String, Integer> directoryIndexByName = new HashMap<>();
+
+        private int[] directoryIndexes = new int[INITIAL_CAPACITY];
+
+        private String[] fileNames = new String[INITIAL_CAPACITY];
+
+        private long[] lastModifiedNanos = new long[INITIAL_CAPACITY];
+
+        private long[] sizes = new long[INITIAL_CAPACITY];
+
+        private String[] hashes = new String[INITIAL_CAPACITY];
+
+        private int size;
+
+        private String lastName;
+
+        private boolean sorted = true;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a file.
+         *
+         * @param file
+         *            The file
+         * @return The builder
+         */
+        public Builder add(final CheckedFile file) {
+            return this.add(file.getName(), DateUtils.toEpochNanos(file.getLastModifiedTime()),
+                    file.getSize(), file.getHash());
+        }
+
+        /**
+         * Adds a file.
+         *
+         * @param name
+         *            The file name
+         * @param lastModifiedNanos
+         *            The file last modified time, as given by {@link DateUtils#toEpochNanos}
+         * @param size
+         *            The file size in bytes (null if unknown)
+         * @param hash
+         *            The file content hash (null if it has not been computed)
+         * @return The builder
+         */
+        public Builder add(final String name, final long lastModifiedNanos, final Long size,
+                final String hash) {
+            if (this.size == this.fileNames.length) {
+                int capacity = this.size * 2;
+                this.directoryIndexes = Arrays.copyOf(this.directoryIndexes, capacity);
+                this.fileNames = Arrays.copyOf(this.fileNames, capacity);
+                this.lastModifiedNanos = Arrays.copyOf(this.lastModifiedNanos, capacity);
+                this.sizes = Arrays.copyOf(this.sizes, capacity);
+                this.hashes = Arrays.copyOf(this.hashes, capacity);
+            }
+            if (this.lastName != null && this.lastName.compareTo(name) > 0) {
+                this.sorted = false;
+            }
+            this.lastName = name;
+
+            // Sorted names mostly share the directory of the previous one
+            int separator = name.lastIndexOf('/') + 1;
+            int directoryIndex = this.size == 0 ? -1 : this.directoryIndexes[this.size - 1];
+            if (directoryIndex < 0 || this.directories.get(directoryIndex).length() != separator
+                    || !name.startsWith(this.directories.get(directoryIndex))) {
+                directoryIndex = this.directoryIndexByName.computeIfAbsent(
+                        name.substring(0, separator), directory -> {
+                            this.directories.add(directory);
+                            return this.directories.size() - 1;
+                        });
+            }
+            this.directoryIndexes[this.size] = directoryIndex;
+            this.fileNames[this.size] = name.substring(separator);
+            this.lastModifiedNanos[this.size] = lastModifiedNanos;
+            this.sizes[this.size] = size == null ? UNKNOWN_SIZE : size;
+            this.hashes[this.size] = hash;
+            this.size++;
+            return this;
+        }
+
+        /**
+         * Builds the set.
+         *
+         * @return The set
+         */
+        public CheckedFileSet build() {
+            CheckedFileSet set = new CheckedFileSet(this);
+            if (this.sorted) {
+                return set;
+            }
+            List<CheckedFile> files = set.toList();
+            files.sort(Comparator.comparing(CheckedFile::getName));
+            Builder sortedBuilder = new Builder();
+            files.forEach(sortedBuilder::add);
+            return sortedBuilder.build();
+        }
+    }
+}
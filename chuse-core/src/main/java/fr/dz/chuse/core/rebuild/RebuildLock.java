@@ -0,0 +1,125 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.utils.HashUtils;
+
+/**
+ * Lock held while re-building a database, so that parallel JVMs (test forks for instance) don't
+ * re-build the same database concurrently : the first one re-builds it, the other ones wait and
+ * then find that nothing has changed anymore.
+ * It is a file lock, so that it works across JVMs of the same host. As a JVM can't lock the same
+ * file twice, it is completed by a lock shared by the JVM threads.
+ */
+public final class RebuildLock implements AutoCloseable {
+
+    /**
+     * Default lock file, shared by all the databases : see {@link #defaultPath(String)} for a
+     * lock file per database.
+     */
+    public static final String DEFAULT_PATH = "target/chuse/rebuild.lock";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RebuildLock.class);
+
+    // Locks of this JVM, by lock file (semaphores, as they may be released by another thread)
+    private static final ConcurrentMap<Path, Semaphore> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Semaphore localLock;
+
+    private final FileChannel channel;
+
+    private final FileLock fileLock;
+
+    private RebuildLock(final Semaphore localLock, final FileChannel channel,
+            final FileLock fileLock) {
+        this.localLock = localLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Gets the default lock file of a database, so that re-builds of different databases (or
+     * persistence units) don't wait for each other.
+     *
+     * @param key
+     *            The database key (its URL, schema and checked files scope for instance)
+     * @return The lock file
+     */
+    public static Path defaultPath(final String key) {
+        return Paths.get(DEFAULT_PATH.replace(".lock",
+                "-" + HashUtils.hash(Collections.singletonList(key)).substring(0, 16) + ".lock"));
+    }
+
+    /**
+     * Acquires the lock, waiting for the other threads and JVMs holding it.
+     *
+     * @param path
+     *            The lock file
+     * @return The lock, to be closed once the database has been re-built
+     */
+    public static RebuildLock acquire(final Path path) {
+        Path lockFile = path.toAbsolutePath().normalize();
+        Semaphore localLock = LOCAL_LOCKS.computeIfAbsent(lockFile, file -> new Semaphore(1));
+        FileChannel channel = null;
+        try {
+            if (!localLock.tryAcquire()) {
+                LOGGER.info("Waiting for another thread re-building the database...");
+                localLock.acquire();
+            }
+            Files.createDirectories(lockFile.getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                LOGGER.info("Waiting for another process re-building the database...");
+                fileLock = channel.lock();
+            }
+            return new RebuildLock(localLock, channel, fileLock);
+        } catch (IOException | RuntimeException e) {
+            release(localLock, channel);
+            throw new IllegalStateException("Unable to lock " + lockFile, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + lockFile, e);
+        }
+    }
+
+    /**
+     * Releases the lock.
+     */
+    @Override
+    public void close() {
+        try {
+            this.fileLock.release();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to release the rebuild lock", e);
+        } finally {
+            release(this.localLock, this.channel);
+        }
+    }
+
+    private static void release(final Semaphore localLock, final FileChannel channel) {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the rebuild lock file", e);
+        } finally {
+            localLock.release();
+        }
+    }
+}
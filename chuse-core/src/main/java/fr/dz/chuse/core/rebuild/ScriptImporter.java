@@ -0,0 +1,313 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Imports SQL scripts (the hibernate.hbm2ddl.import_files) faster than Hibernate does.
+ * Scripts are read as a stream, and consecutive INSERT statements are sent in JDBC batches,
+ * merged into multi-row INSERT statements when the database supports them. All the scripts are
+ * imported in a single transaction.
+ * Like Hibernate (hibernate.hbm2ddl.halt_on_error=false), a failing statement is logged and
+ * skipped by default : a failing batch is rolled back to a savepoint, then its statements are
+ * executed again one at a time (databases without savepoints always halt on error). When
+ * halting on error, the whole import is rolled back instead.
+ */
+@RequiredArgsConstructor
+public class ScriptImporter {
+
+    /**
+     * Default number of statements sent in a single JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Default number of rows merged into a single INSERT statement.
+     */
+    public static final int DEFAULT_ROWS_PER_INSERT = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScriptImporter.class);
+
+    // INSERT INTO table [(columns)] VALUES (...)[, (...)]
+    private static final Pattern INSERT_PATTERN = Pattern.compile(
+            "^(INSERT\\s+INTO\\s+[^\\s(]+\\s*(?:\\([^()]*\\))?\\s*VALUES)\\s*(\\(.*\\))$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    // Databases supporting multi-row INSERT statements
+    private static final Pattern MULTI_ROW_DATABASES = Pattern
+            .compile(".*(h2|hsql|mysql|mariadb|postgresql|microsoft sql server).*");
+
+    private final DataSource dataSource;
+
+    // Whether statements can be written on multiple lines (one statement per line by default)
+    @Setter
+    private boolean multipleLines;
+
+    // Charset of the scripts
+    @Setter
+    @NonNull
+    private Charset charset = StandardCharsets.UTF_8;
+
+    // Number of statements sent in a single JDBC batch
+    @Setter
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    // Number of rows merged into a single INSERT statement (1 to disable merging)
+    @Setter
+    private int rowsPerInsert = DEFAULT_ROWS_PER_INSERT;
+
+    // Whether a failing statement stops the import (otherwise, it is logged and skipped)
+    @Setter
+    private boolean haltOnError;
+
+    /**
+     * Imports the given scripts, in a single transaction.
+     *
+     * @param scripts
+     *            The scripts
+     * @return The number of imported statements (the skipped ones excepted)
+     */
+    public long importScripts(final List<URL> scripts) {
+        try (Connection connection = this.dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                boolean multiRow = this.rowsPerInsert > 1
+                        && MULTI_ROW_DATABASES.matcher(connection.getMetaData()
+                                .getDatabaseProductName().toLowerCase(Locale.ROOT)).matches();
+                Batch batch = new Batch(statement, multiRow,
+                        !this.haltOnError && connection.getMetaData().supportsSavepoints());
+                long count = 0;
+                for (URL script : scripts) {
+                    LOGGER.debug("Importing script {}", script);
+                    count += this.importScript(script, batch);
+                }
+                batch.flush();
+                connection.commit();
+                count -= batch.failedCount;
+                if (batch.failedCount > 0) {
+                    LOGGER.warn("{} statements have been imported from {}, {} have failed", count,
+                            scripts, batch.failedCount);
+                } else {
+                    LOGGER.info("{} statements have been imported from {}", count, scripts);
+                }
+                return count;
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Unable to import scripts " + scripts, e);
+        }
+    }
+
+    private long importScript(final URL script, final Batch batch)
+            throws IOException, SQLException {
+        long count = 0;
+        try (SqlScriptReader reader = new SqlScriptReader(
+                new InputStreamReader(script.openStream(), this.charset), this.multipleLines)) {
+            String sql;
+            while ((sql = reader.next()) != null) {
+                batch.add(sql);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the given VALUES clause is only a list of rows : (...), (...).
+     * It is not the case of a clause followed by ON DUPLICATE KEY, RETURNING...
+     *
+     * @param values
+     *            The VALUES clause, starting and ending with a parenthesis
+     * @return true if it is a list of rows
+     */
+    private static boolean isRowList(final String values) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < values.length(); i++) {
+            char c = values.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && c != ',' && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return depth == 0 && quote == 0;
+    }
+
+    /**
+     * Pending statements : a JDBC batch, and the rows of the INSERT statement being merged.
+     * The script statements of the batch are kept, so that they can be executed one at a time
+     * if it fails.
+     */
+    private final class Batch {
+
+        private final Statement statement;
+
+        private final boolean multiRow;
+
+        // Whether failing statements are rolled back to a savepoint, and skipped
+        private final boolean skipErrors;
+
+        private final StringBuilder rows = new StringBuilder();
+
+        // Script statements merged into the INSERT statement
+        private final List<String> insertStatements = new ArrayList<>();
+
+        // Script statements of the JDBC batch
+        private final List<String> batchStatements = new ArrayList<>();
+
+        private String insertPrefix;
+
+        private int rowCount;
+
+        private int statementCount;
+
+        private long failedCount;
+
+        private Batch(final Statement statement, final boolean multiRow,
+                final boolean skipErrors) {
+            this.statement = statement;
+            this.multiRow = multiRow;
+            this.skipErrors = skipErrors;
+        }
+
+        private void add(final String sql) throws SQLException {
+            if (!sql.regionMatches(true, 0, "INSERT", 0, 6)) {
+
+                // Other statements may depend on the pending ones
+                this.flush();
+                this.executeAlone(sql);
+                return;
+            }
+            Matcher matcher = INSERT_PATTERN.matcher(sql);
+            if (this.multiRow && matcher.matches() && isRowList(matcher.group(2))) {
+                String prefix = matcher.group(1).replaceAll("\\s+", " ");
+                if (!prefix.equals(this.insertPrefix)) {
+                    this.closeInsert();
+                    this.insertPrefix = prefix;
+                }
+                this.rows.append(this.rowCount == 0 ? "" : ", ").append(matcher.group(2));
+                this.insertStatements.add(sql);
+                this.rowCount++;
+                if (this.rowCount >= ScriptImporter.this.rowsPerInsert) {
+                    this.closeInsert();
+                }
+            } else {
+                this.closeInsert();
+                this.addBatch(sql, Collections.singletonList(sql));
+            }
+        }
+
+        private void closeInsert() throws SQLException {
+            if (this.rowCount > 0) {
+                String sql = this.insertPrefix + " " + this.rows;
+                List<String> statements = new ArrayList<>(this.insertStatements);
+                this.rows.setLength(0);
+                this.insertStatements.clear();
+                this.rowCount = 0;
+                this.addBatch(sql, statements);
+            }
+            this.insertPrefix = null;
+        }
+
+        private void addBatch(final String sql, final List<String> statements)
+                throws SQLException {
+            this.statement.addBatch(sql);
+            this.batchStatements.addAll(statements);
+            this.statementCount++;
+            if (this.statementCount >= ScriptImporter.this.batchSize) {
+                this.executeBatch();
+            }
+        }
+
+        private void flush() throws SQLException {
+            this.closeInsert();
+            this.executeBatch();
+        }
+
+        private void executeBatch() throws SQLException {
+            if (this.statementCount == 0) {
+                return;
+            }
+            this.statementCount = 0;
+            Savepoint savepoint = this.setSavepoint();
+            try {
+                this.statement.executeBatch();
+            } catch (SQLException e) {
+                if (savepoint == null) {
+                    throw e;
+                }
+
+                // Find the failing statements, executing them one at a time
+                LOGGER.debug("A batch has failed : its statements are executed one at a time", e);
+                this.statement.clearBatch();
+                this.statement.getConnection().rollback(savepoint);
+                for (String sql : this.batchStatements) {
+                    this.executeAlone(sql);
+                }
+            } finally {
+                this.batchStatements.clear();
+            }
+        }
+
+        private void executeAlone(final String sql) throws SQLException {
+            Savepoint savepoint = this.setSavepoint();
+            try {
+                this.statement.execute(sql);
+            } catch (SQLException e) {
+                if (savepoint == null) {
+                    throw e;
+                }
+                this.statement.getConnection().rollback(savepoint);
+                this.failedCount++;
+                LOGGER.warn("Unable to execute statement {} : {}", sql, e.getMessage());
+            }
+        }
+
+        /**
+         * Sets a savepoint, which failing statements are rolled back to.
+         *
+         * @return The savepoint, null if errors are not skipped
+         * @throws SQLException
+         *             SQL Error
+         */
+        private Savepoint setSavepoint() throws SQLException {
+            return this.skipErrors ? this.statement.getConnection().setSavepoint() : null;
+        }
+    }
+}
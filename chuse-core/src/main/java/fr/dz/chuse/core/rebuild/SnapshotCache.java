@@ -0,0 +1,311 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.check.database.DatabaseSchema;
+
+/**
+ * Cache of database snapshots, keyed by the content of the checked files.
+ * A snapshot is saved after each re-build, and restored instead of re-building the database when
+ * the checked files have the same content again (switching back to a branch, for instance).
+ * Snapshots are H2 scripts (SCRIPT / RUNSCRIPT), so that only embedded H2 databases are
+ * supported. They only contain the tables and sequences of the persistence unit (see
+ * {@link UnitObjects}) : the other tables of its schema (other persistence units, Chuse
+ * tables...) and the other schemas are left untouched. Keys must therefore identify the database
+ * and the schema, not only the checked files.
+ * The cache is bounded : the least recently used snapshots are evicted once the maximum size is
+ * reached.
+ */
+public class SnapshotCache {
+
+    /**
+     * Default snapshots directory.
+     */
+    public static final String DEFAULT_DIRECTORY = "target/chuse/snapshots";
+
+    /**
+     * Default maximum size of the cache, in bytes.
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotCache.class);
+
+    private static final String SNAPSHOT_EXTENSION = ".sql.gz";
+
+    // Sequence created by a script statement
+    private static final Pattern CREATE_SEQUENCE = Pattern.compile("^CREATE SEQUENCE (\\S+)");
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    /**
+     * Constructor.
+     *
+     * @param directory
+     *            The snapshots directory
+     * @param maxSize
+     *            The maximum size of the cache, in bytes
+     */
+    public SnapshotCache(final Path directory, final long maxSize) {
+        super();
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive : " + maxSize);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Checks if the database can be snapshot.
+     *
+     * @param dataSource
+     *            The database
+     * @return true if it is a H2 database
+     */
+    public static boolean isSupported(final DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return "H2".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read the database metadata", e);
+        }
+    }
+
+    /**
+     * Restores the snapshot of the given key, if it exists.
+     * The tables and sequences of the persistence unit are replaced by the snapshot ones. Nothing
+     * is done if a table which doesn't belong to the persistence unit references them, as its
+     * foreign keys would be lost.
+     *
+     * @param dataSource
+     *            The database
+     * @param unitObjects
+     *            The tables and sequences of the persistence unit
+     * @param key
+     *            The snapshot key
+     * @return true if the snapshot has been restored
+     */
+    public boolean restore(final DataSource dataSource, final UnitObjects unitObjects,
+            final String key) {
+        Path snapshot = this.snapshot(key);
+        if (!Files.isRegularFile(snapshot)) {
+            return false;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseSchema schema = DatabaseSchema.of(connection, unitObjects.getDefaultSchema());
+            String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+            Map<String, String[]> tables = unitObjects.findTables(connection, schema, quote);
+            Set<String> otherTables = new TreeSet<>();
+            UnitObjects.findReferencingTables(connection.getMetaData(), tables, quote).values()
+                    .forEach(otherTables::addAll);
+            otherTables.removeAll(tables.keySet());
+            if (!otherTables.isEmpty()) {
+                LOGGER.info("Tables {} reference the persistence unit tables : "
+                        + "the database snapshot will not be restored.", otherTables);
+                return false;
+            }
+
+            // Drop the tables and the sequences of the persistence unit
+            List<String> statements = new ArrayList<>();
+            tables.keySet().forEach(table -> statements.add("DROP TABLE " + table + " CASCADE"));
+            for (String sequence : unitObjects.findSequences(connection, tables.values())) {
+                statements.add("DROP SEQUENCE IF EXISTS " + TableDropper
+                        .qualify(new String[] { null, schema.getSchema(), sequence }, quote));
+            }
+            statements.add("RUNSCRIPT FROM " + literal(snapshot) + " COMPRESSION GZIP CHARSET "
+                    + literal(StandardCharsets.UTF_8.name()));
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    LOGGER.debug("Executing {}", sql);
+                    statement.execute(sql);
+                }
+            }
+
+            // The snapshot is now the most recently used one
+            Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Unable to restore the database snapshot " + snapshot,
+                    e);
+        }
+        LOGGER.info("Database has been restored from snapshot {}", snapshot);
+        return true;
+    }
+
+    /**
+     * Saves a snapshot of the tables and sequences of a persistence unit, then evicts the least
+     * recently used snapshots if the cache is too big.
+     * The script is filtered : H2 scripts contain all the sequences of the schema, the other
+     * persistence units ones must not be restored.
+     *
+     * @param dataSource
+     *            The database
+     * @param unitObjects
+     *            The tables and sequences of the persistence unit
+     * @param key
+     *            The snapshot key
+     */
+    public void save(final DataSource dataSource, final UnitObjects unitObjects,
+            final String key) {
+        Path snapshot = this.snapshot(key);
+        try {
+            Files.createDirectories(this.directory);
+            Path temporary = Files.createTempFile(this.directory,
+                    snapshot.getFileName().toString(), ".tmp");
+            try {
+                try (Connection connection = dataSource.getConnection()) {
+                    DatabaseSchema schema = DatabaseSchema.of(connection,
+                            unitObjects.getDefaultSchema());
+                    String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+                    Map<String, String[]> tables = unitObjects.findTables(connection, schema,
+                            quote);
+                    if (tables.isEmpty()) {
+                        LOGGER.debug("The persistence unit has no table : "
+                                + "no database snapshot will be saved");
+                        return;
+                    }
+                    Set<String> sequences = unitObjects.findSequences(connection,
+                            tables.values());
+                    writeScript(connection, tables.keySet(), sequences, temporary);
+                }
+                try {
+                    Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Unable to save the database snapshot " + snapshot, e);
+        }
+        LOGGER.debug("Database snapshot {} has been saved", snapshot);
+        this.evict();
+    }
+
+    /**
+     * Evicts the least recently used snapshots, until the cache size is under its maximum.
+     * The most recently used snapshot is always kept.
+     */
+    protected void evict() {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+                "*" + SNAPSHOT_EXTENSION)) {
+            stream.forEach(snapshots::add);
+            snapshots.sort(Comparator.comparing(SnapshotCache::lastModifiedTime).reversed());
+            long size = 0;
+            for (int i = 0; i < snapshots.size(); i++) {
+                size += Files.size(snapshots.get(i));
+                if (i > 0 && size > this.maxSize) {
+                    LOGGER.debug("Evicting database snapshot {}", snapshots.get(i));
+                    Files.deleteIfExists(snapshots.get(i));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("A snapshot has been evicted concurrently", e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to evict database snapshots", e);
+        }
+    }
+
+    private Path snapshot(final String key) {
+        return this.directory.resolve(key.toLowerCase(Locale.ROOT) + SNAPSHOT_EXTENSION);
+    }
+
+    private static FileTime lastModifiedTime(final Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Writes the script of some tables, with their sequences, to a compressed file.
+     *
+     * @param connection
+     *            The connection
+     * @param tables
+     *            The qualified names of the tables
+     * @param sequences
+     *            The names of the sequences to be kept, as the database stores them
+     * @param file
+     *            The file
+     * @throws SQLException
+     *             SQL Error
+     * @throws IOException
+     *             I/O Error
+     */
+    private static void writeScript(final Connection connection, final Collection<String> tables,
+            final Set<String> sequences, final Path file) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS TABLE "
+                        + String.join(", ", tables));
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(file)),
+                        StandardCharsets.UTF_8))) {
+            while (rs.next()) {
+                String sql = rs.getString(1);
+                Matcher matcher = CREATE_SEQUENCE.matcher(sql);
+                if (matcher.find() && !sequences.contains(unqualify(matcher.group(1)))) {
+                    continue;
+                }
+                writer.write(sql);
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * Gets the name of an object, without its schema nor its quotes.
+     *
+     * @param identifier
+     *            The qualified identifier
+     * @return The name
+     */
+    private static String unqualify(final String identifier) {
+        String name = identifier.substring(identifier.lastIndexOf('.') + 1);
+        return name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")
+                ? name.substring(1, name.length() - 1).replace("\"\"", "\"")
+                : name;
+    }
+
+    private static String literal(final String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private static String literal(final Path path) {
+        return literal(path.toAbsolutePath().toString());
+    }
+}
@@ -0,0 +1,140 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the statements of a SQL script, one at a time, without loading the whole script.
+ * Like Hibernate, scripts are read either :
+ * - with one statement per line (the Hibernate default), lines starting with a comment being
+ * ignored
+ * - with statements on multiple lines, terminated by a semicolon, comments being ignored
+ */
+public class SqlScriptReader implements Closeable {
+
+    private final BufferedReader reader;
+
+    private final boolean multipleLines;
+
+    /**
+     * Constructor.
+     *
+     * @param reader
+     *            The script reader
+     * @param multipleLines
+     *            Whether statements can be written on multiple lines, terminated by a semicolon
+     */
+    public SqlScriptReader(final Reader reader, final boolean multipleLines) {
+        super();
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader
+                : new BufferedReader(reader);
+        this.multipleLines = multipleLines;
+    }
+
+    /**
+     * Reads the next statement.
+     *
+     * @return The statement, without its terminating semicolon, null at the end of the script
+     * @throws IOException
+     *             I/O Error
+     */
+    public String next() throws IOException {
+        return this.multipleLines ? this.nextMultipleLines() : this.nextSingleLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    private String nextSingleLine() throws IOException {
+        String line;
+        while ((line = this.reader.readLine()) != null) {
+            String statement = line.trim();
+            if (statement.isEmpty() || statement.startsWith("--") || statement.startsWith("//")
+                    || statement.startsWith("/*")) {
+                continue;
+            }
+            statement = stripSemicolon(statement);
+            if (!statement.isEmpty()) {
+                return statement;
+            }
+        }
+        return null;
+    }
+
+    private String nextMultipleLines() throws IOException {
+        StringBuilder statement = new StringBuilder();
+        int c;
+        while ((c = this.reader.read()) != -1) {
+            if (c == '\'' || c == '"') {
+
+                // Quoted literal or identifier (a doubled quote is escaped)
+                statement.append((char) c);
+                this.readQuoted(statement, (char) c);
+            } else if ((c == '-' || c == '/') && this.peek() == c) {
+
+                // Line comment
+                this.reader.readLine();
+                statement.append('\n');
+            } else if (c == '/' && this.peek() == '*') {
+
+                // Block comment
+                this.reader.read();
+                this.skipBlockComment();
+                statement.append(' ');
+            } else if (c == ';') {
+                String trimmed = statement.toString().trim();
+                if (!trimmed.isEmpty()) {
+                    return trimmed;
+                }
+                statement.setLength(0);
+            } else {
+                statement.append((char) c);
+            }
+        }
+        String trimmed = statement.toString().trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private void readQuoted(final StringBuilder statement, final char quote) throws IOException {
+        int c;
+        while ((c = this.reader.read()) != -1) {
+            statement.append((char) c);
+            if (c == quote) {
+                if (this.peek() != quote) {
+                    return;
+                }
+                statement.append((char) this.reader.read());
+            }
+        }
+    }
+
+    private void skipBlockComment() throws IOException {
+        int previous = -1;
+        int c;
+        while ((c = this.reader.read()) != -1) {
+            if (previous == '*' && c == '/') {
+                return;
+            }
+            previous = c;
+        }
+    }
+
+    private int peek() throws IOException {
+        this.reader.mark(1);
+        int c = this.reader.read();
+        this.reader.reset();
+        return c;
+    }
+
+    private static String stripSemicolon(final String statement) {
+        String stripped = statement;
+        while (stripped.endsWith(";")) {
+            stripped = stripped.substring(0, stripped.length() - 1).trim();
+        }
+        return stripped;
+    }
+}
@@ -0,0 +1,206 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.check.database.DatabaseSchema;
+
+/**
+ * Drops some tables of a database schema, so that they can be re-created by an incremental schema
+ * update (hbm2ddl.auto=update) while the other tables are left untouched.
+ * Foreign keys referencing the dropped tables are dropped first : only the ones of the dropped
+ * tables are re-created with them, so that the kept tables referencing them should be checked
+ * first (see {@link #findReferencingTables(DataSource, String, Collection)}). Tables of the other
+ * schemas are never dropped.
+ */
+public final class TableDropper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableDropper.class);
+
+    private static final String[] TABLE_TYPES = { "TABLE" };
+
+    /**
+     * Drops the tables of the current schema having one of the given names.
+     *
+     * @param dataSource
+     *            The database
+     * @param tableNames
+     *            The names of the tables to be dropped
+     * @return The dropped tables, qualified by their schema
+     */
+    public static List<String> drop(final DataSource dataSource,
+            final Collection<String> tableNames) {
+        return drop(dataSource, null, tableNames);
+    }
+
+    /**
+     * Drops the tables of a schema having one of the given names.
+     * Names are converted to the case the database stores unquoted identifiers with (unless they
+     * are quoted), then compared exactly. Names without matching table are ignored (the table
+     * will simply be created).
+     *
+     * @param dataSource
+     *            The database
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null to use the current schema)
+     * @param tableNames
+     *            The names of the tables to be dropped
+     * @return The dropped tables, qualified by their schema
+     */
+    public static List<String> drop(final DataSource dataSource, final String defaultSchema,
+            final Collection<String> tableNames) {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            DatabaseSchema schema = DatabaseSchema.of(connection, defaultSchema);
+            String quote = metaData.getIdentifierQuoteString().trim();
+            boolean mysql = metaData.getDatabaseProductName().toLowerCase(Locale.ROOT)
+                    .matches(".*(mysql|mariadb).*");
+            Map<String, String[]> tables = findTables(metaData, schema, tableNames, quote);
+
+            // Find the foreign keys referencing them (including their own ones)
+            Set<String> dropConstraints = new LinkedHashSet<>();
+            for (String[] table : tables.values()) {
+                try (ResultSet rs = metaData.getExportedKeys(table[0], table[1], table[2])) {
+                    while (rs.next()) {
+                        String fkName = rs.getString("FK_NAME");
+                        if (fkName == null) {
+                            continue;
+                        }
+                        String referencing = qualify(new String[] { rs.getString("FKTABLE_CAT"),
+                                rs.getString("FKTABLE_SCHEM"), rs.getString("FKTABLE_NAME") },
+                                quote);
+                        dropConstraints.add(String.format(
+                                mysql ? "ALTER TABLE %s DROP FOREIGN KEY %s"
+                                        : "ALTER TABLE %s DROP CONSTRAINT %s",
+                                referencing, quote + fkName + quote));
+                    }
+                }
+            }
+
+            // Drop them
+            List<String> statements = new ArrayList<>(dropConstraints);
+            tables.keySet().forEach(table -> statements.add("DROP TABLE " + table));
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    LOGGER.debug("Executing {}", sql);
+                    statement.execute(sql);
+                }
+            }
+            return new ArrayList<>(tables.keySet());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to drop tables " + tableNames, e);
+        }
+    }
+
+    /**
+     * Finds the tables of a schema which are not in the given names, but reference one of the
+     * tables having them through a foreign key. Dropping these tables would lose the foreign
+     * keys, as an incremental update doesn't re-create the constraints of the kept tables.
+     *
+     * @param dataSource
+     *            The database
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null to use the current schema)
+     * @param tableNames
+     *            The names of the tables to be dropped
+     * @return The referencing tables, qualified by their schema
+     */
+    public static Set<String> findReferencingTables(final DataSource dataSource,
+            final String defaultSchema, final Collection<String> tableNames) {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            DatabaseSchema schema = DatabaseSchema.of(connection, defaultSchema);
+            String quote = metaData.getIdentifierQuoteString().trim();
+            Map<String, String[]> tables = findTables(metaData, schema, tableNames, quote);
+            Set<String> referencing = new TreeSet<>();
+            UnitObjects.findReferencingTables(metaData, tables, quote).values()
+                    .forEach(referencing::addAll);
+            referencing.removeAll(tables.keySet());
+            return referencing;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read the foreign keys of " + tableNames,
+                    e);
+        }
+    }
+
+    /**
+     * Finds the tables of a schema having one of the given names.
+     * Names are converted to the case the database stores unquoted identifiers with (unless they
+     * are quoted), then compared exactly.
+     *
+     * @param metaData
+     *            The database metadata
+     * @param schema
+     *            The schema
+     * @param tableNames
+     *            The names of the tables
+     * @param quote
+     *            The identifier quote string
+     * @return The tables identifiers (catalog, schema and name), by qualified name
+     * @throws SQLException
+     *             SQL Error
+     */
+    private static Map<String, String[]> findTables(final DatabaseMetaData metaData,
+            final DatabaseSchema schema, final Collection<String> tableNames, final String quote)
+            throws SQLException {
+        Set<String> names = new HashSet<>();
+        for (String tableName : tableNames) {
+            names.add(DatabaseSchema.toStoredCase(metaData, tableName));
+        }
+        Map<String, String[]> tables = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getTables(schema.getCatalog(),
+                schema.getSchemaPattern(metaData), "%", TABLE_TYPES)) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                if (names.contains(table)
+                        && schema.contains(rs.getString("TABLE_CAT"),
+                                rs.getString("TABLE_SCHEM"))) {
+                    String[] identifier = { rs.getString("TABLE_CAT"),
+                            rs.getString("TABLE_SCHEM"), table };
+                    tables.put(qualify(identifier, quote), identifier);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Qualifies and quotes a table identifier.
+     *
+     * @param identifier
+     *            The catalog, the schema and the name of the table
+     * @param quote
+     *            The identifier quote string
+     * @return The qualified name
+     */
+    static String qualify(final String[] identifier, final String quote) {
+        StringBuilder qualified = new StringBuilder();
+        if (identifier[1] != null) {
+            qualified.append(quote).append(identifier[1]).append(quote).append('.');
+        } else if (identifier[0] != null) {
+            qualified.append(quote).append(identifier[0]).append(quote).append('.');
+        }
+        return qualified.append(quote).append(identifier[2]).append(quote).toString();
+    }
+
+    private TableDropper() {
+    }
+}
@@ -0,0 +1,182 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.check.database.DatabaseSchema;
+
+/**
+ * Empties the tables of a persistence unit, keeping their structure, so that the import scripts
+ * can be replayed without re-creating them.
+ * Tables are emptied in a foreign key safe order (referencing tables first) : tables which are
+ * not referenced are truncated, the other ones are deleted from. The sequences of the persistence
+ * unit (including the identity ones of its tables) are then restarted. The other tables of the
+ * schema (other persistence units, Chuse tables...) and the other schemas are kept.
+ */
+public final class TableTruncator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableTruncator.class);
+
+    // Columns giving the first value of a sequence, by priority
+    private static final String[] SEQUENCE_START_COLUMNS = { "START_VALUE", "MIN_VALUE",
+            "MINIMUM_VALUE" };
+
+    /**
+     * Empties the tables of a persistence unit and restarts its sequences.
+     * Nothing is done if the foreign keys are cyclic, as there is no safe order, or if another
+     * table references them, as its rows would prevent them from being emptied.
+     *
+     * @param dataSource
+     *            The database
+     * @param unitObjects
+     *            The tables and sequences of the persistence unit
+     * @return true if the tables have been emptied, false if they can't be safely emptied
+     */
+    public static boolean truncate(final DataSource dataSource, final UnitObjects unitObjects) {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            DatabaseSchema schema = DatabaseSchema.of(connection, unitObjects.getDefaultSchema());
+            String quote = metaData.getIdentifierQuoteString().trim();
+
+            // Find the tables of the persistence unit, with the tables referencing them
+            Map<String, String[]> tables = unitObjects.findTables(connection, schema, quote);
+            Set<String> sequences = unitObjects.findSequences(connection, tables.values());
+            Map<String, Set<String>> referencing = UnitObjects.findReferencingTables(metaData,
+                    tables, quote);
+            Set<String> otherTables = new TreeSet<>();
+            referencing.values().forEach(otherTables::addAll);
+            otherTables.removeAll(tables.keySet());
+            if (!otherTables.isEmpty()) {
+                LOGGER.info("Tables {} reference the persistence unit tables : "
+                        + "they can't be truncated.", otherTables);
+                return false;
+            }
+
+            // Referencing tables first
+            List<String> ordered = order(referencing);
+            if (ordered == null) {
+                LOGGER.info("Foreign keys are cyclic : tables can't be truncated.");
+                return false;
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (String table : ordered) {
+                    String sql = referencing.get(table).isEmpty() ? "TRUNCATE TABLE " + table
+                            : "DELETE FROM " + table;
+                    LOGGER.debug("Executing {}", sql);
+                    statement.execute(sql);
+                }
+            }
+
+            // Restart the sequences
+            restartSequences(connection, schema, sequences, quote);
+            return true;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to truncate tables", e);
+        }
+    }
+
+    /**
+     * Orders the tables so that each table comes after the tables referencing it.
+     * A table referencing itself is emptied by a single statement, so it is not a cycle.
+     *
+     * @param referencing
+     *            The tables, with the tables referencing them
+     * @return The ordered tables, null if the foreign keys are cyclic
+     */
+    private static List<String> order(final Map<String, Set<String>> referencing) {
+        List<String> ordered = new ArrayList<>();
+        Set<String> remaining = new HashSet<>(referencing.keySet());
+        while (!remaining.isEmpty()) {
+            boolean found = false;
+            for (Map.Entry<String, Set<String>> table : referencing.entrySet()) {
+                if (remaining.contains(table.getKey()) && table.getValue().stream()
+                        .noneMatch(child -> !child.equals(table.getKey())
+                                && remaining.contains(child))) {
+                    ordered.add(table.getKey());
+                    remaining.remove(table.getKey());
+                    found = true;
+                }
+            }
+            if (!found) {
+                return null;
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Restarts some sequences of a schema, at their first value.
+     * Sequences are read from the standard INFORMATION_SCHEMA.SEQUENCES view : they are ignored
+     * if the database doesn't have it.
+     *
+     * @param connection
+     *            The connection
+     * @param schema
+     *            The schema
+     * @param sequences
+     *            The names of the sequences, as the database stores them
+     * @param quote
+     *            The identifier quote string
+     * @throws SQLException
+     *             SQL Error
+     */
+    private static void restartSequences(final Connection connection,
+            final DatabaseSchema schema, final Set<String> sequences, final String quote)
+            throws SQLException {
+        List<String> statements = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rs = statement
+                        .executeQuery("SELECT * FROM INFORMATION_SCHEMA.SEQUENCES")) {
+            String startColumn = findColumn(rs.getMetaData(), SEQUENCE_START_COLUMNS);
+            while (startColumn != null && rs.next()) {
+                String sequenceSchema = rs.getString("SEQUENCE_SCHEMA");
+                if (sequences.contains(rs.getString("SEQUENCE_NAME"))
+                        && schema.contains(rs.getString("SEQUENCE_CATALOG"), sequenceSchema)) {
+                    statements.add("ALTER SEQUENCE "
+                            + TableDropper.qualify(new String[] { null, sequenceSchema,
+                                    rs.getString("SEQUENCE_NAME") }, quote)
+                            + " RESTART WITH " + rs.getString(startColumn));
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.debug("Unable to read the sequences : they will not be restarted", e);
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                LOGGER.debug("Executing {}", sql);
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private static String findColumn(final ResultSetMetaData metaData, final String[] names)
+            throws SQLException {
+        for (String name : names) {
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (name.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    return metaData.getColumnLabel(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    private TableTruncator() {
+    }
+}
@@ -0,0 +1,178 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fr.dz.chuse.core.check.database.DatabaseSchema;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The database objects of a persistence unit : the tables mapped by its entities and the
+ * sequences of their identifier generators, in its schema.
+ * Data reloads and snapshots are limited to these objects, so that the other persistence units
+ * sharing the schema, the tables Chuse doesn't manage (a migration history table for instance)
+ * and the Chuse tables are left untouched.
+ */
+@Getter
+@ToString
+public final class UnitObjects {
+
+    // Prefix of the Chuse tables
+    private static final String CHUSE_TABLES_PREFIX = "CHUSE_";
+
+    private static final String[] TABLE_TYPES = { "TABLE" };
+
+    // Sequence called by a column default value (H2, HSQLDB, PostgreSQL serial columns)
+    private static final Pattern SEQUENCE_CALL = Pattern
+            .compile("(?i)(?:NEXT\\s+VALUE\\s+FOR\\s+|NEXTVAL\\s*\\(\\s*')([^'\\s)]+)");
+
+    // Default schema of the persistence unit (null to use the current schema)
+    private final String defaultSchema;
+
+    // Names of the mapped tables, as the naming strategies give them
+    private final Set<String> tableNames;
+
+    // Names of the generators sequences (identity columns ones are found from their table)
+    private final Set<String> sequenceNames;
+
+    /**
+     * Constructor.
+     *
+     * @param defaultSchema
+     *            The default schema of the persistence unit (null to use the current schema)
+     * @param tableNames
+     *            The names of the mapped tables
+     * @param sequenceNames
+     *            The names of the generators sequences
+     */
+    public UnitObjects(final String defaultSchema, final Collection<String> tableNames,
+            final Collection<String> sequenceNames) {
+        super();
+        this.defaultSchema = defaultSchema;
+        this.tableNames = Collections.unmodifiableSet(new LinkedHashSet<>(tableNames));
+        this.sequenceNames = Collections.unmodifiableSet(new LinkedHashSet<>(sequenceNames));
+    }
+
+    /**
+     * Finds the tables of the schema having one of the mapped names.
+     * Names are converted to the case the database stores unquoted identifiers with (unless they
+     * are quoted), then compared exactly. The Chuse tables are never found.
+     *
+     * @param connection
+     *            The connection
+     * @param schema
+     *            The schema of the persistence unit
+     * @param quote
+     *            The identifier quote string
+     * @return The tables identifiers (catalog, schema and name), by qualified name
+     * @throws SQLException
+     *             SQL Error
+     */
+    Map<String, String[]> findTables(final Connection connection, final DatabaseSchema schema,
+            final String quote) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Set<String> names = new HashSet<>();
+        for (String tableName : this.tableNames) {
+            names.add(DatabaseSchema.toStoredCase(metaData, tableName));
+        }
+        Map<String, String[]> tables = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getTables(schema.getCatalog(),
+                schema.getSchemaPattern(metaData), "%", TABLE_TYPES)) {
+            while (rs.next()) {
+                String table = rs.getString("TABLE_NAME");
+                if (names.contains(table)
+                        && !table.toUpperCase(Locale.ROOT).startsWith(CHUSE_TABLES_PREFIX)
+                        && schema.contains(rs.getString("TABLE_CAT"),
+                                rs.getString("TABLE_SCHEM"))) {
+                    String[] identifier = { rs.getString("TABLE_CAT"),
+                            rs.getString("TABLE_SCHEM"), table };
+                    tables.put(TableDropper.qualify(identifier, quote), identifier);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Finds the sequences of the persistence unit : the generators ones, and the ones called by
+     * the default values of the tables columns (identity columns).
+     *
+     * @param connection
+     *            The connection
+     * @param tables
+     *            The tables of the persistence unit, as found by
+     *            {@link #findTables(Connection, DatabaseSchema, String)}
+     * @return The sequences names, as the database stores them
+     * @throws SQLException
+     *             SQL Error
+     */
+    Set<String> findSequences(final Connection connection, final Collection<String[]> tables)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Set<String> sequences = new HashSet<>();
+        for (String sequenceName : this.sequenceNames) {
+            sequences.add(DatabaseSchema.toStoredCase(metaData, sequenceName));
+        }
+        for (String[] table : tables) {
+            try (ResultSet rs = metaData.getColumns(table[0], table[1], table[2], "%")) {
+                while (rs.next()) {
+                    String defaultValue = rs.getString("COLUMN_DEF");
+                    Matcher matcher = SEQUENCE_CALL.matcher(defaultValue == null ? ""
+                            : defaultValue);
+                    if (matcher.find()) {
+                        String sequence = matcher.group(1);
+                        sequences.add(DatabaseSchema.toStoredCase(metaData,
+                                sequence.substring(sequence.lastIndexOf('.') + 1)));
+                    }
+                }
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Finds the tables referencing each table through their foreign keys.
+     *
+     * @param metaData
+     *            The database metadata
+     * @param tables
+     *            The tables, by qualified name
+     * @param quote
+     *            The identifier quote string
+     * @return The qualified names of the referencing tables, by qualified name
+     * @throws SQLException
+     *             SQL Error
+     */
+    static Map<String, Set<String>> findReferencingTables(final DatabaseMetaData metaData,
+            final Map<String, String[]> tables, final String quote) throws SQLException {
+        Map<String, Set<String>> referencing = new LinkedHashMap<>();
+        for (Map.Entry<String, String[]> table : tables.entrySet()) {
+            Set<String> children = new HashSet<>();
+            String[] identifier = table.getValue();
+            try (ResultSet rs = metaData.getExportedKeys(identifier[0], identifier[1],
+                    identifier[2])) {
+                while (rs.next()) {
+                    children.add(TableDropper.qualify(
+                            new String[] { rs.getString("FKTABLE_CAT"),
+                                    rs.getString("FKTABLE_SCHEM"), rs.getString("FKTABLE_NAME") },
+                            quote));
+                }
+            }
+            referencing.put(table.getKey(), children);
+        }
+        return referencing;
+    }
+}
@@ -1,8 +1,12 @@
 package fr.dz.chuse.core.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.data.CheckedFileSet;
 
 /**
  * Repository for checked files.
@@ -11,6 +15,7 @@ public interface CheckedFileRepository {
 
     /**
      * Inserts a file in the repository or update it if it already exists.
+     * The stored root hash is cleared.
      *
      * @param file
      *            The file to be inserted
@@ -25,8 +30,85 @@ public interface CheckedFileRepository {
      */
     List<CheckedFile> findAll();
 
+    /**
+     * Streams all checked files, sorted by name, without loading them all at once : memory use
+     * stays flat however many files are stored, as long as the caller doesn't keep them.
+     * The names should be sorted as String.compareTo sorts them (a binary collation) : other
+     * orders are supported, but the files are then looked up instead of merged.
+     * The stream must be closed once read (it may hold database resources), and a partially
+     * read stream may be closed early.
+     * By default, the files are loaded by {@link #findAll()}.
+     *
+     * @return The checked files
+     */
+    default Stream<CheckedFile> streamAll() {
+        return this.findAll().stream();
+    }
+
+    /**
+     * Finds all checked files, as a compact set.
+     * By default, the files are streamed into the set : they are never all loaded as
+     * CheckedFile instances.
+     *
+     * @return All checked files
+     */
+    default CheckedFileSet findFileSet() {
+        try (Stream<CheckedFile> files = this.streamAll()) {
+            return CheckedFileSet.of(files);
+        }
+    }
+
+    /**
+     * Finds the root hash of the checked files, stored by the last
+     * {@link #applyChanges(ChangeSet)}.
+     * Comparing it is enough to know that no file has changed, without loading them.
+     *
+     * @return The root hash, null if there is none
+     */
+    String findRootHash();
+
+    /**
+     * Finds a state value, stored along with the checked files.
+     *
+     * @param key
+     *            The state key
+     * @return The value, null if there is none
+     */
+    String findState(final String key);
+
+    /**
+     * Saves a state value, stored along with the checked files.
+     *
+     * @param key
+     *            The state key
+     * @param value
+     *            The value (null to remove it)
+     */
+    void saveState(final String key, final String value);
+
     /**
      * Clears the repository.
      */
     void deleteAll();
+
+    /**
+     * Replaces the whole repository content with the given files.
+     * The replacement is atomic : either all files are stored, or the repository is left
+     * untouched. The stored root hash is cleared.
+     *
+     * @param files
+     *            The files to be stored
+     */
+    void replaceAll(final Collection<CheckedFile> files);
+
+    /**
+     * Applies the given changes to the repository.
+     * Deleted files are removed, modified and touched files are updated (or inserted if they are
+     * missing) and added files are inserted. The root hash of the changes replaces the stored
+     * one. The changes are applied atomically.
+     *
+     * @param changes
+     *            The changes to be applied
+     */
+    void applyChanges(final ChangeSet changes);
 }
@@ -9,10 +9,34 @@ public final class RepositoryConstants {
 
     public static final String CHECKED_FILES_TABLE_NAME = "CHUSE_CHECKED_FILES";
 
+    public static final String CHECKED_FILES_SCOPE_FIELD = "SCOPE";
+
     public static final String CHECKED_FILES_NAME_FIELD = "NAME";
 
     public static final String CHECKED_FILES_LAST_MODIFIED_TIME_FIELD = "LAST_MODIFIED_TIME";
 
+    public static final String CHECKED_FILES_SIZE_FIELD = "FILE_SIZE";
+
+    public static final String CHECKED_FILES_HASH_FIELD = "CONTENT_HASH";
+
+    // Scope of the rows when none is given (a single persistence unit per database)
+
+    public static final String DEFAULT_SCOPE = "default";
+
+    // State table constants
+
+    public static final String STATE_TABLE_NAME = "CHUSE_STATE";
+
+    public static final String STATE_SCOPE_FIELD = "SCOPE";
+
+    public static final String STATE_KEY_FIELD = "STATE_KEY";
+
+    public static final String STATE_VALUE_FIELD = "STATE_VALUE";
+
+    public static final String ROOT_HASH_KEY = "ROOT_HASH";
+
+    public static final String DATABASE_FINGERPRINT_KEY = "DATABASE_FINGERPRINT";
+
     private RepositoryConstants() {
     }
 }
@@ -0,0 +1,391 @@
+package fr.dz.chuse.core.repository.support;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import fr.dz.chuse.core.data.ChangeSet;
+import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.data.CheckedFileSet;
+import fr.dz.chuse.core.repository.CheckedFileRepository;
+import fr.dz.chuse.core.repository.RepositoryConstants;
+import fr.dz.chuse.core.utils.DateUtils;
+import fr.dz.chuse.core.utils.HashUtils;
+
+/**
+ * Repository for checked files using a local binary file.
+ * The file is read at once and written atomically, so that checking for
+ * changes doesn't need any database round trip. The root hash and the states are stored in the
+ * header, so that they can be read without reading the rest of the file.
+ * As the file is not stored in the database, it must be deleted if the database is re-built by
+ * another mean.
+ */
+public class FileCheckedFileRepository implements CheckedFileRepository {
+
+    /**
+     * Default location of the checked files of the default scope.
+     */
+    public static final String DEFAULT_PATH = "target/chuse/checked-files.bin";
+
+    // Scopes which can be used as is in a file name
+    private static final String SAFE_SCOPE_PATTERN = "[A-Za-z0-9._-]+";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileCheckedFileRepository.class);
+
+    // "CHUS"
+    private static final int MAGIC_NUMBER = 0x43485553;
+
+    // Version 2 added the root hash in the header, version 3 the states
+    private static final int FORMAT_VERSION = 3;
+
+    // Marks a null value instead of a length or a size
+    private static final int NULL_MARKER = -1;
+
+    // Size of the read buffer, when the whole file is read
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Size of the read buffer, when only the header is read (root hash and a few states)
+    private static final int HEADER_BUFFER_SIZE = 1024;
+
+    private final Path path;
+
+    /**
+     * Constructor using the default location.
+     */
+    public FileCheckedFileRepository() {
+        this(Paths.get(DEFAULT_PATH));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param path
+     *            The file storing the checked files
+     */
+    public FileCheckedFileRepository(final Path path) {
+        super();
+        this.path = path;
+    }
+
+    /**
+     * Gets the default location of the checked files of a scope (a persistence unit for
+     * instance), so that several scopes don't share the same file.
+     *
+     * @param scope
+     *            The scope
+     * @return The location
+     */
+    public static Path defaultPath(final String scope) {
+        if (RepositoryConstants.DEFAULT_SCOPE.equals(scope)) {
+            return Paths.get(DEFAULT_PATH);
+        }
+        String suffix = scope.matches(SAFE_SCOPE_PATTERN) ? scope
+                : HashUtils.hash(Collections.singletonList(scope)).substring(0, 16);
+        return Paths.get(DEFAULT_PATH.replace(".bin", "-" + suffix + ".bin"));
+    }
+
+    @Override
+    public synchronized void insertOrUpdateFile(final CheckedFile file) {
+        Content content = this.read(false);
+        content.files.put(file.getName(), file);
+        content.rootHash = null;
+        this.write(content);
+    }
+
+    @Override
+    public synchronized List<CheckedFile> findAll() {
+        return new ArrayList<>(this.read(false).files.values());
+    }
+
+    @Override
+    public Stream<CheckedFile> streamAll() {
+        return this.findFileSet().stream();
+    }
+
+    @Override
+    public synchronized CheckedFileSet findFileSet() {
+        CheckedFileSet.Builder fileSet = CheckedFileSet.builder();
+        this.read(false, fileSet);
+        return fileSet.build();
+    }
+
+    @Override
+    public synchronized String findRootHash() {
+        return this.read(true).rootHash;
+    }
+
+    @Override
+    public synchronized String findState(final String key) {
+        return this.read(true).states.get(key);
+    }
+
+    @Override
+    public synchronized void saveState(final String key, final String value) {
+        Content content = this.read(false);
+        if (value == null) {
+            content.states.remove(key);
+        } else {
+            content.states.put(key, value);
+        }
+        this.write(content);
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        try {
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to delete checked files file " + this.path, e);
+        }
+    }
+
+    @Override
+    public synchronized void replaceAll(final Collection<CheckedFile> files) {
+        Content content = this.read(true);
+        files.forEach(file -> content.files.put(file.getName(), file));
+        content.rootHash = null;
+        this.write(content);
+    }
+
+    @Override
+    public synchronized void applyChanges(final ChangeSet changes) {
+        Content content = this.read(false);
+        SortedMap<String, CheckedFile> files = content.files;
+        changes.getDeletedFiles().forEach(file -> files.remove(file.getName()));
+        changes.getModifiedFiles().forEach(file -> files.put(file.getName(), file));
+        changes.getTouchedFiles().forEach(file -> files.put(file.getName(), file));
+        changes.getAddedFiles().forEach(file -> files.put(file.getName(), file));
+        content.rootHash = changes.getRootHash();
+        this.write(content);
+    }
+
+    /**
+     * Reads the repository file.
+     * A missing file is an empty repository, and an unreadable file is considered empty too, so
+     * that the database is re-built.
+     *
+     * @param headerOnly
+     *            Whether only the header (root hash and states) is read
+     * @return The content
+     */
+    private Content read(final boolean headerOnly) {
+        return this.read(headerOnly, null);
+    }
+
+    /**
+     * Reads the repository file.
+     * A missing file is an empty repository, and an unreadable file is considered empty too, so
+     * that the database is re-built.
+     *
+     * @param headerOnly
+     *            Whether only the header (root hash and states) is read
+     * @param fileSet
+     *            The builder the files are added to (stored in the file in name order), without
+     *            creating CheckedFile instances (null to add them to the content)
+     * @return The content
+     */
+    private Content read(final boolean headerOnly, final CheckedFileSet.Builder fileSet) {
+        Content content = new Content();
+
+        // Streamed, not mapped : a mapping would last until it is garbage collected, preventing
+        // the file from being replaced on Windows. Only the needed part of the file is read.
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(this.path), headerOnly ? HEADER_BUFFER_SIZE : BUFFER_SIZE))) {
+            if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION) {
+                LOGGER.warn("Checked files file {} has an unknown format : it is ignored",
+                        this.path);
+                return content;
+            }
+            content.rootHash = readString(input);
+            int statesCount = input.readInt();
+            for (int i = 0; i < statesCount; i++) {
+                content.states.put(readString(input), readString(input));
+            }
+            if (headerOnly) {
+                return content;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                if (fileSet == null) {
+                    CheckedFile file = readCheckedFile(input);
+                    content.files.put(file.getName(), file);
+                } else {
+                    readCheckedFile(input, fileSet);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return content;
+        } catch (EOFException e) {
+            LOGGER.warn("Checked files file {} is truncated : it is ignored", this.path);
+            return new Content();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read checked files file " + this.path, e);
+        }
+        return content;
+    }
+
+    /**
+     * Writes the repository content to a temporary file, then moves it to its final location.
+     *
+     * @param content
+     *            The content
+     */
+    private void write(final Content content) {
+        try {
+            Path directory = this.path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, this.path.getFileName().toString(),
+                    ".tmp");
+            try {
+                try (DataOutputStream output = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    output.writeInt(MAGIC_NUMBER);
+                    output.writeInt(FORMAT_VERSION);
+                    writeString(output, content.rootHash);
+                    output.writeInt(content.states.size());
+                    for (Map.Entry<String, String> state : content.states.entrySet()) {
+                        writeString(output, state.getKey());
+                        writeString(output, state.getValue());
+                    }
+                    output.writeInt(content.files.size());
+                    for (CheckedFile file : content.files.values()) {
+                        writeCheckedFile(output, file);
+                    }
+                }
+                move(temporary, this.path);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write checked files file " + this.path, e);
+        }
+    }
+
+    /**
+     * Reads a checked file.
+     *
+     * @param input
+     *            The input
+     * @return The checked file
+     * @throws IOException
+     *             I/O Error
+     */
+    private static CheckedFile readCheckedFile(final DataInputStream input) throws IOException {
+        String name = readString(input);
+        long epochSecond = input.readLong();
+        int nano = input.readInt();
+        long size = input.readLong();
+        String hash = readString(input);
+        return new CheckedFile(name, LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC),
+                size == NULL_MARKER ? null : size, hash);
+    }
+
+    /**
+     * Reads a checked file, adding it to a set.
+     *
+     * @param input
+     *            The input
+     * @param fileSet
+     *            The set builder
+     * @throws IOException
+     *             I/O Error
+     */
+    private static void readCheckedFile(final DataInputStream input,
+            final CheckedFileSet.Builder fileSet) throws IOException {
+        String name = readString(input);
+        long epochSecond = input.readLong();
+        int nano = input.readInt();
+        long size = input.readLong();
+        String hash = readString(input);
+        fileSet.add(name, DateUtils.toEpochNanos(
+                LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC)),
+                size == NULL_MARKER ? null : size, hash);
+    }
+
+    /**
+     * Writes a checked file.
+     *
+     * @param output
+     *            The output
+     * @param file
+     *            The checked file
+     * @throws IOException
+     *             I/O Error
+     */
+    private static void writeCheckedFile(final DataOutputStream output, final CheckedFile file)
+            throws IOException {
+        writeString(output, file.getName());
+        output.writeLong(file.getLastModifiedTime().toEpochSecond(ZoneOffset.UTC));
+        output.writeInt(file.getLastModifiedTime().getNano());
+        output.writeLong(file.getSize() == null ? NULL_MARKER : file.getSize());
+        writeString(output, file.getHash());
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == NULL_MARKER) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream output, final String value)
+            throws IOException {
+        if (value == null) {
+            output.writeInt(NULL_MARKER);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The content of the repository file.
+     */
+    private static final class Content {
+
+        // Root hash of the checked files (null if unknown)
+        private String rootHash;
+
+        // States, by key
+        private final Map<String, String> states = new TreeMap<>();
+
+        // Checked files, by name
+        private final SortedMap<String, CheckedFile> files = new TreeMap<>();
+    }
+}
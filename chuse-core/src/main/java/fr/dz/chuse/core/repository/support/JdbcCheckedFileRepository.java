@@ -1,16 +1,31 @@
 package fr.dz.chuse.core.repository.support;
 
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.sql.DataSource;
 
 import org.apache.commons.dbutils.QueryRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
 import fr.dz.chuse.core.repository.CheckedFileRepository;
 import fr.dz.chuse.core.repository.RepositoryConstants;
@@ -18,20 +33,67 @@ import fr.dz.chuse.core.utils.DateUtils;
 
 /**
  * Repository for checked files using JDBC.
+ * Rows are scoped (by persistence unit for instance), so that several repositories can share
+ * the same tables.
  */
 public class JdbcCheckedFileRepository implements CheckedFileRepository {
 
+    /**
+     * Default number of statements sent to the database in a single JDBC batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Number of rows fetched from the database at once when the checked files are streamed.
+     */
+    public static final int FETCH_SIZE = 1000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcCheckedFileRepository.class);
+
     private final QueryRunner queryRunner;
 
+    private final int batchSize;
+
+    private final String scope;
+
     private final String createTableQuery;
 
+    private final String checkTableQuery;
+
+    private final String dropTableQuery;
+
     private final String updateQuery;
 
     private final String insertQuery;
 
+    // Select query, without its ORDER BY clause (which depends on the database)
     private final String selectQuery;
 
-    private final String deleteAllQuery;
+    private final String deleteQuery;
+
+    private final String clearQuery;
+
+    private final String createStateTableQuery;
+
+    private final String checkStateTableQuery;
+
+    private final String dropStateTableQuery;
+
+    private final String selectStateQuery;
+
+    private final String insertStateQuery;
+
+    private final String deleteStateQuery;
+
+    private final String clearStateQuery;
+
+    private final String clearAllStatesQuery;
+
+    // Whether the table structure has already been checked
+    private volatile boolean tableChecked;
+
+    // Select query sorting the names as String.compareTo does (determined with a connection)
+    private volatile String sortedSelectQuery;
 
     /**
      * Constructor.
@@ -52,54 +114,206 @@ public class JdbcCheckedFileRepository implements CheckedFileRepository {
      *            The schema used to store the checked files
      */
     public JdbcCheckedFileRepository(final DataSource datasource, final String schema) {
+        this(datasource, schema, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param datasource
+     *            The datasource
+     * @param schema
+     *            The schema used to store the checked files
+     * @param batchSize
+     *            The number of statements sent to the database in a single JDBC batch
+     */
+    public JdbcCheckedFileRepository(final DataSource datasource, final String schema,
+            final int batchSize) {
+        this(datasource, schema, batchSize, RepositoryConstants.DEFAULT_SCOPE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param datasource
+     *            The datasource
+     * @param schema
+     *            The schema used to store the checked files
+     * @param batchSize
+     *            The number of statements sent to the database in a single JDBC batch
+     * @param scope
+     *            The scope of the checked files (the persistence unit name for instance)
+     */
+    public JdbcCheckedFileRepository(final DataSource datasource, final String schema,
+            final int batchSize, final String scope) {
         super();
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive : " + batchSize);
+        }
+        if (scope == null || scope.trim().isEmpty()) {
+            throw new IllegalArgumentException("Scope must not be empty");
+        }
         this.queryRunner = new QueryRunner(datasource);
+        this.batchSize = batchSize;
+        this.scope = scope;
 
-        // Dertermine table name
+        // Dertermine tables names
         String tableName = RepositoryConstants.CHECKED_FILES_TABLE_NAME;
+        String stateTableName = RepositoryConstants.STATE_TABLE_NAME;
         if (schema != null && !schema.trim().isEmpty()) {
             tableName = String.format("%s.%s", schema, tableName);
+            stateTableName = String.format("%s.%s", schema, stateTableName);
         }
 
         // @formatter:off
         this.createTableQuery = MessageFormat.format(
                 "CREATE TABLE IF NOT EXISTS {0} ( "
+                        + "{5} VARCHAR(255) NOT NULL, "
                         + "{1} VARCHAR(4096) NOT NULL, "
                         + "{2} TIMESTAMP NOT NULL, "
-                        + "PRIMARY KEY({1}) )",
+                        + "{3} BIGINT, "
+                        + "{4} VARCHAR(128), "
+                        + "PRIMARY KEY({5}, {1}) )",
+                tableName,
+                RepositoryConstants.CHECKED_FILES_NAME_FIELD,
+                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD,
+                RepositoryConstants.CHECKED_FILES_SIZE_FIELD,
+                RepositoryConstants.CHECKED_FILES_HASH_FIELD,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.checkTableQuery = MessageFormat.format(
+                "SELECT {5}, {1}, {2}, {3}, {4} FROM {0} WHERE 1=0",
                 tableName,
                 RepositoryConstants.CHECKED_FILES_NAME_FIELD,
-                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD);
+                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD,
+                RepositoryConstants.CHECKED_FILES_SIZE_FIELD,
+                RepositoryConstants.CHECKED_FILES_HASH_FIELD,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.dropTableQuery = MessageFormat.format(
+                "DROP TABLE {0}",
+                tableName);
         // @formatter:on
 
         // @formatter:off
         this.updateQuery = MessageFormat.format(
-                "UPDATE {0} SET {2}=? WHERE {1}=?",
+                "UPDATE {0} SET {2}=?, {3}=?, {4}=? WHERE {5}=? AND {1}=?",
                 tableName,
                 RepositoryConstants.CHECKED_FILES_NAME_FIELD,
-                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD);
+                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD,
+                RepositoryConstants.CHECKED_FILES_SIZE_FIELD,
+                RepositoryConstants.CHECKED_FILES_HASH_FIELD,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
         // @formatter:on
 
         // @formatter:off
         this.insertQuery = MessageFormat.format(
-                "INSERT INTO {0}({1},{2}) VALUES (?,?)",
+                "INSERT INTO {0}({5},{1},{2},{3},{4}) VALUES (?,?,?,?,?)",
                 tableName,
                 RepositoryConstants.CHECKED_FILES_NAME_FIELD,
-                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD);
+                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD,
+                RepositoryConstants.CHECKED_FILES_SIZE_FIELD,
+                RepositoryConstants.CHECKED_FILES_HASH_FIELD,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
         // @formatter:on
 
         // @formatter:off
         this.selectQuery = MessageFormat.format(
-                "SELECT {1}, {2} FROM {0} ORDER BY {1}",
+                "SELECT {1}, {2}, {3}, {4} FROM {0} WHERE {5}=?",
                 tableName,
                 RepositoryConstants.CHECKED_FILES_NAME_FIELD,
-                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD);
+                RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD,
+                RepositoryConstants.CHECKED_FILES_SIZE_FIELD,
+                RepositoryConstants.CHECKED_FILES_HASH_FIELD,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
         // @formatter:on
 
         // @formatter:off
-        this.deleteAllQuery = MessageFormat.format(
-                "TRUNCATE TABLE {0}",
-                tableName);
+        this.deleteQuery = MessageFormat.format(
+                "DELETE FROM {0} WHERE {2}=? AND {1}=?",
+                tableName,
+                RepositoryConstants.CHECKED_FILES_NAME_FIELD,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
+        // @formatter:on
+
+        // Only the rows of the scope are deleted (and TRUNCATE is not transactional on every
+        // database)
+        // @formatter:off
+        this.clearQuery = MessageFormat.format(
+                "DELETE FROM {0} WHERE {1}=?",
+                tableName,
+                RepositoryConstants.CHECKED_FILES_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.createStateTableQuery = MessageFormat.format(
+                "CREATE TABLE IF NOT EXISTS {0} ( "
+                        + "{3} VARCHAR(255) NOT NULL, "
+                        + "{1} VARCHAR(64) NOT NULL, "
+                        + "{2} VARCHAR(4096), "
+                        + "PRIMARY KEY({3}, {1}) )",
+                stateTableName,
+                RepositoryConstants.STATE_KEY_FIELD,
+                RepositoryConstants.STATE_VALUE_FIELD,
+                RepositoryConstants.STATE_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.checkStateTableQuery = MessageFormat.format(
+                "SELECT {3}, {1}, {2} FROM {0} WHERE 1=0",
+                stateTableName,
+                RepositoryConstants.STATE_KEY_FIELD,
+                RepositoryConstants.STATE_VALUE_FIELD,
+                RepositoryConstants.STATE_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.dropStateTableQuery = MessageFormat.format(
+                "DROP TABLE {0}",
+                stateTableName);
+        // @formatter:on
+
+        // @formatter:off
+        this.selectStateQuery = MessageFormat.format(
+                "SELECT {2} FROM {0} WHERE {3}=? AND {1}=?",
+                stateTableName,
+                RepositoryConstants.STATE_KEY_FIELD,
+                RepositoryConstants.STATE_VALUE_FIELD,
+                RepositoryConstants.STATE_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.insertStateQuery = MessageFormat.format(
+                "INSERT INTO {0}({3},{1},{2}) VALUES (?,?,?)",
+                stateTableName,
+                RepositoryConstants.STATE_KEY_FIELD,
+                RepositoryConstants.STATE_VALUE_FIELD,
+                RepositoryConstants.STATE_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.deleteStateQuery = MessageFormat.format(
+                "DELETE FROM {0} WHERE {2}=? AND {1}=?",
+                stateTableName,
+                RepositoryConstants.STATE_KEY_FIELD,
+                RepositoryConstants.STATE_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.clearStateQuery = MessageFormat.format(
+                "DELETE FROM {0} WHERE {1}=?",
+                stateTableName,
+                RepositoryConstants.STATE_SCOPE_FIELD);
+        // @formatter:on
+
+        // @formatter:off
+        this.clearAllStatesQuery = MessageFormat.format(
+                "DELETE FROM {0}",
+                stateTableName);
         // @formatter:on
     }
 
@@ -107,12 +321,20 @@ public class JdbcCheckedFileRepository implements CheckedFileRepository {
     public void insertOrUpdateFile(final CheckedFile file) {
         this.createTableIfNecessary();
 
+        // The root hash doesn't match anymore
+        try {
+            this.queryRunner.update(this.deleteStateQuery, this.scope,
+                    RepositoryConstants.ROOT_HASH_KEY);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to clear the checked files root hash", e);
+        }
+
         // First, try to update the potentially existing line
         Timestamp timestampLastModifiedTime = DateUtils.toSqlTimestamp(file.getLastModifiedTime());
         int modified;
         try {
             modified = this.queryRunner.update(this.updateQuery, timestampLastModifiedTime,
-                    file.getName());
+                    file.getSize(), file.getHash(), this.scope, file.getName());
         } catch (SQLException e) {
             throw new IllegalStateException("Unable to update a checked file", e);
         }
@@ -120,8 +342,8 @@ public class JdbcCheckedFileRepository implements CheckedFileRepository {
         // No modified line : we create it
         if (modified == 0) {
             try {
-                this.queryRunner.update(this.insertQuery, file.getName(),
-                        timestampLastModifiedTime);
+                this.queryRunner.update(this.insertQuery, this.scope, file.getName(),
+                        timestampLastModifiedTime, file.getSize(), file.getHash());
             } catch (SQLException e) {
                 throw new IllegalStateException("Unable to insert a checked file", e);
             }
@@ -132,34 +354,337 @@ public class JdbcCheckedFileRepository implements CheckedFileRepository {
     public List<CheckedFile> findAll() {
         this.createTableIfNecessary();
         try {
-            return this.queryRunner.query(this.selectQuery,
-                    JdbcCheckedFileRepository::mapToCheckedFile);
+            return this.queryRunner.query(this.sortedSelectQuery,
+                    JdbcCheckedFileRepository::mapToCheckedFile, this.scope);
         } catch (SQLException e) {
             throw new IllegalStateException("Unable to find checked files", e);
         }
     }
 
+    @Override
+    public Stream<CheckedFile> streamAll() {
+        Connection connection;
+        try {
+            connection = this.queryRunner.getDataSource().getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to stream checked files", e);
+        }
+        Cursor cursor = new Cursor(connection);
+        try {
+            this.createTableIfNecessary(connection);
+            cursor.open(this.sortedSelectQuery, this.scope);
+        } catch (SQLException e) {
+            cursor.close();
+            throw new IllegalStateException("Unable to stream checked files", e);
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    @Override
+    public String findRootHash() {
+        return this.findState(RepositoryConstants.ROOT_HASH_KEY);
+    }
+
     @Override
     public void deleteAll() {
         this.createTableIfNecessary();
         try {
-            this.queryRunner.update(this.deleteAllQuery);
+            this.queryRunner.update(this.clearQuery, this.scope);
+            this.queryRunner.update(this.clearStateQuery, this.scope);
         } catch (SQLException e) {
             throw new IllegalStateException("Unable to delete all checked files table", e);
         }
     }
 
+    @Override
+    public void replaceAll(final Collection<CheckedFile> files) {
+        this.executeInTransaction("Unable to replace checked files", connection -> {
+            this.queryRunner.update(connection, this.clearQuery, this.scope);
+            this.executeBatch(connection, this.insertQuery, files, this::bindInsert);
+            this.saveState(connection, RepositoryConstants.ROOT_HASH_KEY, null);
+        });
+    }
+
+    @Override
+    public void applyChanges(final ChangeSet changes) {
+        this.executeInTransaction("Unable to apply checked files changes", connection -> {
+
+            // Deleted files
+            this.executeBatch(connection, this.deleteQuery, changes.getDeletedFiles(),
+                    (statement, file) -> {
+                        statement.setString(1, this.scope);
+                        statement.setString(2, file.getName());
+                    });
+
+            // Modified and touched files, the missing ones are inserted with the added files
+            List<CheckedFile> modifiedFiles = new ArrayList<>(changes.getModifiedFiles());
+            modifiedFiles.addAll(changes.getTouchedFiles());
+            int[] updated = this.executeBatch(connection, this.updateQuery, modifiedFiles,
+                    this::bindUpdate);
+            List<CheckedFile> insertedFiles = new ArrayList<>(changes.getAddedFiles());
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    insertedFiles.add(modifiedFiles.get(i));
+                }
+            }
+
+            // Added files
+            this.executeBatch(connection, this.insertQuery, insertedFiles, this::bindInsert);
+
+            // Root hash
+            this.saveState(connection, RepositoryConstants.ROOT_HASH_KEY, changes.getRootHash());
+        });
+    }
+
+    @Override
+    public String findState(final String key) {
+        try (Connection connection = this.queryRunner.getDataSource().getConnection()) {
+            this.createTableIfNecessary(connection);
+            return this.queryRunner.query(connection, this.selectStateQuery,
+                    rs -> rs.next() ? rs.getString(1) : null, this.scope, key);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to find the state " + key, e);
+        }
+    }
+
+    @Override
+    public void saveState(final String key, final String value) {
+        this.executeInTransaction("Unable to save the state " + key,
+                connection -> this.saveState(connection, key, value));
+    }
+
     /**
-     * Creates the CHECKED_FILES table if it doesn't exist.
+     * Saves a value in the state table, using the given connection.
+     *
+     * @param connection
+     *            The connection
+     * @param key
+     *            The key
+     * @param value
+     *            The value (null to remove it)
+     * @throws SQLException
+     *             SQL Error
+     */
+    protected void saveState(final Connection connection, final String key, final String value)
+            throws SQLException {
+        this.queryRunner.update(connection, this.deleteStateQuery, this.scope, key);
+        if (value != null) {
+            this.queryRunner.update(connection, this.insertStateQuery, this.scope, key, value);
+        }
+    }
+
+    /**
+     * Executes a statement for each file, using JDBC batches.
+     *
+     * @param connection
+     *            The connection
+     * @param query
+     *            The query to be executed for each file
+     * @param files
+     *            The files
+     * @param binder
+     *            Binds a file to the statement parameters
+     * @return The update counts, one per file
+     * @throws SQLException
+     *             SQL Error
+     */
+    protected int[] executeBatch(final Connection connection, final String query,
+            final Collection<CheckedFile> files, final StatementBinder binder)
+            throws SQLException {
+        int[] counts = new int[files.size()];
+        if (files.isEmpty()) {
+            return counts;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            int executed = 0;
+            int pending = 0;
+            for (CheckedFile file : files) {
+                binder.bind(statement, file);
+                statement.addBatch();
+                pending++;
+                if (pending == this.batchSize) {
+                    executed = copyCounts(statement.executeBatch(), counts, executed);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                copyCounts(statement.executeBatch(), counts, executed);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Executes a unit of work on a single connection, in a single transaction.
+     * The tables are created if necessary before the transaction begins, using the
+     * same connection.
+     *
+     * @param errorMessage
+     *            The message of the exception thrown if the work fails
+     * @param work
+     *            The work to be done
+     */
+    protected void executeInTransaction(final String errorMessage, final TransactionalWork work) {
+        try (Connection connection = this.queryRunner.getDataSource().getConnection()) {
+            this.createTableIfNecessary(connection);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                work.execute(connection);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(errorMessage, e);
+        }
+    }
+
+    /**
+     * Creates the CHECKED_FILES and STATE tables if they don't exist.
      */
     protected void createTableIfNecessary() {
-        try {
-            this.queryRunner.update(this.createTableQuery);
+        try (Connection connection = this.queryRunner.getDataSource().getConnection()) {
+            this.createTableIfNecessary(connection);
         } catch (SQLException e) {
             throw new IllegalStateException("Unable to create checked files table", e);
         }
     }
 
+    /**
+     * Creates the CHECKED_FILES and STATE tables if they don't exist, using the given connection.
+     * The first time, the tables structure is checked : a table created by a previous version
+     * is re-created, which only costs one database re-build (for every scope). The sort order of
+     * the names is determined as well.
+     *
+     * @param connection
+     *            The connection
+     * @throws SQLException
+     *             SQL Error
+     */
+    protected void createTableIfNecessary(final Connection connection) throws SQLException {
+        this.queryRunner.update(connection, this.createTableQuery);
+        this.queryRunner.update(connection, this.createStateTableQuery);
+        if (!this.tableChecked) {
+            try {
+                this.queryRunner.query(connection, this.checkStateTableQuery, rs -> null);
+            } catch (SQLException e) {
+                LOGGER.warn("State table has an outdated structure : it will be re-created");
+                this.queryRunner.update(connection, this.dropStateTableQuery);
+                this.queryRunner.update(connection, this.createStateTableQuery);
+            }
+            try {
+                this.queryRunner.query(connection, this.checkTableQuery, rs -> null);
+            } catch (SQLException e) {
+                LOGGER.warn(
+                        "Checked files table has an outdated structure : it will be re-created");
+                this.queryRunner.update(connection, this.dropTableQuery);
+                this.queryRunner.update(connection, this.createTableQuery);
+                this.queryRunner.update(connection, this.clearAllStatesQuery);
+            }
+            this.tableChecked = true;
+        }
+        if (this.sortedSelectQuery == null) {
+            this.sortedSelectQuery = this.selectQuery + " ORDER BY "
+                    + binaryOrder(connection.getMetaData(),
+                            RepositoryConstants.CHECKED_FILES_NAME_FIELD);
+        }
+    }
+
+    /**
+     * Gets the ORDER BY expression sorting a column by its binary value, as String.compareTo
+     * does, rather than by the database default collation (which usually ignores the case or
+     * the punctuation).
+     *
+     * @param metaData
+     *            The database metadata
+     * @param column
+     *            The column
+     * @return The expression
+     * @throws SQLException
+     *             SQL Error
+     */
+    private static String binaryOrder(final DatabaseMetaData metaData, final String column)
+            throws SQLException {
+        String product = metaData.getDatabaseProductName().toLowerCase(Locale.ROOT);
+        if (product.contains("postgres")) {
+            return column + " COLLATE \"C\"";
+        }
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            return "BINARY " + column;
+        }
+        if (product.contains("microsoft sql server")) {
+            return column + " COLLATE Latin1_General_BIN2";
+        }
+        if (product.contains("oracle")) {
+            return "NLSSORT(" + column + ", 'NLS_SORT=BINARY')";
+        }
+
+        // H2, HSQLDB and Derby compare strings by their characters by default
+        return column;
+    }
+
+    /**
+     * Binds a file to the insert query parameters.
+     *
+     * @param statement
+     *            The insert statement
+     * @param file
+     *            The file
+     * @throws SQLException
+     *             SQL Error
+     */
+    private void bindInsert(final PreparedStatement statement, final CheckedFile file)
+            throws SQLException {
+        statement.setString(1, this.scope);
+        statement.setString(2, file.getName());
+        statement.setTimestamp(3, DateUtils.toSqlTimestamp(file.getLastModifiedTime()));
+        statement.setObject(4, file.getSize(), Types.BIGINT);
+        statement.setString(5, file.getHash());
+    }
+
+    /**
+     * Binds a file to the update query parameters.
+     *
+     * @param statement
+     *            The update statement
+     * @param file
+     *            The file
+     * @throws SQLException
+     *             SQL Error
+     */
+    private void bindUpdate(final PreparedStatement statement, final CheckedFile file)
+            throws SQLException {
+        statement.setTimestamp(1, DateUtils.toSqlTimestamp(file.getLastModifiedTime()));
+        statement.setObject(2, file.getSize(), Types.BIGINT);
+        statement.setString(3, file.getHash());
+        statement.setString(4, this.scope);
+        statement.setString(5, file.getName());
+    }
+
+    /**
+     * Copies batch update counts into the global counts array.
+     * Drivers that can't tell the number of rows of each statement (SUCCESS_NO_INFO) are
+     * considered successful.
+     *
+     * @param batchCounts
+     *            The counts of the executed batch
+     * @param counts
+     *            The global counts
+     * @param offset
+     *            The index of the first statement of the batch
+     * @return The index of the next statement
+     */
+    private static int copyCounts(final int[] batchCounts, final int[] counts, final int offset) {
+        for (int i = 0; i < batchCounts.length; i++) {
+            counts[offset + i] = batchCounts[i] == Statement.SUCCESS_NO_INFO ? 1 : batchCounts[i];
+        }
+        return offset + batchCounts.length;
+    }
+
     /**
      * Maps a ResultSet to a CheckedFile.
      *
@@ -172,12 +697,154 @@ public class JdbcCheckedFileRepository implements CheckedFileRepository {
     private static List<CheckedFile> mapToCheckedFile(final ResultSet rs) throws SQLException {
         List<CheckedFile> result = new ArrayList<>();
         while (rs.next()) {
-            CheckedFile file = new CheckedFile();
-            file.setName(rs.getString(RepositoryConstants.CHECKED_FILES_NAME_FIELD));
-            file.setLastModifiedTime(DateUtils.toLocalDateTime(
-                    rs.getTimestamp(RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD)));
-            result.add(file);
+            result.add(mapRow(rs));
         }
         return result;
     }
+
+    /**
+     * Maps the current row of a ResultSet to a CheckedFile.
+     *
+     * @param rs
+     *            The ResultSet, positioned on a row
+     * @return The CheckedFile
+     * @throws SQLException
+     *             SQL Error
+     */
+    private static CheckedFile mapRow(final ResultSet rs) throws SQLException {
+        CheckedFile file = new CheckedFile();
+        file.setName(rs.getString(RepositoryConstants.CHECKED_FILES_NAME_FIELD));
+        file.setLastModifiedTime(DateUtils.toLocalDateTime(
+                rs.getTimestamp(RepositoryConstants.CHECKED_FILES_LAST_MODIFIED_TIME_FIELD)));
+        long size = rs.getLong(RepositoryConstants.CHECKED_FILES_SIZE_FIELD);
+        file.setSize(rs.wasNull() ? null : size);
+        file.setHash(rs.getString(RepositoryConstants.CHECKED_FILES_HASH_FIELD));
+        return file;
+    }
+
+    /**
+     * A unit of work executed in a transaction.
+     */
+    @FunctionalInterface
+    protected interface TransactionalWork {
+
+        /**
+         * Executes the work.
+         *
+         * @param connection
+         *            The connection, with auto-commit disabled
+         * @throws SQLException
+         *             SQL Error
+         */
+        void execute(final Connection connection) throws SQLException;
+    }
+
+    /**
+     * Binds a checked file to the parameters of a prepared statement.
+     */
+    @FunctionalInterface
+    protected interface StatementBinder {
+
+        /**
+         * Binds the file.
+         *
+         * @param statement
+         *            The statement
+         * @param file
+         *            The file
+         * @throws SQLException
+         *             SQL Error
+         */
+        void bind(final PreparedStatement statement, final CheckedFile file) throws SQLException;
+    }
+
+    /**
+     * Forward-only cursor over the checked files, reading rows by blocks of {@link #FETCH_SIZE}.
+     * The connection is held until the cursor is closed.
+     */
+    private static final class Cursor extends Spliterators.AbstractSpliterator<CheckedFile> {
+
+        private final Connection connection;
+
+        private Boolean autoCommit;
+
+        private PreparedStatement statement;
+
+        private ResultSet resultSet;
+
+        /**
+         * Constructor.
+         *
+         * @param connection
+         *            The connection, closed with the cursor
+         */
+        private Cursor(final Connection connection) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+        }
+
+        /**
+         * Executes the select query.
+         *
+         * @param query
+         *            The select query
+         * @param scope
+         *            The scope of the checked files
+         * @throws SQLException
+         *             SQL Error
+         */
+        private void open(final String query, final String scope) throws SQLException {
+
+            // Some drivers (PostgreSQL) fetch all the rows at once in auto-commit mode
+            this.autoCommit = this.connection.getAutoCommit();
+            this.connection.setAutoCommit(false);
+            this.statement = this.connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            this.statement.setFetchSize(FETCH_SIZE);
+            this.statement.setString(1, scope);
+            this.resultSet = this.statement.executeQuery();
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super CheckedFile> action) {
+            try {
+                if (!this.resultSet.next()) {
+                    return false;
+                }
+                action.accept(mapRow(this.resultSet));
+                return true;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Unable to stream checked files", e);
+            }
+        }
+
+        /**
+         * Closes the cursor and releases the connection.
+         */
+        private void close() {
+            try {
+                try {
+
+                    // Closed before the read-only transaction ends
+                    try {
+                        if (this.resultSet != null) {
+                            this.resultSet.close();
+                        }
+                    } finally {
+                        if (this.statement != null) {
+                            this.statement.close();
+                        }
+                    }
+                    if (this.autoCommit != null) {
+                        this.connection.rollback();
+                        this.connection.setAutoCommit(this.autoCommit);
+                    }
+                } finally {
+                    this.connection.close();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Unable to close the checked files cursor", e);
+            }
+        }
+    }
 }
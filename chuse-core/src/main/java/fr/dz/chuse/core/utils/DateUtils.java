@@ -2,12 +2,15 @@ package fr.dz.chuse.core.utils;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 /**
  * Utils for date manipulations.
  */
 public final class DateUtils {
 
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
     /**
      * Converts a SQL Timestamp to a LocalDateTime.
      *
@@ -30,6 +33,33 @@ public final class DateUtils {
         return Timestamp.valueOf(localDateTime);
     }
 
+    /**
+     * Converts a LocalDateTime to a number of nanoseconds since the epoch.
+     * UTC is used as a neutral offset, so that no time zone has to be looked up : the result
+     * only has to be converted back by {@link #fromEpochNanos(long)}.
+     *
+     * @param localDateTime
+     *     The LocalDateTime (between years 1677 and 2262)
+     * @return The number of nanoseconds
+     */
+    public static long toEpochNanos(final LocalDateTime localDateTime) {
+        return Math.addExact(Math.multiplyExact(localDateTime.toEpochSecond(ZoneOffset.UTC),
+                NANOS_PER_SECOND), localDateTime.getNano());
+    }
+
+    /**
+     * Converts a number of nanoseconds since the epoch, given by
+     * {@link #toEpochNanos(LocalDateTime)}, to a LocalDateTime.
+     *
+     * @param epochNanos
+     *     The number of nanoseconds
+     * @return The LocalDateTime
+     */
+    public static LocalDateTime fromEpochNanos(final long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(epochNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
     private DateUtils() {
     }
 }
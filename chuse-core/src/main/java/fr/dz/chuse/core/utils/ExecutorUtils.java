@@ -0,0 +1,65 @@
+package fr.dz.chuse.core.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Utils for executors.
+ */
+public final class ExecutorUtils {
+
+    /**
+     * The default executor : the common fork-join pool.
+     *
+     * @return The executor
+     */
+    public static Executor defaultExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * An executor starting a new virtual thread for each task.
+     * Virtual threads are only available since Java 21.
+     *
+     * @return The executor, or empty if the runtime doesn't support virtual threads
+     */
+    public static Optional<ExecutorService> virtualThreadExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+        } catch (NoSuchMethodException | IllegalAccessException
+                | InvocationTargetException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Waits for a future and returns its result.
+     * The exception thrown by the task is re-thrown as is if it is a RuntimeException.
+     *
+     * @param future
+     *     The future
+     * @param <T>
+     *     The result type
+     * @return The result
+     */
+    public static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ExecutorUtils() {
+    }
+}
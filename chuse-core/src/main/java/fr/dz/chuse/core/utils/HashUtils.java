@@ -0,0 +1,113 @@
+package fr.dz.chuse.core.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+/**
+ * Utils for content hashes.
+ */
+public final class HashUtils {
+
+    // Hash algorithm, available on every JVM
+    private static final String ALGORITHM = "SHA-256";
+
+    // Size of the buffer files are read with
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Buffer reused by the hashes of each thread
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Hashes the content of a file, reading it through a FileChannel into a reused buffer.
+     * The file is not mapped : a mapping would last until it is garbage collected, locking the
+     * file on Windows (it couldn't be saved by an editor anymore).
+     *
+     * @param path
+     *     The file
+     * @return The hexadecimal SHA-256 of the file content
+     */
+    public static String hash(final Path path) {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = BUFFER.get();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to hash file " + path, e);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hashes bytes.
+     *
+     * @param bytes
+     *     The bytes
+     * @return The hexadecimal SHA-256 of the bytes
+     */
+    public static String hash(final byte[] bytes) {
+        return toHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Hashes strings, whatever their order.
+     *
+     * @param values
+     *     The strings
+     * @return The hexadecimal SHA-256 of the sorted strings
+     */
+    public static String hash(final Collection<String> values) {
+        MessageDigest digest = newDigest();
+        values.stream().sorted().forEach(value -> {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        });
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Converts bytes to an hexadecimal string.
+     *
+     * @param bytes
+     *     The bytes
+     * @return The hexadecimal string
+     */
+    public static String toHex(final byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Creates a new message digest.
+     *
+     * @return The message digest
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private HashUtils() {
+    }
+}
@@ -0,0 +1,176 @@
+package fr.dz.chuse.core.check.bytecode;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the SchemaDependencyGraph.
+ */
+public class SchemaDependencyGraphTest {
+
+    private Path root;
+
+    private Path classes;
+
+    private URLClassLoader classLoader;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.root = TempDirectoryUtils.createTempDirectory();
+        this.classes = Files.createDirectories(this.root.resolve("classes"));
+
+        // Persistence API subset, and an entity depending on every kind of schema type
+        Map<String, String> sources = new TreeMap<>();
+        sources.put("javax/persistence/Entity", annotation("Entity", ""));
+        sources.put("javax/persistence/MappedSuperclass", annotation("MappedSuperclass", ""));
+        sources.put("javax/persistence/Embeddable", annotation("Embeddable", ""));
+        sources.put("javax/persistence/Convert", annotation("Convert", "Class<?> converter();"));
+        sources.put("javax/persistence/AttributeConverter", "package javax.persistence;\n"
+                + "public interface AttributeConverter<X, Y> {}");
+        sources.put("MyParent", "@javax.persistence.MappedSuperclass public class MyParent {}");
+        sources.put("MyAddress", "@javax.persistence.Embeddable public class MyAddress {}");
+        sources.put("MyStatus", "public enum MyStatus { ACTIVE }");
+        sources.put("MyConverter", "public class MyConverter\n"
+                + "    implements javax.persistence.AttributeConverter<String, String> {}");
+        sources.put("MyHelper", "public class MyHelper {}");
+        sources.put("MyEntity", "@javax.persistence.Entity\n"
+                + "public class MyEntity extends MyParent {\n"
+                + "    private MyAddress address;\n"
+                + "    private java.util.List<MyStatus> statuses;\n"
+                + "    @javax.persistence.Convert(converter = MyConverter.class)\n"
+                + "    private String name;\n"
+                + "    private transient MyHelper helper;\n"
+                + "}");
+        List<String> options = new ArrayList<>(Arrays.asList("-d", this.classes.toString()));
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            Path file = this.root.resolve("src").resolve(source.getKey() + ".java");
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.getValue().getBytes());
+            options.add(file.toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assertions.assertEquals(0, compiler.run(null, null, null, options.toArray(new String[0])),
+                "Compilation failed");
+        this.classLoader = new URLClassLoader(new URL[] { this.classes.toUri().toURL() }, null);
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        SchemaDependencyGraph.invalidateAll();
+        this.classLoader.close();
+        TempDirectoryUtils.delete(this.root);
+    }
+
+    /**
+     * Find dependencies test.
+     */
+    @Test
+    public void testFindDependencies() {
+
+        // Arrange : The graph
+        SchemaDependencyGraph graph = SchemaDependencyGraph.get(this.root.resolve("graph.bin"));
+
+        // Act : Find the entity dependencies
+        List<String> dependencies = graph.findDependencies(Arrays.asList("MyEntity"),
+                this.classLoader);
+
+        // Assert : Schema types should be found, but not the transient helper
+        Assertions.assertEquals(
+                new HashSet<>(Arrays.asList("MyParent", "MyAddress", "MyStatus", "MyConverter")),
+                new HashSet<>(dependencies), "The dependencies are not the expected ones");
+        Assertions.assertTrue(Files.exists(this.root.resolve("graph.bin")),
+                "The graph should have been stored");
+    }
+
+    /**
+     * Find dependencies test with a stored graph and unchanged classes.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testFindDependencies_stored() throws IOException {
+
+        // Arrange : The graph has been stored, then an unchanged class can't be read anymore
+        Path graphFile = this.root.resolve("graph.bin");
+        SchemaDependencyGraph.get(graphFile).findDependencies(Arrays.asList("MyEntity"),
+                this.classLoader);
+        SchemaDependencyGraph.invalidateAll();
+        Path address = this.classes.resolve("MyAddress.class");
+        this.corrupt(address, Files.size(address));
+
+        // Act : Find the entity dependencies again
+        List<String> dependencies = SchemaDependencyGraph.get(graphFile)
+                .findDependencies(Arrays.asList("MyEntity"), this.classLoader);
+
+        // Assert : The class should not have been scanned again
+        Assertions.assertTrue(dependencies.contains("MyAddress"),
+                "The stored graph should have been used");
+    }
+
+    /**
+     * Find dependencies test with a changed class.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testFindDependencies_changedClass() throws IOException {
+
+        // Arrange : The graph has been built, then a class has been changed
+        SchemaDependencyGraph graph = SchemaDependencyGraph.get(this.root.resolve("graph.bin"));
+        graph.findDependencies(Arrays.asList("MyEntity"), this.classLoader);
+        this.corrupt(this.classes.resolve("MyAddress.class"), 16);
+
+        // Act : Find the entity dependencies again
+        List<String> dependencies = graph.findDependencies(Collections.singletonList("MyEntity"),
+                this.classLoader);
+
+        // Assert : The class should have been scanned again (and ignored, as it is invalid)
+        Assertions.assertFalse(dependencies.contains("MyAddress"),
+                "The changed class should have been scanned again");
+    }
+
+    /**
+     * Replaces a class file by invalid content, keeping its last modified time.
+     *
+     * @param classFile
+     *            The class file
+     * @param size
+     *            The new size
+     * @throws IOException
+     *             I/O Error
+     */
+    private void corrupt(final Path classFile, final long size) throws IOException {
+        FileTime lastModifiedTime = Files.getLastModifiedTime(classFile);
+        Files.write(classFile, new byte[(int) size]);
+        Files.setLastModifiedTime(classFile, lastModifiedTime);
+    }
+
+    private static String annotation(final String name, final String elements) {
+        return "package javax.persistence;\n"
+                + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+                + "public @interface " + name + " { " + elements + " }";
+    }
+}
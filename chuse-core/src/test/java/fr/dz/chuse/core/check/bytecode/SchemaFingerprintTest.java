@@ -0,0 +1,148 @@
+package fr.dz.chuse.core.check.bytecode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the SchemaFingerprint (and the ClassFileParser).
+ */
+public class SchemaFingerprintTest {
+
+    // A persistence annotation, compiled with the entities
+    private static final String COLUMN_ANNOTATION = "package javax.persistence;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface Column { int length() default 255; }";
+
+    private static final String ENTITY = "public class MyEntity {\n"
+            + "    @javax.persistence.Column(length = 50)\n"
+            + "    private String name;\n"
+            + "    public String getName() { return name; }\n"
+            + "}";
+
+    private Path root;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.root = TempDirectoryUtils.createTempDirectory();
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        TempDirectoryUtils.delete(this.root);
+    }
+
+    /**
+     * Parse test with a compiled entity.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testParse() throws IOException {
+
+        // Arrange : A compiled entity
+        Path classFile = this.compile("parsed", ENTITY);
+
+        // Act : Parse it
+        ClassFile parsed = ClassFileParser.parse(Files.readAllBytes(classFile));
+
+        // Assert : The structure should have been read
+        Assertions.assertEquals("MyEntity", parsed.getName(), "Wrong class name");
+        Assertions.assertEquals("java/lang/Object", parsed.getSuperName(), "Wrong super class");
+        Assertions.assertEquals(1, parsed.getFields().size(), "Wrong fields count");
+        ClassFile.Member field = parsed.getFields().get(0);
+        Assertions.assertEquals("Ljava/lang/String;", field.getDescriptor(), "Wrong field type");
+        Assertions.assertEquals("Ljavax/persistence/Column;",
+                field.getAnnotations().get(0).getType(), "Wrong annotation");
+        Assertions.assertEquals("length=50", field.getAnnotations().get(0).getValues(),
+                "Wrong annotation values");
+    }
+
+    /**
+     * Fingerprint test with a code-only change.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testOf_codeChange() throws IOException {
+
+        // Arrange : The entity, and the same entity with a comment, a changed method body and an
+        // added helper method
+        Path original = this.compile("original", ENTITY);
+        Path modified = this.compile("modified", "public class MyEntity {\n"
+                + "    /** The name. */\n"
+                + "    @javax.persistence.Column(length = 50)\n"
+                + "    private String name;\n"
+                + "    public String getName() { return name == null ? \"\" : name; }\n"
+                + "    public boolean hasName() { return name != null; }\n"
+                + "}");
+
+        // Act : Compute both fingerprints
+        String originalFingerprint = SchemaFingerprint.of(original);
+        String modifiedFingerprint = SchemaFingerprint.of(modified);
+
+        // Assert : The fingerprint should not have changed
+        Assertions.assertEquals(originalFingerprint, modifiedFingerprint,
+                "A code-only change should not change the fingerprint");
+    }
+
+    /**
+     * Fingerprint test with a schema change.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testOf_schemaChange() throws IOException {
+
+        // Arrange : The entity, and the same entity with another column length
+        Path original = this.compile("original", ENTITY);
+        Path modified = this.compile("modified", ENTITY.replace("50", "100"));
+
+        // Act : Compute both fingerprints
+        String originalFingerprint = SchemaFingerprint.of(original);
+        String modifiedFingerprint = SchemaFingerprint.of(modified);
+
+        // Assert : The fingerprint should have changed
+        Assertions.assertTrue(originalFingerprint.startsWith(SchemaFingerprint.PREFIX),
+                "Wrong fingerprint prefix");
+        Assertions.assertNotEquals(originalFingerprint, modifiedFingerprint,
+                "An annotation change should change the fingerprint");
+    }
+
+    /**
+     * Compiles an entity, along with the persistence annotation.
+     *
+     * @param folder
+     *            The folder where the entity is compiled
+     * @param source
+     *            The entity source
+     * @return The compiled entity
+     * @throws IOException
+     *             I/O Error
+     */
+    private Path compile(final String folder, final String source) throws IOException {
+        Path sources = Files.createDirectories(this.root.resolve(folder));
+        Path annotation = Files.createDirectories(sources.resolve("javax/persistence"))
+                .resolve("Column.java");
+        Files.write(annotation, COLUMN_ANNOTATION.getBytes());
+        Path entity = sources.resolve("MyEntity.java");
+        Files.write(entity, source.getBytes());
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assertions.assertEquals(0, compiler.run(null, null, null, "-d", sources.toString(),
+                annotation.toString(), entity.toString()), "Compilation failed");
+        return sources.resolve("MyEntity.class");
+    }
+}
@@ -0,0 +1,104 @@
+package fr.dz.chuse.core.check.database;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.DataSourceUtils;
+
+/**
+ * Tests for the DatabaseFingerprint.
+ */
+public class DatabaseFingerprintTest {
+
+    private DataSource datasource;
+
+    private QueryRunner queryRunner;
+
+    @BeforeEach
+    public void init() throws SQLException {
+        this.datasource = DataSourceUtils.createInMemoryDatabase();
+        this.queryRunner = new QueryRunner(this.datasource);
+        this.queryRunner.update("CREATE TABLE MY_ENTITY (ID BIGINT PRIMARY KEY, "
+                + "NAME VARCHAR(50) NOT NULL)");
+        this.queryRunner.update("CREATE INDEX MY_ENTITY_NAME ON MY_ENTITY(NAME)");
+    }
+
+    /**
+     * Fingerprint test with an unchanged schema.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testOf_unchanged() throws SQLException {
+
+        // Arrange : The schema fingerprint, then data and Chuse tables have been added
+        String fingerprint = DatabaseFingerprint.of(this.datasource);
+        this.queryRunner.update("INSERT INTO MY_ENTITY VALUES (1, 'name')");
+        this.queryRunner.update("CREATE TABLE CHUSE_STATE (STATE_KEY VARCHAR(64))");
+
+        // Act : Compute the fingerprint again
+        String actual = DatabaseFingerprint.of(this.datasource);
+
+        // Assert : The fingerprint should not have changed
+        Assertions.assertEquals(fingerprint, actual, "The schema has not changed");
+    }
+
+    /**
+     * Fingerprint test with a dropped table and a changed column.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testOf_drifted() throws SQLException {
+
+        // Arrange : The schema fingerprint
+        String fingerprint = DatabaseFingerprint.of(this.datasource);
+
+        // Act : Change a column, then drop the table
+        this.queryRunner.update("ALTER TABLE MY_ENTITY ALTER COLUMN NAME VARCHAR(100)");
+        String altered = DatabaseFingerprint.of(this.datasource);
+        this.queryRunner.update("DROP TABLE MY_ENTITY");
+        String dropped = DatabaseFingerprint.of(this.datasource);
+
+        // Assert : The fingerprint should have changed each time
+        Assertions.assertNotEquals(fingerprint, altered, "The column change has not been found");
+        Assertions.assertNotEquals(altered, dropped, "The dropped table has not been found");
+    }
+
+    /**
+     * Fingerprint test with another schema of the same database.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testOf_otherSchema() throws SQLException {
+
+        // Arrange : The fingerprints of the current schema and of another one
+        this.queryRunner.update("CREATE SCHEMA OTHER");
+        this.queryRunner.update("CREATE TABLE OTHER.MY_ENTITY (ID BIGINT PRIMARY KEY)");
+        String fingerprint = DatabaseFingerprint.of(this.datasource);
+        String otherFingerprint = DatabaseFingerprint.of(this.datasource, "other");
+
+        // Act : Change the other schema
+        this.queryRunner.update("CREATE INDEX OTHER_ID ON OTHER.MY_ENTITY(ID)");
+        this.queryRunner.update("CREATE TABLE OTHER.OTHER_ENTITY (ID BIGINT PRIMARY KEY)");
+        String actual = DatabaseFingerprint.of(this.datasource);
+        String otherActual = DatabaseFingerprint.of(this.datasource, "other");
+
+        // Assert : Only the fingerprint of the other schema should have changed
+        Assertions.assertEquals(fingerprint, actual, "The current schema has not changed");
+        Assertions.assertNotEquals(fingerprint, otherFingerprint,
+                "The other schema should have its own fingerprint");
+        Assertions.assertNotEquals(otherFingerprint, otherActual,
+                "The other schema change has not been found");
+    }
+}
@@ -0,0 +1,124 @@
+package fr.dz.chuse.core.check.index;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the FileWatcher.
+ */
+public class FileWatcherTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = TempDirectoryUtils.createTempDirectory();
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        TempDirectoryUtils.delete(this.directory);
+    }
+
+    /**
+     * IsValid test with a watched file modified after the baseline has been saved.
+     *
+     * @throws Exception
+     *             IO or Concurrency Error
+     */
+    @Test
+    public void testIsValid_modified() throws Exception {
+
+        // Arrange : A watched file, in a saved baseline
+        Path file = Files.write(this.directory.resolve("import.sql"),
+                "INSERT INTO person VALUES (1)".getBytes(StandardCharsets.UTF_8));
+        FileWatcher watcher = FileWatcher.get();
+        String key = this.directory.toString();
+        watcher.watch(Collections.singletonList(file));
+        watcher.saveBaseline(key, "names", Collections.singletonList(file),
+                watcher.generation());
+        boolean validBefore = watcher.isValid(key, "names");
+        boolean validForOtherNames = watcher.isValid(key, "other names");
+
+        // Act : Modify the file, and wait for the event
+        Files.write(file, "INSERT INTO person VALUES (2)".getBytes(StandardCharsets.UTF_8));
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (watcher.isValid(key, "names") && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+
+        // Assert : The baseline should not be valid anymore
+        Assertions.assertTrue(validBefore, "The baseline should have been valid");
+        Assertions.assertFalse(validForOtherNames, "The baseline should be for the same names");
+        Assertions.assertFalse(watcher.isValid(key, "names"),
+                "The modification should have invalidated the baseline");
+    }
+
+    /**
+     * IsValid test with a file modified before its event has been delivered.
+     *
+     * @throws IOException
+     *             IO Error
+     */
+    @Test
+    public void testIsValid_modifiedWithoutEvent() throws IOException {
+
+        // Arrange : A file in a saved baseline, whose directory is not watched (as if its
+        // events were delayed)
+        Path file = Files.write(this.directory.resolve("import.sql"),
+                "INSERT INTO person VALUES (1)".getBytes(StandardCharsets.UTF_8));
+        FileWatcher watcher = FileWatcher.start();
+        watcher.saveBaseline("key", "names", Collections.singletonList(file),
+                watcher.generation());
+        boolean validBefore = watcher.isValid("key", "names");
+
+        // Act : Modify the file
+        Files.write(file, "INSERT INTO person VALUES (10)".getBytes(StandardCharsets.UTF_8));
+
+        // Assert : The baseline should not be valid anymore, without any event
+        Assertions.assertTrue(validBefore, "The baseline should have been valid");
+        Assertions.assertFalse(watcher.isValid("key", "names"),
+                "The modification should have been found by reading the file attributes");
+    }
+
+    /**
+     * Prune test with events older than the baselines.
+     *
+     * @throws Exception
+     *             IO or Concurrency Error
+     */
+    @Test
+    public void testRemoveBaseline_pruned() throws Exception {
+
+        // Arrange : A watched file, modified after its baseline has been saved
+        Path file = Files.write(this.directory.resolve("import.sql"),
+                "INSERT INTO person VALUES (1)".getBytes(StandardCharsets.UTF_8));
+        FileWatcher watcher = FileWatcher.start();
+        watcher.watch(Collections.singletonList(file));
+        watcher.saveBaseline("key", "names", Collections.singletonList(file),
+                watcher.generation());
+        Files.write(file, "INSERT INTO person VALUES (2)".getBytes(StandardCharsets.UTF_8));
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (watcher.eventCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        int eventsBefore = watcher.eventCount();
+
+        // Act : Remove the baseline
+        watcher.removeBaseline("key");
+
+        // Assert : The events should have been pruned
+        Assertions.assertTrue(eventsBefore > 0, "The modification should have been watched");
+        Assertions.assertEquals(0, watcher.eventCount(), "The events should have been pruned");
+    }
+}
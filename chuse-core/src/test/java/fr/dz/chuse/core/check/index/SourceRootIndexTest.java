@@ -0,0 +1,121 @@
+package fr.dz.chuse.core.check.index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the SourceRootIndex.
+ */
+public class SourceRootIndexTest {
+
+    private Path root;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.root = TempDirectoryUtils.createTempDirectory();
+        Files.createDirectories(this.root.resolve("fr/dz"));
+        Files.write(this.root.resolve("fr/dz/MyClass.java"), "class MyClass {}".getBytes());
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        SourceRootIndex.invalidateAll();
+        TempDirectoryUtils.delete(this.root);
+    }
+
+    /**
+     * Find test with an existing and a non existing file.
+     */
+    @Test
+    public void testFind() {
+
+        // Arrange : The index of the root
+        SourceRootIndex index = SourceRootIndex.get(this.root);
+
+        // Act : Find an existing and a non existing file
+        Optional<BasicFileAttributes> existing = index.find("fr/dz/MyClass.java");
+        Optional<BasicFileAttributes> nonExisting = index.find("fr/dz/NonExistingClass.java");
+
+        // Assert : Only the existing file should be found
+        Assertions.assertTrue(existing.isPresent(), "The existing file has not been found");
+        Assertions.assertEquals(16, existing.get().size(), "The file size is not the expected one");
+        Assertions.assertFalse(nonExisting.isPresent(), "A non existing file has been found");
+    }
+
+    /**
+     * Find test with a missing root.
+     */
+    @Test
+    public void testFind_missingRoot() {
+
+        // Arrange : The index of a missing root
+        SourceRootIndex index = SourceRootIndex.get(this.root.resolve("missing"));
+
+        // Act : Find a file
+        Optional<BasicFileAttributes> file = index.find("fr/dz/MyClass.java");
+
+        // Assert : Nothing should be found
+        Assertions.assertFalse(file.isPresent(), "A file has been found in a missing root");
+    }
+
+    /**
+     * Get test with an unchanged root.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testGet_reused() throws IOException {
+
+        // Arrange : The root has been indexed, then a file has been modified
+        SourceRootIndex index = SourceRootIndex.get(this.root);
+        Path file = this.root.resolve("fr/dz/MyClass.java");
+        FileTime modified = FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10000);
+        Files.setLastModifiedTime(file, modified);
+
+        // Act : Get the index again
+        SourceRootIndex reused = SourceRootIndex.get(this.root);
+
+        // Assert : The index should be reused, with the actual file attributes
+        Assertions.assertSame(index, reused, "The index should have been reused");
+        Assertions.assertEquals(modified,
+                reused.find("fr/dz/MyClass.java").get().lastModifiedTime(),
+                "The file attributes should have been read again");
+    }
+
+    /**
+     * Get test with a created file.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testGet_createdFile() throws IOException {
+
+        // Arrange : The root has been indexed, then a file has been created
+        SourceRootIndex index = SourceRootIndex.get(this.root);
+        Path directory = this.root.resolve("fr/dz");
+        FileTime modified = FileTime
+                .fromMillis(Files.getLastModifiedTime(directory).toMillis() + 10000);
+        Files.write(directory.resolve("MyOtherClass.java"), "class MyOtherClass {}".getBytes());
+        Files.setLastModifiedTime(directory, modified);
+
+        // Act : Get the index again
+        SourceRootIndex rebuilt = SourceRootIndex.get(this.root);
+
+        // Assert : The root should have been walked again
+        Assertions.assertNotSame(index, rebuilt, "The index should have been re-built");
+        Assertions.assertEquals(2, rebuilt.size(), "The created file should have been indexed");
+    }
+}
@@ -0,0 +1,64 @@
+package fr.dz.chuse.core.check.listener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the JsonSummaryWriter.
+ */
+public class JsonSummaryWriterTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = TempDirectoryUtils.createTempDirectory();
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        TempDirectoryUtils.delete(this.directory);
+    }
+
+    /**
+     * CheckCompleted test with two checks.
+     *
+     * @throws IOException
+     *             IO Error
+     */
+    @Test
+    public void testCheckCompleted() throws IOException {
+
+        // Arrange : A writer, and the phases of a check (the read being reported twice)
+        Path summary = this.directory.resolve("chuse/check-summary.jsonl");
+        JsonSummaryWriter writer = new JsonSummaryWriter(summary);
+        writer.phaseCompleted(CheckPhase.ATTRIBUTE_READ, 1_000_000, 10);
+        writer.phaseCompleted(CheckPhase.ATTRIBUTE_READ, 500_000, 5);
+        writer.phaseCompleted(CheckPhase.REBUILD, 2_000_000_000, 1);
+
+        // Act : Complete two checks
+        writer.checkCompleted("my \"unit\"", CheckDecision.REBUILD, 1, 2_500_000_000L);
+        writer.checkCompleted("my \"unit\"", CheckDecision.UNCHANGED, 0, 3_000_000);
+
+        // Assert : There should be one line per check, with the phases of the check only
+        List<String> lines = Files.readAllLines(summary, StandardCharsets.UTF_8);
+        Assertions.assertEquals(2, lines.size(), "There should be one line per check");
+        Assertions.assertTrue(lines.get(0).contains("\"persistenceUnit\":\"my \\\"unit\\\"\","
+                + "\"decision\":\"REBUILD\",\"changedFiles\":1,\"durationMs\":2500.000,"
+                + "\"phases\":{\"ATTRIBUTE_READ\":{\"durationMs\":1.500,\"files\":15},"
+                + "\"REBUILD\":{\"durationMs\":2000.000,\"files\":1}}}"),
+                "Unexpected summary " + lines.get(0));
+        Assertions.assertTrue(lines.get(1).endsWith("\"decision\":\"UNCHANGED\",\"changedFiles\":0,"
+                + "\"durationMs\":3.000,\"phases\":{}}"), "Unexpected summary " + lines.get(1));
+    }
+}
@@ -0,0 +1,35 @@
+package fr.dz.chuse.core.check.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the CheckResultCache.
+ */
+public class CheckResultCacheTest {
+
+    /**
+     * IsVerified test with a verified database, then invalidated.
+     */
+    @Test
+    public void testIsVerified_invalidated() {
+
+        // Arrange : A verified database
+        String key = "jdbc:h2:mem:testIsVerified#PUBLIC#default";
+        CheckResultCache.verified(key, "names");
+        boolean verified = CheckResultCache.isVerified(key, "names");
+        boolean verifiedForOtherNames = CheckResultCache.isVerified(key, "other names");
+
+        // Act : Invalidate it
+        CheckResultCache.invalidate(key);
+
+        // Assert : It should only be verified for the same names, until it is invalidated
+        Assertions.assertTrue(verified, "The database should have been verified");
+        Assertions.assertFalse(verifiedForOtherNames,
+                "The database should only be verified for the same names");
+        Assertions.assertFalse(CheckResultCache.isVerified(key, "names"),
+                "The database should not be verified anymore");
+        Assertions.assertFalse(CheckResultCache.contains(key),
+                "The database should have been forgotten");
+    }
+}
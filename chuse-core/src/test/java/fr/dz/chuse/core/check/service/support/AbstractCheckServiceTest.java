@@ -10,6 +10,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import fr.dz.chuse.core.check.service.CheckService;
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
 import fr.dz.chuse.core.repository.CheckedFileRepository;
 
@@ -73,10 +74,11 @@ public abstract class AbstractCheckServiceTest {
         this.insertFilesIntoRepository(unchanged, this.repository);
 
         // Act : Check changes
-        boolean changed = this.service.hasChanged(unchanged);
+        ChangeSet changes = this.service.checkChanges(unchanged);
 
         // Assert : No change should be notified
-        Assertions.assertFalse(changed, "A change has been detected whereas there was not");
+        Assertions.assertFalse(changes.hasChanged(),
+                "A change has been detected whereas there was not");
     }
 
     /**
@@ -92,11 +94,14 @@ public abstract class AbstractCheckServiceTest {
         actual.get(2).setLastModifiedTime(LocalDateTime.parse("2018-07-18T19:26:32.000"));
 
         // Act : Check changes
-        boolean changed = this.service.hasChanged(actual);
+        ChangeSet changes = this.service.checkChanges(actual);
 
         // Assert : A change should be notified
-        Assertions.assertTrue(changed,
+        Assertions.assertTrue(changes.hasChanged(),
                 "No change has been detected whereas a file has been modified");
+        Assertions.assertEquals(Arrays.asList(actual.get(2)), changes.getModifiedFiles(),
+                "The modified file has not been identified");
+        Assertions.assertEquals(1, changes.size(), "There should be only one change");
     }
 
     /**
@@ -112,11 +117,14 @@ public abstract class AbstractCheckServiceTest {
         actual.add(new CheckedFile("MyClass.java", LocalDateTime.parse("2018-07-18T19:26:32.000")));
 
         // Act : Check changes
-        boolean changed = this.service.hasChanged(actual);
+        ChangeSet changes = this.service.checkChanges(actual);
 
         // Assert : A change should be notified
-        Assertions.assertTrue(changed,
+        Assertions.assertTrue(changes.hasChanged(),
                 "No change has been detected whereas a file has been created");
+        Assertions.assertEquals(Arrays.asList(actual.get(actual.size() - 1)),
+                changes.getAddedFiles(), "The created file has not been identified");
+        Assertions.assertEquals(1, changes.size(), "There should be only one change");
     }
 
     /**
@@ -129,14 +137,36 @@ public abstract class AbstractCheckServiceTest {
         List<CheckedFile> inRepository = createCheckedFiles();
         this.insertFilesIntoRepository(inRepository, this.repository);
         List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
-        actual.remove(2);
+        CheckedFile deleted = actual.remove(2);
 
         // Act : Check changes
-        boolean changed = this.service.hasChanged(actual);
+        ChangeSet changes = this.service.checkChanges(actual);
 
         // Assert : A change should be notified
-        Assertions.assertTrue(changed,
+        Assertions.assertTrue(changes.hasChanged(),
                 "No change has been detected whereas a file has been deleted");
+        Assertions.assertEquals(Arrays.asList(deleted), changes.getDeletedFiles(),
+                "The deleted file has not been identified");
+        Assertions.assertEquals(1, changes.size(), "There should be only one change");
+    }
+
+    /**
+     * Deprecated change detection test with a deleted file.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testHasChanged_deprecated() {
+
+        // Arrange : A file has been deleted
+        this.insertFilesIntoRepository(createCheckedFiles(), this.repository);
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        actual.remove(2);
+
+        // Act : Check changes the former way
+        boolean changed = this.service.hasChanged(actual);
+
+        // Assert : A change should be notified
+        Assertions.assertTrue(changed, "No change has been detected whereas a file has been deleted");
     }
 
     /**
@@ -164,7 +194,7 @@ public abstract class AbstractCheckServiceTest {
      *
      * @return The checked files
      */
-    private static List<CheckedFile> createCheckedFiles() {
+    protected static List<CheckedFile> createCheckedFiles() {
         return Arrays.asList(
                 new CheckedFile("Class1.java", LocalDateTime.parse("2017-07-01T19:26:32.000")),
                 new CheckedFile("Class2.java", LocalDateTime.parse("2017-07-02T19:26:32.000")),
@@ -1,11 +1,20 @@
 package fr.dz.chuse.core.check.service.support;
 
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.QueryRunner;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
 import fr.dz.chuse.core.repository.CheckedFileRepository;
 import fr.dz.chuse.core.repository.support.JdbcCheckedFileRepository;
@@ -16,9 +25,12 @@ import fr.dz.chuse.core.utils.DataSourceUtils;
  */
 public class CheckServiceIntegrationTest extends AbstractCheckServiceTest {
 
+    private DataSource datasource;
+
     @Override
     protected CheckedFileRepository createRepository() {
-        return new JdbcCheckedFileRepository(DataSourceUtils.createInMemoryDatabase());
+        this.datasource = DataSourceUtils.createInMemoryDatabase();
+        return new JdbcCheckedFileRepository(this.datasource);
     }
 
     @Override
@@ -44,4 +56,61 @@ public class CheckServiceIntegrationTest extends AbstractCheckServiceTest {
                     file.getName() + " should not be in the repository");
         }
     }
+
+    /**
+     * Update repository test with a change set, after invalidation.
+     */
+    @Test
+    public void testUpdateCheckedFiles_changeSet() {
+
+        // Arrange : Files in the repository and actual files with a created, a modified and a
+        // deleted file
+        List<CheckedFile> inRepository = createCheckedFiles();
+        this.insertFilesIntoRepository(inRepository, this.repository);
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        CheckedFile deleted = actual.remove(0);
+        actual.get(2).setLastModifiedTime(LocalDateTime.parse("2018-07-18T19:26:32.000"));
+        actual.add(new CheckedFile("MyClass.java", LocalDateTime.parse("2018-07-18T19:26:32.000")));
+        ChangeSet changes = this.service.checkChanges(actual);
+
+        // Act : Invalidate and then update the repository
+        this.service.invalidateCheckedFiles(changes);
+        boolean changedAfterInvalidation = this.service.checkChanges(actual).hasChanged();
+        this.service.updateCheckedFiles(changes);
+
+        // Assert : Changes should still be found after invalidation, and the repository should
+        // then match the actual files
+        Assertions.assertTrue(changedAfterInvalidation,
+                "No change has been detected whereas the repository has been invalidated");
+        this.assertInRepository(actual);
+        this.assertNotInRepository(Arrays.asList(deleted));
+        Assertions.assertFalse(this.service.checkChanges(actual).hasChanged(),
+                "A change has been detected whereas the repository has been updated");
+    }
+
+    /**
+     * Database fingerprint test with a dropped table.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testCheckDatabaseFingerprint_droppedTable() throws SQLException {
+
+        // Arrange : The database has been built and fingerprinted, then a table has been dropped
+        QueryRunner queryRunner = new QueryRunner(this.datasource);
+        queryRunner.update("CREATE TABLE MY_ENTITY (ID BIGINT PRIMARY KEY)");
+        boolean checkedBeforeUpdate = this.service.checkDatabaseFingerprint(this.datasource);
+        this.service.updateDatabaseFingerprint(this.datasource);
+        boolean checkedAfterUpdate = this.service.checkDatabaseFingerprint(this.datasource);
+        queryRunner.update("DROP TABLE MY_ENTITY");
+
+        // Act : Check the database fingerprint
+        boolean checked = this.service.checkDatabaseFingerprint(this.datasource);
+
+        // Assert : Only the stored fingerprint of the unchanged database should match
+        Assertions.assertFalse(checkedBeforeUpdate, "No fingerprint has been stored yet");
+        Assertions.assertTrue(checkedAfterUpdate, "The database has not changed");
+        Assertions.assertFalse(checked, "The dropped table has not been found");
+    }
 }
@@ -1,18 +1,40 @@
 package fr.dz.chuse.core.check.service.support;
 
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import fr.dz.chuse.core.check.bytecode.SchemaFingerprint;
+import fr.dz.chuse.core.check.listener.CheckListener;
+import fr.dz.chuse.core.check.listener.CheckPhase;
+import fr.dz.chuse.core.config.ChangeDetectionMode;
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
 import fr.dz.chuse.core.repository.CheckedFileRepository;
+import fr.dz.chuse.core.utils.HashUtils;
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
 
 /**
  * Unit tests for the CheckService.
@@ -23,6 +45,8 @@ public class CheckServiceUnitTest extends AbstractCheckServiceTest {
     @BeforeEach
     public void resetMocks() {
         Mockito.reset(this.repository);
+        Mockito.when(this.repository.streamAll()).thenCallRealMethod();
+        Mockito.when(this.repository.findFileSet()).thenCallRealMethod();
     }
 
     @Override
@@ -38,14 +62,95 @@ public class CheckServiceUnitTest extends AbstractCheckServiceTest {
 
     @Override
     protected void assertInRepository(final List<CheckedFile> files) {
+        Collection<CheckedFile> replacement = this.captureReplacement();
         for (CheckedFile file : files) {
-            Mockito.verify(this.repository, Mockito.times(1)).insertOrUpdateFile(file);
+            Assertions.assertTrue(replacement.contains(file),
+                    file.getName() + " is missing in the repository");
         }
     }
 
     @Override
     protected void assertNotInRepository(final List<CheckedFile> files) {
-        Mockito.verify(this.repository, Mockito.times(1)).deleteAll();
+        Collection<CheckedFile> replacement = this.captureReplacement();
+        for (CheckedFile file : files) {
+            Assertions.assertFalse(replacement.contains(file),
+                    file.getName() + " should not be in the repository");
+        }
+    }
+
+    /**
+     * Captures the files given to the single replaceAll call on the repository.
+     *
+     * @return The files that replaced the repository content
+     */
+    @SuppressWarnings("unchecked")
+    private Collection<CheckedFile> captureReplacement() {
+        ArgumentCaptor<Collection<CheckedFile>> captor = ArgumentCaptor.forClass(Collection.class);
+        Mockito.verify(this.repository, Mockito.atLeastOnce()).replaceAll(captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * Update repository test with a change set.
+     */
+    @Test
+    public void testUpdateCheckedFiles_changeSet() {
+
+        // Arrange : A file has been created
+        List<CheckedFile> inRepository = createCheckedFiles();
+        this.insertFilesIntoRepository(inRepository, this.repository);
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        actual.add(new CheckedFile("MyClass.java", LocalDateTime.parse("2018-07-18T19:26:32.000")));
+        ChangeSet changes = this.service.checkChanges(actual);
+
+        // Act : Update the repository
+        this.service.updateCheckedFiles(changes);
+
+        // Assert : Only the changes should be written
+        Mockito.verify(this.repository, Mockito.times(1)).applyChanges(changes);
+        Mockito.verify(this.repository, Mockito.never()).replaceAll(Mockito.any());
+    }
+
+    /**
+     * Change detection test with the stored root hash.
+     */
+    @Test
+    public void testCheckChanges_sameRootHash() {
+
+        // Arrange : The root hash of the actual files is the stored one
+        List<CheckedFile> actual = createCheckedFiles();
+        this.insertFilesIntoRepository(Collections.emptyList(), this.repository);
+        String rootHash = this.service.checkChanges(actual).getRootHash();
+        Mockito.reset(this.repository);
+        Mockito.when(this.repository.findRootHash()).thenReturn(rootHash);
+
+        // Act : Check changes
+        ChangeSet changes = this.service.checkChanges(actual);
+
+        // Assert : Nothing should have changed, without loading the stored files
+        Assertions.assertFalse(changes.hasChanged(), "A change has been detected");
+        Assertions.assertFalse(changes.hasRootHash(), "The root hash should not be stored again");
+        Mockito.verify(this.repository, Mockito.never()).findAll();
+    }
+
+    /**
+     * Change detection test with a prefetched repository.
+     */
+    @Test
+    public void testCheckChanges_prefetched() {
+
+        // Arrange : The repository has been read in the background
+        this.insertFilesIntoRepository(createCheckedFiles(), this.repository);
+        this.service.prefetch(Collections.emptyList(), Collections.emptyList());
+
+        // Act : Check changes twice
+        ChangeSet changes = this.service.checkChanges(createCheckedFiles());
+        this.service.checkChanges(createCheckedFiles());
+
+        // Assert : The prefetched files should have been used by the first check only
+        Assertions.assertFalse(changes.hasChanged(), "A change has been detected");
+        Mockito.verify(this.repository, Mockito.times(2)).findAll();
+        Mockito.verify(this.repository, Mockito.times(2)).findRootHash();
     }
 
     /**
@@ -85,4 +190,377 @@ public class CheckServiceUnitTest extends AbstractCheckServiceTest {
                 "src/test/java/" + CheckServiceUnitTest.class.getName().replace(".", "/") + ".java",
                 resources.get(0).getName());
     }
+
+    /**
+     * Resource extraction test with an additional folder and a supplied executor.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testExtractResources_additionalFolder() throws IOException {
+
+        // Arrange : A resource only in an additional folder, and an executor counting its tasks
+        Path folder = TempDirectoryUtils.createTempDirectory();
+        Files.write(folder.resolve("my-orm.xml"), "<entity-mappings/>".getBytes());
+        AtomicInteger tasks = new AtomicInteger();
+        CheckServiceImpl service = new CheckServiceImpl(this.repository);
+        service.setExecutor(command -> {
+            tasks.incrementAndGet();
+            command.run();
+        });
+        List<String> files = Arrays.asList("existing-file.txt", "my-orm.xml");
+
+        try {
+
+            // Act : Extract the resources
+            List<CheckedFile> resources = service.extractResources(files,
+                    Collections.singletonList(folder.toString()));
+
+            // Assert : Both files should be found, each one by a task of the executor
+            Assertions.assertEquals(Arrays.asList("src/test/resources/existing-file.txt",
+                    folder.toString().replace('\\', '/') + "/my-orm.xml"),
+                    resources.stream().map(CheckedFile::getName).collect(Collectors.toList()),
+                    "Unexpected extracted resources");
+            Assertions.assertTrue(tasks.get() >= files.size(),
+                    "The files should have been resolved by the executor");
+        } finally {
+            TempDirectoryUtils.delete(folder);
+        }
+    }
+
+    /**
+     * Java class extraction test with a compiled class in a classpath folder.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testExtractJavaClasses_classpathFolder() throws IOException {
+
+        // Arrange : A compiled class in a classpath folder, checked by its bytecode
+        Path folder = TempDirectoryUtils.createTempDirectory();
+        Path classFile = Files.createDirectories(folder.resolve("my")).resolve("Entity.class");
+        Files.write(classFile, new byte[] { (byte) 0xCA, (byte) 0xFE });
+        CheckServiceImpl service = new CheckServiceImpl(this.repository);
+        service.setBytecodeFingerprint(true);
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[] { folder.toUri().toURL() }, null)) {
+            service.setClassLoader(classLoader);
+
+            // Act : Extract the class
+            List<CheckedFile> classes = service.extractJavaClasses(Arrays.asList("my.Entity"),
+                    Collections.emptyList());
+
+            // Assert : The compiled class should be found, with its metadata
+            Assertions.assertEquals(1, classes.size(), "The class should have been found");
+            Assertions.assertTrue(classes.get(0).getName().endsWith("/my/Entity.class"),
+                    "Unexpected class file " + classes.get(0).getName());
+            Assertions.assertEquals(Long.valueOf(2), classes.get(0).getSize(),
+                    "Unexpected class file size");
+        } finally {
+            TempDirectoryUtils.delete(folder);
+        }
+    }
+
+    /**
+     * Content-hash change detection test with a touched file.
+     */
+    @Test
+    public void testCheckChanges_contentHash_touchedFile() {
+
+        // Arrange : An existing file stored with another last modified time but the same content
+        CheckedFile actual = this.extractExistingFile();
+        String hash = HashUtils.hash(Paths.get(actual.getName()));
+        this.insertFilesIntoRepository(Arrays.asList(new CheckedFile(actual.getName(),
+                LocalDateTime.parse("2017-07-01T19:26:32.000"), actual.getSize(), hash)),
+                this.repository);
+        ((CheckServiceImpl) this.service).setChangeDetectionMode(ChangeDetectionMode.CONTENT_HASH);
+
+        // Act : Check changes
+        ChangeSet changes = this.service.checkChanges(Arrays.asList(actual));
+
+        // Assert : The file should only be touched
+        Assertions.assertFalse(changes.hasChanged(),
+                "A change has been detected whereas the content has not changed");
+        Assertions.assertEquals(Arrays.asList(actual), changes.getTouchedFiles(),
+                "The file should have been touched");
+        Assertions.assertEquals(hash, actual.getHash(), "The file should have been hashed");
+    }
+
+    /**
+     * Content-hash change detection test with a modified file.
+     */
+    @Test
+    public void testCheckChanges_contentHash_modifiedFile() {
+
+        // Arrange : An existing file stored with another last modified time and another content
+        CheckedFile actual = this.extractExistingFile();
+        this.insertFilesIntoRepository(Arrays.asList(new CheckedFile(actual.getName(),
+                LocalDateTime.parse("2017-07-01T19:26:32.000"), actual.getSize(), "other")),
+                this.repository);
+        ((CheckServiceImpl) this.service).setChangeDetectionMode(ChangeDetectionMode.CONTENT_HASH);
+
+        // Act : Check changes
+        ChangeSet changes = this.service.checkChanges(Arrays.asList(actual));
+
+        // Assert : The file should be modified
+        Assertions.assertEquals(Arrays.asList(actual), changes.getModifiedFiles(),
+                "The file should have been modified");
+        Assertions.assertTrue(changes.getTouchedFiles().isEmpty(),
+                "The file should not have been touched");
+    }
+
+    /**
+     * Content-hash change detection test with unchanged metadata.
+     */
+    @Test
+    public void testCheckChanges_contentHash_sameMetadata() {
+
+        // Arrange : An existing file stored with the same metadata
+        CheckedFile actual = this.extractExistingFile();
+        this.insertFilesIntoRepository(Arrays.asList(new CheckedFile(actual.getName(),
+                actual.getLastModifiedTime(), actual.getSize(), "stored")), this.repository);
+        ((CheckServiceImpl) this.service).setChangeDetectionMode(ChangeDetectionMode.CONTENT_HASH);
+
+        // Act : Check changes
+        ChangeSet changes = this.service.checkChanges(Arrays.asList(actual));
+
+        // Assert : The file should not be hashed again
+        Assertions.assertFalse(changes.hasUpdates(), "The repository should not be updated");
+        Assertions.assertEquals("stored", actual.getHash(),
+                "The stored hash should have been kept");
+    }
+
+    /**
+     * Resource extraction test with a resource inside a JAR.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testExtractResources_insideJar() throws IOException {
+
+        // Arrange : A JAR containing a mapping file, on the classpath
+        Path jar = Files.createTempFile("chuse", ".jar");
+        byte[] content = "<entity-mappings/>".getBytes();
+        try (ZipOutputStream output = new ZipOutputStream(Files.newOutputStream(jar))) {
+            output.putNextEntry(new ZipEntry("META-INF/shared-orm.xml"));
+            output.write(content);
+            output.closeEntry();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toUri().toURL() })) {
+            ((CheckServiceImpl) this.service).setClassLoader(classLoader);
+
+            // Act : Extract the resource
+            List<CheckedFile> resources = this.service.extractResources(
+                    Arrays.asList("META-INF/shared-orm.xml"), Collections.emptyList());
+
+            // Assert : The JAR entry should be extracted, with its CRC-32 as hash
+            Assertions.assertEquals(1, resources.size());
+            Assertions.assertTrue(resources.get(0).getName().endsWith("!/META-INF/shared-orm.xml"),
+                    "The JAR entry name is not what it is expected");
+            Assertions.assertEquals(Long.valueOf(content.length), resources.get(0).getSize());
+            Assertions.assertEquals(String.format("crc32:%08x", crc.getValue()),
+                    resources.get(0).getHash());
+        } finally {
+            Files.delete(jar);
+        }
+    }
+
+    /**
+     * Bytecode fingerprint change detection test with a recompiled class.
+     */
+    @Test
+    public void testCheckChanges_bytecodeFingerprint_touchedClass() {
+
+        // Arrange : The compiled test class, stored with another last modified time and the
+        // same schema fingerprint
+        CheckServiceImpl serviceImpl = (CheckServiceImpl) this.service;
+        serviceImpl.setBytecodeFingerprint(true);
+        serviceImpl.setClassLoader(CheckServiceUnitTest.class.getClassLoader());
+        CheckedFile actual = this.service.extractJavaClasses(
+                Arrays.asList(CheckServiceUnitTest.class.getName()), Collections.emptyList())
+                .get(0);
+        String fingerprint = SchemaFingerprint.of(Paths.get(actual.getName()));
+        this.insertFilesIntoRepository(Arrays.asList(new CheckedFile(actual.getName(),
+                LocalDateTime.parse("2017-07-01T19:26:32.000"), actual.getSize(), fingerprint)),
+                this.repository);
+
+        // Act : Check changes
+        ChangeSet changes = this.service.checkChanges(Arrays.asList(actual));
+
+        // Assert : The compiled class should be checked, and only be touched
+        Assertions.assertTrue(actual.getName().endsWith(
+                CheckServiceUnitTest.class.getName().replace(".", "/") + ".class"),
+                "The compiled class should have been extracted");
+        Assertions.assertFalse(changes.hasChanged(),
+                "A change has been detected whereas the schema has not changed");
+        Assertions.assertEquals(Arrays.asList(actual), changes.getTouchedFiles(),
+                "The class should have been touched");
+    }
+
+    /**
+     * Content key test with a touched file.
+     */
+    @Test
+    public void testComputeContentKey_touchedFile() {
+
+        // Arrange : The same file, with another last modified time
+        CheckedFile actual = this.extractExistingFile();
+        CheckedFile touched = new CheckedFile(actual.getName(),
+                LocalDateTime.parse("2017-07-01T19:26:32.000"), actual.getSize(), null);
+
+        // Act : Compute the content keys
+        String key = this.service.computeContentKey(Arrays.asList(actual));
+        String touchedKey = this.service.computeContentKey(Arrays.asList(touched));
+
+        // Assert : The keys should be the same, and the files should not have been changed
+        Assertions.assertEquals(key, touchedKey, "The content key should not depend on metadata");
+        Assertions.assertNull(touched.getHash(), "The file hash should not have been set");
+    }
+
+    /**
+     * Change detection test with a listener.
+     */
+    @Test
+    public void testCheckChanges_listener() {
+
+        // Arrange : A service with a listener, and a modified file
+        CheckListener listener = Mockito.mock(CheckListener.class);
+        CheckServiceImpl service = new CheckServiceImpl(this.repository);
+        service.setListener(listener);
+        List<CheckedFile> inRepository = createCheckedFiles();
+        this.insertFilesIntoRepository(inRepository, this.repository);
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        actual.set(0, new CheckedFile(actual.get(0).getName(),
+                LocalDateTime.parse("2018-07-18T19:26:32.000")));
+
+        // Act : Check changes
+        service.checkChanges(actual);
+
+        // Assert : The repository read and the diff should have been reported
+        Mockito.verify(listener).phaseCompleted(Mockito.eq(CheckPhase.REPOSITORY_READ),
+                Mockito.anyLong(), Mockito.eq(inRepository.size()));
+        Mockito.verify(listener).phaseCompleted(Mockito.eq(CheckPhase.DIFF), Mockito.anyLong(),
+                Mockito.eq(actual.size()));
+    }
+
+    /**
+     * Change detection test with a slow repository stream.
+     */
+    @Test
+    public void testCheckChanges_streamReadDuration() {
+
+        // Arrange : A service with a listener, and a repository slowly streaming its files
+        CheckListener listener = Mockito.mock(CheckListener.class);
+        CheckServiceImpl service = new CheckServiceImpl(this.repository);
+        service.setListener(listener);
+        List<CheckedFile> inRepository = createCheckedFiles();
+        long readDelay = 100_000_000L * inRepository.size();
+        Mockito.doAnswer(invocation -> inRepository.stream().peek(file -> sleep(100)))
+                .when(this.repository).streamAll();
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        actual.set(0, new CheckedFile(actual.get(0).getName(),
+                LocalDateTime.parse("2018-07-18T19:26:32.000")));
+
+        // Act : Check changes
+        service.checkChanges(actual);
+
+        // Assert : The time spent streaming the files should be a repository read
+        ArgumentCaptor<Long> readDuration = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Long> diffDuration = ArgumentCaptor.forClass(Long.class);
+        Mockito.verify(listener).phaseCompleted(Mockito.eq(CheckPhase.REPOSITORY_READ),
+                readDuration.capture(), Mockito.anyInt());
+        Mockito.verify(listener).phaseCompleted(Mockito.eq(CheckPhase.DIFF),
+                diffDuration.capture(), Mockito.anyInt());
+        Assertions.assertTrue(readDuration.getValue() >= readDelay,
+                "The stream reads should be counted as repository read");
+        Assertions.assertTrue(diffDuration.getValue() < readDelay,
+                "The stream reads should not be counted as diff");
+    }
+
+    /**
+     * Change detection test with a repository which doesn't sort the files as String.compareTo
+     * does.
+     */
+    @Test
+    public void testCheckChanges_unsortedRepository() {
+
+        // Arrange : A repository streaming its files in reverse order, a file being added, one
+        // being modified and one being deleted
+        List<CheckedFile> inRepository = new ArrayList<>(createCheckedFiles());
+        Collections.reverse(inRepository);
+        Mockito.doAnswer(invocation -> inRepository.stream()).when(this.repository).streamAll();
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        CheckedFile deleted = actual.remove(3);
+        CheckedFile modified = new CheckedFile(actual.get(0).getName(),
+                LocalDateTime.parse("2018-07-18T19:26:32.000"));
+        actual.set(0, modified);
+        CheckedFile added = new CheckedFile("Class0.java",
+                LocalDateTime.parse("2018-07-18T19:26:32.000"));
+        actual.add(added);
+
+        // Act : Check changes
+        ChangeSet changes = this.service.checkChanges(actual);
+
+        // Assert : The changes should be found without reading the repository again
+        Assertions.assertEquals(Arrays.asList(added), changes.getAddedFiles(),
+                "Unexpected added files");
+        Assertions.assertEquals(Arrays.asList(modified), changes.getModifiedFiles(),
+                "Unexpected modified files");
+        Assertions.assertEquals(Arrays.asList(deleted), changes.getDeletedFiles(),
+                "Unexpected deleted files");
+        Mockito.verify(this.repository, Mockito.times(1)).streamAll();
+        Mockito.verify(this.repository, Mockito.never()).findAll();
+    }
+
+    /**
+     * Change detection test without detailed changes.
+     */
+    @Test
+    public void testCheckChanges_quickDecision() {
+
+        // Arrange : A service stopping at the first change, and two modified files
+        CheckServiceImpl service = new CheckServiceImpl(this.repository);
+        service.setDetailedChanges(false);
+        this.insertFilesIntoRepository(createCheckedFiles(), this.repository);
+        List<CheckedFile> actual = new ArrayList<>(createCheckedFiles());
+        for (int i = 0; i < 2; i++) {
+            actual.set(i, new CheckedFile(actual.get(i).getName(),
+                    LocalDateTime.parse("2018-07-18T19:26:32.000")));
+        }
+
+        // Act : Check changes, and update the repository
+        ChangeSet changes = service.checkChanges(actual);
+        service.updateCheckedFiles(changes);
+
+        // Assert : Only the first change should be found, and all the files should be replaced
+        Assertions.assertEquals(1, changes.size(), "The check should stop at the first change");
+        Assertions.assertFalse(changes.isComplete(), "The changes should not be complete");
+        Mockito.verify(this.repository, Mockito.times(1)).replaceAll(actual);
+    }
+
+    /**
+     * Extracts the existing test file.
+     *
+     * @return The existing file
+     */
+    private CheckedFile extractExistingFile() {
+        return this.service
+                .extractResources(Arrays.asList("existing-file.txt"), Collections.emptyList())
+                .get(0);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
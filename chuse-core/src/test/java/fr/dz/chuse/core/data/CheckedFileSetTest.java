@@ -0,0 +1,65 @@
+package fr.dz.chuse.core.data;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the CheckedFileSet.
+ */
+public class CheckedFileSetTest {
+
+    /**
+     * Creation test with files which are not sorted.
+     */
+    @Test
+    public void testOf_unsorted() {
+
+        // Arrange : Files sharing directories, not sorted by name
+        CheckedFile entity = new CheckedFile("src/main/java/a/MyEntity.java",
+                LocalDateTime.parse("2018-07-18T19:26:32.123456789"), 12L, "hash");
+        CheckedFile other = new CheckedFile("src/main/java/a/MyClass.java",
+                LocalDateTime.parse("1969-12-31T23:59:59.500"));
+        CheckedFile script = new CheckedFile("import.sql",
+                LocalDateTime.parse("2018-07-18T19:26:32.000"), 0L, null);
+
+        // Act : Create the set
+        CheckedFileSet fileSet = CheckedFileSet.of(Arrays.asList(entity, other, script));
+
+        // Assert : The files should be sorted by name, and kept as they are
+        Assertions.assertEquals(Arrays.asList(script, other, entity), fileSet.toList(),
+                "Unexpected files");
+        Assertions.assertEquals(entity.getName(), fileSet.getName(2), "Unexpected name");
+    }
+
+    /**
+     * Index test with found and missing names.
+     */
+    @Test
+    public void testIndexOf() {
+
+        // Arrange : A set whose names share their directories
+        List<CheckedFile> files = Arrays.asList(
+                new CheckedFile("src/main/java/a/A.java", LocalDateTime.now()),
+                new CheckedFile("src/main/java/a/B.java", LocalDateTime.now()),
+                new CheckedFile("src/main/java/a/b/A.java", LocalDateTime.now()),
+                new CheckedFile("src/main/java/b/A.java", LocalDateTime.now()));
+        CheckedFileSet fileSet = CheckedFileSet.of(files);
+
+        // Act : Find files
+        int found = fileSet.indexOf("src/main/java/a/b/A.java");
+        int missing = fileSet.indexOf("src/main/java/a/C.java");
+        int prefix = fileSet.indexOf("src/main/java/a/");
+        Optional<CheckedFile> last = fileSet.find("src/main/java/b/A.java");
+
+        // Assert : Missing files should give their insertion point
+        Assertions.assertEquals(2, found, "Unexpected index of an existing file");
+        Assertions.assertEquals(-3, missing, "Unexpected index of a missing file");
+        Assertions.assertEquals(-1, prefix, "Unexpected index of a directory");
+        Assertions.assertEquals(Optional.of(files.get(3)), last, "Unexpected found file");
+    }
+}
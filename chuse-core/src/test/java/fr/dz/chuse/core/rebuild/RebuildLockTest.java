@@ -0,0 +1,81 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the RebuildLock.
+ */
+public class RebuildLockTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = TempDirectoryUtils.createTempDirectory();
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        TempDirectoryUtils.delete(this.directory);
+    }
+
+    /**
+     * Acquire test with a lock held by another thread.
+     *
+     * @throws Exception
+     *             Concurrency Error
+     */
+    @Test
+    public void testAcquire_held() throws Exception {
+
+        // Arrange : The lock is held
+        Path lockFile = this.directory.resolve("chuse/rebuild.lock");
+        RebuildLock lock = RebuildLock.acquire(lockFile);
+
+        // Act : Acquire it from another thread, then release it
+        CompletableFuture<Void> waiting = CompletableFuture
+                .runAsync(() -> RebuildLock.acquire(lockFile).close());
+        Thread.sleep(200);
+        boolean doneWhileHeld = waiting.isDone();
+        lock.close();
+        waiting.get(10, TimeUnit.SECONDS);
+
+        // Assert : The other thread should have waited for the lock
+        Assertions.assertFalse(doneWhileHeld, "The lock should not have been acquired twice");
+        Assertions.assertTrue(Files.exists(lockFile), "The lock file should have been created");
+    }
+
+    /**
+     * Default path test with several databases.
+     */
+    @Test
+    public void testDefaultPath() {
+
+        // Arrange : Keys of two databases
+        String key = "jdbc:h2:mem:test#PUBLIC#default";
+        String otherKey = "jdbc:h2:mem:other#PUBLIC#default";
+
+        // Act : Get their default lock files
+        Path path = RebuildLock.defaultPath(key);
+        Path otherPath = RebuildLock.defaultPath(otherKey);
+
+        // Assert : Each database should have its own lock file, in the default folder
+        Assertions.assertEquals(path, RebuildLock.defaultPath(key),
+                "The same database should use the same lock file");
+        Assertions.assertNotEquals(path, otherPath, "The databases should not share a lock file");
+        Assertions.assertEquals(Paths.get(RebuildLock.DEFAULT_PATH).getParent(), path.getParent(),
+                "Unexpected lock folder");
+    }
+}
@@ -0,0 +1,136 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.DataSourceUtils;
+
+/**
+ * Tests for the ScriptImporter.
+ */
+public class ScriptImporterTest {
+
+    private DataSource datasource;
+
+    private QueryRunner queryRunner;
+
+    private Path script;
+
+    @BeforeEach
+    public void init() throws SQLException, IOException {
+        this.datasource = DataSourceUtils.createInMemoryDatabase();
+        this.queryRunner = new QueryRunner(this.datasource);
+        this.queryRunner.update("CREATE TABLE MY_TABLE (ID BIGINT PRIMARY KEY, NAME VARCHAR(20))");
+        this.script = Files.createTempFile("chuse", ".sql");
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        Files.deleteIfExists(this.script);
+    }
+
+    /**
+     * Import test with INSERT statements to be merged.
+     *
+     * @throws IOException
+     *             I/O Error
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testImportScripts() throws IOException, SQLException {
+
+        // Arrange : INSERT statements, with another statement depending on them
+        Files.write(this.script, Arrays.asList(
+                "INSERT INTO MY_TABLE (ID, NAME) VALUES (1, 'a, (b)');",
+                "insert into MY_TABLE (ID, NAME)  values (2, 'c');",
+                "INSERT INTO MY_TABLE (ID, NAME) VALUES (3, 'd');",
+                "UPDATE MY_TABLE SET NAME = 'e' WHERE ID = 3;",
+                "INSERT INTO MY_TABLE VALUES (4, 'f');"));
+        ScriptImporter importer = new ScriptImporter(this.datasource);
+        importer.setRowsPerInsert(2);
+
+        // Act : Import the script
+        long count = importer.importScripts(
+                Collections.singletonList(this.script.toUri().toURL()));
+
+        // Assert : All the statements should have been executed, in order
+        Assertions.assertEquals(5L, count, "The statements count is not the expected one");
+        Assertions.assertEquals(4L, (long) this.queryRunner.query("SELECT COUNT(*) FROM MY_TABLE",
+                new ScalarHandler<Long>()), "The rows should have been inserted");
+        Assertions.assertEquals("a, (b)", this.queryRunner.query(
+                "SELECT NAME FROM MY_TABLE WHERE ID = 1", new ScalarHandler<String>()));
+        Assertions.assertEquals("e", this.queryRunner.query(
+                "SELECT NAME FROM MY_TABLE WHERE ID = 3", new ScalarHandler<String>()),
+                "The UPDATE should have been executed after the INSERT");
+    }
+
+    /**
+     * Import test with an invalid statement, halting on error.
+     *
+     * @throws IOException
+     *             I/O Error
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testImportScripts_invalidStatement() throws IOException, SQLException {
+
+        // Arrange : A valid INSERT statement, then a duplicate one
+        Files.write(this.script, Arrays.asList("INSERT INTO MY_TABLE VALUES (1, 'a');",
+                "UPDATE MY_TABLE SET NAME = 'b';", "INSERT INTO MY_TABLE VALUES (1, 'a');"));
+        ScriptImporter importer = new ScriptImporter(this.datasource);
+        importer.setHaltOnError(true);
+
+        // Act : Import the script
+        Assertions.assertThrows(IllegalStateException.class, () -> importer
+                .importScripts(Collections.singletonList(this.script.toUri().toURL())));
+
+        // Assert : Nothing should have been imported
+        Assertions.assertEquals(0L, (long) this.queryRunner.query("SELECT COUNT(*) FROM MY_TABLE",
+                new ScalarHandler<Long>()), "The import should have been rolled back");
+    }
+
+    /**
+     * Import test with invalid statements, skipping them.
+     *
+     * @throws IOException
+     *             I/O Error
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testImportScripts_skipInvalidStatements() throws IOException, SQLException {
+
+        // Arrange : Valid INSERT statements, merged with a duplicate one, and an invalid UPDATE
+        Files.write(this.script, Arrays.asList("INSERT INTO MY_TABLE VALUES (1, 'a');",
+                "INSERT INTO MY_TABLE VALUES (1, 'b');", "INSERT INTO MY_TABLE VALUES (2, 'c');",
+                "UPDATE MY_TABLE SET UNKNOWN = 'd';", "INSERT INTO MY_TABLE VALUES (3, 'e');"));
+        ScriptImporter importer = new ScriptImporter(this.datasource);
+
+        // Act : Import the script
+        long count = importer.importScripts(
+                Collections.singletonList(this.script.toUri().toURL()));
+
+        // Assert : Only the invalid statements should have been skipped
+        Assertions.assertEquals(3L, count, "The statements count is not the expected one");
+        Assertions.assertEquals(3L, (long) this.queryRunner.query("SELECT COUNT(*) FROM MY_TABLE",
+                new ScalarHandler<Long>()), "The valid rows should have been inserted");
+        Assertions.assertEquals("a", this.queryRunner.query(
+                "SELECT NAME FROM MY_TABLE WHERE ID = 1", new ScalarHandler<String>()),
+                "The first row should have been kept");
+    }
+}
@@ -0,0 +1,206 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.DataSourceUtils;
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the SnapshotCache.
+ */
+public class SnapshotCacheTest {
+
+    private DataSource datasource;
+
+    private QueryRunner queryRunner;
+
+    private Path directory;
+
+    // The objects of the persistence unit
+    private UnitObjects unitObjects;
+
+    @BeforeEach
+    public void init() throws SQLException, IOException {
+        this.datasource = DataSourceUtils.createInMemoryDatabase();
+        this.queryRunner = new QueryRunner(this.datasource);
+        this.queryRunner.update("CREATE TABLE MY_TABLE (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("INSERT INTO MY_TABLE VALUES (1)");
+        this.directory = TempDirectoryUtils.createTempDirectory();
+        this.unitObjects = new UnitObjects(null, Arrays.asList("MY_TABLE", "MY_NEW_TABLE"),
+                Arrays.asList("MY_SEQUENCE"));
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        TempDirectoryUtils.delete(this.directory);
+    }
+
+    /**
+     * Restore test with a saved snapshot.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testRestore() throws SQLException {
+
+        // Arrange : A snapshot has been saved, then the database has changed
+        SnapshotCache cache = new SnapshotCache(this.directory, SnapshotCache.DEFAULT_MAX_SIZE);
+        cache.save(this.datasource, this.unitObjects, "KEY");
+        this.queryRunner.update("DROP TABLE MY_TABLE");
+        this.queryRunner.update("CREATE TABLE MY_NEW_TABLE (ID BIGINT PRIMARY KEY)");
+
+        // Act : Restore the snapshot
+        boolean restored = cache.restore(this.datasource, this.unitObjects, "KEY");
+
+        // Assert : The database should be the saved one
+        Assertions.assertTrue(restored, "The snapshot should have been restored");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query("SELECT COUNT(*) FROM MY_TABLE",
+                new ScalarHandler<Long>()), "The table data should have been restored");
+        Assertions.assertEquals(0L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME='MY_NEW_TABLE'",
+                new ScalarHandler<Long>()), "The new table should have been dropped");
+        Assertions.assertFalse(cache.restore(this.datasource, this.unitObjects, "OTHER_KEY"),
+                "A missing snapshot should not be restored");
+    }
+
+    /**
+     * Restore test with another schema in the database.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testRestore_otherSchema() throws SQLException {
+
+        // Arrange : A snapshot of the current schema has been saved, then both schemas have
+        // changed
+        this.queryRunner.update("CREATE SCHEMA OTHER");
+        this.queryRunner.update("CREATE TABLE OTHER.MY_TABLE (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("CREATE SEQUENCE MY_SEQUENCE");
+        SnapshotCache cache = new SnapshotCache(this.directory, SnapshotCache.DEFAULT_MAX_SIZE);
+        cache.save(this.datasource, this.unitObjects, "KEY");
+        this.queryRunner.update("INSERT INTO OTHER.MY_TABLE VALUES (2)");
+        this.queryRunner.update("DELETE FROM MY_TABLE");
+
+        // Act : Restore the snapshot
+        boolean restored = cache.restore(this.datasource, this.unitObjects, "KEY");
+
+        // Assert : Only the current schema should have been restored
+        Assertions.assertTrue(restored, "The snapshot should have been restored");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query("SELECT COUNT(*) FROM MY_TABLE",
+                new ScalarHandler<Long>()), "The table data should have been restored");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM OTHER.MY_TABLE", new ScalarHandler<Long>()),
+                "The other schema should have been kept");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SEQUENCES "
+                        + "WHERE SEQUENCE_NAME='MY_SEQUENCE'",
+                new ScalarHandler<Long>()), "The sequence should have been restored");
+    }
+
+    /**
+     * Restore test with the tables of another persistence unit in the same schema.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testRestore_otherUnit() throws SQLException {
+
+        // Arrange : Another persistence unit and the Chuse tables share the schema, and have
+        // changed since the snapshot has been saved
+        this.queryRunner.update("CREATE TABLE OTHER_TABLE (ID BIGINT AUTO_INCREMENT PRIMARY KEY)");
+        this.queryRunner.update("CREATE SEQUENCE OTHER_SEQUENCE");
+        this.queryRunner.update("CREATE TABLE CHUSE_MY_TABLE (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("CREATE SEQUENCE MY_SEQUENCE");
+        SnapshotCache cache = new SnapshotCache(this.directory, SnapshotCache.DEFAULT_MAX_SIZE);
+        cache.save(this.datasource, this.unitObjects, "KEY");
+        this.queryRunner.update("INSERT INTO OTHER_TABLE (ID) VALUES (DEFAULT)");
+        this.queryRunner.query("SELECT NEXT VALUE FOR OTHER_SEQUENCE", new ScalarHandler<Long>());
+        this.queryRunner.update("INSERT INTO CHUSE_MY_TABLE VALUES (1)");
+        this.queryRunner.update("DELETE FROM MY_TABLE");
+
+        // Act : Restore the snapshot
+        boolean restored = cache.restore(this.datasource, this.unitObjects, "KEY");
+
+        // Assert : Only the persistence unit should have been restored
+        Assertions.assertTrue(restored, "The snapshot should have been restored");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query("SELECT COUNT(*) FROM MY_TABLE",
+                new ScalarHandler<Long>()), "The table data should have been restored");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM OTHER_TABLE", new ScalarHandler<Long>()),
+                "The table of the other persistence unit should have been kept");
+        Assertions.assertEquals(2L, (long) this.queryRunner.query(
+                "SELECT NEXT VALUE FOR OTHER_SEQUENCE", new ScalarHandler<Long>()),
+                "The sequence of the other persistence unit should have been kept");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM CHUSE_MY_TABLE", new ScalarHandler<Long>()),
+                "The Chuse table should have been kept");
+    }
+
+    /**
+     * Restore test with a table of another persistence unit referencing the tables.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testRestore_referencedByOtherUnit() throws SQLException {
+
+        // Arrange : A table of another persistence unit references the saved table
+        SnapshotCache cache = new SnapshotCache(this.directory, SnapshotCache.DEFAULT_MAX_SIZE);
+        cache.save(this.datasource, this.unitObjects, "KEY");
+        this.queryRunner.update("CREATE TABLE OTHER_TABLE (ID BIGINT PRIMARY KEY, "
+                + "MY_ID BIGINT, CONSTRAINT FK_OTHER_MY FOREIGN KEY (MY_ID) "
+                + "REFERENCES MY_TABLE(ID))");
+
+        // Act : Restore the snapshot
+        boolean restored = cache.restore(this.datasource, this.unitObjects, "KEY");
+
+        // Assert : Nothing should have been restored, to keep the foreign key
+        Assertions.assertFalse(restored, "The snapshot should not have been restored");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.CONSTRAINTS "
+                        + "WHERE CONSTRAINT_NAME='FK_OTHER_MY'",
+                new ScalarHandler<Long>()), "The foreign key should have been kept");
+    }
+
+    /**
+     * Save test with a full cache.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testSave_evict() throws IOException {
+
+        // Arrange : A cache which can only contain one snapshot
+        SnapshotCache cache = new SnapshotCache(this.directory, 1);
+        cache.save(this.datasource, this.unitObjects, "OLD_KEY");
+
+        // Act : Save another snapshot
+        cache.save(this.datasource, this.unitObjects, "NEW_KEY");
+
+        // Assert : Only the most recent snapshot should have been kept
+        try (Stream<Path> snapshots = Files.list(this.directory)) {
+            Assertions.assertEquals(1L, snapshots.count(), "Only one snapshot should be kept");
+        }
+        Assertions.assertTrue(cache.restore(this.datasource, this.unitObjects, "NEW_KEY"),
+                "The most recent snapshot should have been kept");
+    }
+}
@@ -0,0 +1,81 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the SqlScriptReader.
+ */
+public class SqlScriptReaderTest {
+
+    /**
+     * Read test with one statement per line.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testNext_singleLine() throws IOException {
+
+        // Arrange : A script with comments, empty lines and optional semicolons
+        String script = "-- Comment\n"
+                + "INSERT INTO MY_TABLE VALUES (1);\n"
+                + "\n"
+                + "  INSERT INTO MY_TABLE VALUES (2)  \n"
+                + "/* Comment */\n";
+
+        // Act : Read the statements
+        List<String> statements = readAll(script, false);
+
+        // Assert : Each line should be a statement
+        Assertions.assertEquals(Arrays.asList("INSERT INTO MY_TABLE VALUES (1)",
+                "INSERT INTO MY_TABLE VALUES (2)"), statements);
+    }
+
+    /**
+     * Read test with statements on multiple lines.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testNext_multipleLines() throws IOException {
+
+        // Arrange : A script with comments, and semicolons and comments inside literals
+        String script = "-- Comment\n"
+                + "INSERT INTO MY_TABLE\n"
+                + "VALUES (1, 'a;b -- c', 'it''s');;\n"
+                + "/* Comment; */ UPDATE MY_TABLE SET NAME = 'd' // Comment\n"
+                + "WHERE ID = 1";
+
+        // Act : Read the statements
+        List<String> statements = readAll(script, true);
+
+        // Assert : Statements should be split on semicolons, without their comments
+        Assertions.assertEquals(2, statements.size(),
+                "The statements count is not the expected one");
+        Assertions.assertEquals("INSERT INTO MY_TABLE\nVALUES (1, 'a;b -- c', 'it''s')",
+                statements.get(0));
+        Assertions.assertEquals("UPDATE MY_TABLE SET NAME = 'd' \nWHERE ID = 1",
+                statements.get(1));
+    }
+
+    private static List<String> readAll(final String script, final boolean multipleLines)
+            throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (SqlScriptReader reader = new SqlScriptReader(new StringReader(script),
+                multipleLines)) {
+            String statement;
+            while ((statement = reader.next()) != null) {
+                statements.add(statement);
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,116 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.DataSourceUtils;
+
+/**
+ * Tests for the TableDropper.
+ */
+public class TableDropperTest {
+
+    private DataSource datasource;
+
+    private QueryRunner queryRunner;
+
+    @BeforeEach
+    public void init() throws SQLException {
+        this.datasource = DataSourceUtils.createInMemoryDatabase();
+        this.queryRunner = new QueryRunner(this.datasource);
+        this.queryRunner.update("CREATE TABLE MY_PARENT (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("CREATE TABLE MY_CHILD (ID BIGINT PRIMARY KEY, PARENT_ID BIGINT, "
+                + "CONSTRAINT FK_CHILD_PARENT FOREIGN KEY (PARENT_ID) REFERENCES MY_PARENT(ID))");
+        this.queryRunner.update("INSERT INTO MY_PARENT VALUES (1)");
+        this.queryRunner.update("INSERT INTO MY_CHILD VALUES (1, 1)");
+    }
+
+    /**
+     * Drop test with a table referenced by another one.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDrop_referencedTable() throws SQLException {
+
+        // Arrange : The referenced table name, with another case, and a missing table name
+        List<String> tables = Arrays.asList("my_parent", "MISSING_TABLE");
+
+        // Act : Drop the tables
+        List<String> dropped = TableDropper.drop(this.datasource, tables);
+
+        // Assert : Only the referenced table should have been dropped, with the foreign key
+        Assertions.assertEquals(1, dropped.size(), "Only one table should have been dropped");
+        Assertions.assertEquals(0L, this.countTables("MY_PARENT"),
+                "The table should have been dropped");
+        Assertions.assertEquals(1L, this.countTables("MY_CHILD"),
+                "The referencing table should have been kept");
+        Assertions.assertEquals(0L, (long) this.queryRunner.query(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.CONSTRAINTS "
+                        + "WHERE CONSTRAINT_NAME='FK_CHILD_PARENT'",
+                new ScalarHandler<Long>()), "The foreign key should have been dropped");
+    }
+
+    /**
+     * Drop test with a table of the same name in another schema.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDrop_otherSchema() throws SQLException {
+
+        // Arrange : A table of the same name in another schema, and a lowercase quoted name
+        this.queryRunner.update("CREATE SCHEMA OTHER");
+        this.queryRunner.update("CREATE TABLE OTHER.MY_CHILD (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("CREATE TABLE \"my_child\" (ID BIGINT PRIMARY KEY)");
+
+        // Act : Drop the table of the current schema
+        List<String> dropped = TableDropper.drop(this.datasource, Arrays.asList("MY_CHILD"));
+
+        // Assert : Only the table of the current schema should have been dropped
+        Assertions.assertEquals(Arrays.asList("\"PUBLIC\".\"MY_CHILD\""), dropped,
+                "Only the table of the current schema should have been dropped");
+        Assertions.assertEquals(1L, this.countTables("MY_CHILD"),
+                "The table of the other schema should have been kept");
+        Assertions.assertEquals(1L, this.countTables("my_child"),
+                "The table with another case should have been kept");
+    }
+
+    /**
+     * Test of the search of the tables referencing the dropped ones.
+     */
+    @Test
+    public void testFindReferencingTables() {
+
+        // Act : Find the tables referencing the parent table, then both tables
+        Set<String> parentReferences = TableDropper.findReferencingTables(this.datasource, null,
+                Arrays.asList("my_parent"));
+        Set<String> bothReferences = TableDropper.findReferencingTables(this.datasource, null,
+                Arrays.asList("MY_PARENT", "MY_CHILD"));
+
+        // Assert : Only the kept child table should reference the dropped ones
+        Assertions.assertEquals(Collections.singleton("\"PUBLIC\".\"MY_CHILD\""),
+                parentReferences, "The child table should reference the parent table");
+        Assertions.assertTrue(bothReferences.isEmpty(),
+                "No kept table should reference the dropped tables");
+    }
+
+    private long countTables(final String table) throws SQLException {
+        return this.queryRunner.query(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME=?",
+                new ScalarHandler<Long>(), table);
+    }
+}
@@ -0,0 +1,179 @@
+package fr.dz.chuse.core.rebuild;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.utils.DataSourceUtils;
+
+/**
+ * Tests for the TableTruncator.
+ */
+public class TableTruncatorTest {
+
+    private DataSource datasource;
+
+    private QueryRunner queryRunner;
+
+    // The objects of the persistence unit
+    private UnitObjects unitObjects;
+
+    @BeforeEach
+    public void init() throws SQLException {
+        this.datasource = DataSourceUtils.createInMemoryDatabase();
+        this.queryRunner = new QueryRunner(this.datasource);
+        this.queryRunner.update("CREATE SEQUENCE MY_SEQUENCE START WITH 1");
+        this.queryRunner.update("CREATE TABLE MY_PARENT (ID BIGINT AUTO_INCREMENT PRIMARY KEY)");
+        this.queryRunner.update("CREATE TABLE MY_CHILD (ID BIGINT PRIMARY KEY, PARENT_ID BIGINT, "
+                + "CONSTRAINT FK_CHILD_PARENT FOREIGN KEY (PARENT_ID) REFERENCES MY_PARENT(ID))");
+        this.queryRunner.update("CREATE TABLE CHUSE_MY_TABLE (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("INSERT INTO MY_PARENT (ID) VALUES (DEFAULT)");
+        this.queryRunner.update("INSERT INTO MY_CHILD VALUES (NEXT VALUE FOR MY_SEQUENCE, 1)");
+        this.queryRunner.update("INSERT INTO CHUSE_MY_TABLE VALUES (1)");
+        this.unitObjects = new UnitObjects(null, Arrays.asList("my_parent", "MY_CHILD"),
+                Arrays.asList("MY_SEQUENCE"));
+    }
+
+    /**
+     * Truncate test with a referenced table.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testTruncate() throws SQLException {
+
+        // Act : Truncate the tables
+        boolean truncated = TableTruncator.truncate(this.datasource, this.unitObjects);
+
+        // Assert : The tables should be empty, the sequences restarted and Chuse tables kept
+        Assertions.assertTrue(truncated, "The tables should have been truncated");
+        Assertions.assertEquals(0L, this.count("MY_PARENT"), "The table should be empty");
+        Assertions.assertEquals(0L, this.count("MY_CHILD"), "The table should be empty");
+        Assertions.assertEquals(1L, this.count("CHUSE_MY_TABLE"),
+                "The Chuse table should have been kept");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query(
+                "SELECT NEXT VALUE FOR MY_SEQUENCE", new ScalarHandler<Long>()),
+                "The sequence should have been restarted");
+        this.queryRunner.update("INSERT INTO MY_PARENT (ID) VALUES (DEFAULT)");
+        Assertions.assertEquals(1L, (long) this.queryRunner.query("SELECT ID FROM MY_PARENT",
+                new ScalarHandler<Long>()), "The identity should have been restarted");
+    }
+
+    /**
+     * Truncate test with another schema in the database.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testTruncate_otherSchema() throws SQLException {
+
+        // Arrange : Another schema, with a table and a sequence
+        this.queryRunner.update("CREATE SCHEMA OTHER");
+        this.queryRunner.update("CREATE SEQUENCE OTHER.MY_SEQUENCE START WITH 1");
+        this.queryRunner.update("CREATE TABLE OTHER.MY_PARENT (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("INSERT INTO OTHER.MY_PARENT VALUES "
+                + "(NEXT VALUE FOR OTHER.MY_SEQUENCE)");
+
+        // Act : Truncate the tables of the current schema
+        boolean truncated = TableTruncator.truncate(this.datasource, this.unitObjects);
+
+        // Assert : The other schema should have been kept
+        Assertions.assertTrue(truncated, "The tables should have been truncated");
+        Assertions.assertEquals(0L, this.count("MY_PARENT"), "The table should be empty");
+        Assertions.assertEquals(1L, this.count("OTHER.MY_PARENT"),
+                "The table of the other schema should have been kept");
+        Assertions.assertEquals(2L, (long) this.queryRunner.query(
+                "SELECT NEXT VALUE FOR OTHER.MY_SEQUENCE", new ScalarHandler<Long>()),
+                "The sequence of the other schema should not have been restarted");
+    }
+
+    /**
+     * Truncate test with the tables of another persistence unit in the same schema.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testTruncate_otherUnit() throws SQLException {
+
+        // Arrange : Another persistence unit, with a table referencing nothing and a sequence
+        this.queryRunner.update("CREATE SEQUENCE OTHER_SEQUENCE START WITH 1");
+        this.queryRunner.update("CREATE TABLE OTHER_TABLE (ID BIGINT AUTO_INCREMENT PRIMARY KEY)");
+        this.queryRunner.update("INSERT INTO OTHER_TABLE (ID) VALUES (DEFAULT)");
+        this.queryRunner.query("SELECT NEXT VALUE FOR OTHER_SEQUENCE", new ScalarHandler<Long>());
+
+        // Act : Truncate the tables of the persistence unit
+        boolean truncated = TableTruncator.truncate(this.datasource, this.unitObjects);
+
+        // Assert : The other persistence unit should have been kept
+        Assertions.assertTrue(truncated, "The tables should have been truncated");
+        Assertions.assertEquals(0L, this.count("MY_PARENT"), "The table should be empty");
+        Assertions.assertEquals(1L, this.count("OTHER_TABLE"),
+                "The table of the other persistence unit should have been kept");
+        Assertions.assertEquals(2L, (long) this.queryRunner.query(
+                "SELECT NEXT VALUE FOR OTHER_SEQUENCE", new ScalarHandler<Long>()),
+                "The sequence of the other persistence unit should not have been restarted");
+        this.queryRunner.update("INSERT INTO OTHER_TABLE (ID) VALUES (DEFAULT)");
+        Assertions.assertEquals(2L, (long) this.queryRunner.query(
+                "SELECT MAX(ID) FROM OTHER_TABLE", new ScalarHandler<Long>()),
+                "The identity of the other persistence unit should not have been restarted");
+    }
+
+    /**
+     * Truncate test with a table of another persistence unit referencing the tables.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testTruncate_referencedByOtherUnit() throws SQLException {
+
+        // Arrange : A table of another persistence unit references the parent
+        this.queryRunner.update("CREATE TABLE OTHER_TABLE (ID BIGINT PRIMARY KEY, "
+                + "PARENT_ID BIGINT, CONSTRAINT FK_OTHER_PARENT FOREIGN KEY (PARENT_ID) "
+                + "REFERENCES MY_PARENT(ID))");
+        this.queryRunner.update("INSERT INTO OTHER_TABLE VALUES (1, 1)");
+
+        // Act : Truncate the tables of the persistence unit
+        boolean truncated = TableTruncator.truncate(this.datasource, this.unitObjects);
+
+        // Assert : Nothing should have been truncated
+        Assertions.assertFalse(truncated, "The tables should not have been truncated");
+        Assertions.assertEquals(1L, this.count("MY_CHILD"), "The table should not be empty");
+    }
+
+    /**
+     * Truncate test with cyclic foreign keys.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testTruncate_cyclicForeignKeys() throws SQLException {
+
+        // Arrange : The parent references the child
+        this.queryRunner.update("ALTER TABLE MY_PARENT ADD COLUMN CHILD_ID BIGINT");
+        this.queryRunner.update("ALTER TABLE MY_PARENT ADD CONSTRAINT FK_PARENT_CHILD "
+                + "FOREIGN KEY (CHILD_ID) REFERENCES MY_CHILD(ID)");
+
+        // Act : Truncate the tables
+        boolean truncated = TableTruncator.truncate(this.datasource, this.unitObjects);
+
+        // Assert : Nothing should have been truncated
+        Assertions.assertFalse(truncated, "The tables should not have been truncated");
+        Assertions.assertEquals(1L, this.count("MY_PARENT"), "The table should not be empty");
+    }
+
+    private long count(final String table) throws SQLException {
+        return this.queryRunner.query("SELECT COUNT(*) FROM " + table, new ScalarHandler<Long>());
+    }
+}
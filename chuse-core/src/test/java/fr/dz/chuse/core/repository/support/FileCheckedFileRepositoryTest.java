@@ -0,0 +1,283 @@
+package fr.dz.chuse.core.repository.support;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.core.data.ChangeSet;
+import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.data.CheckedFileSet;
+import fr.dz.chuse.core.repository.RepositoryConstants;
+import fr.dz.chuse.core.utils.TempDirectoryUtils;
+
+/**
+ * Tests for the FileCheckedFileRepository.
+ */
+public class FileCheckedFileRepositoryTest {
+
+    private Path directory;
+
+    private Path path;
+
+    private FileCheckedFileRepository repository;
+
+    @BeforeEach
+    public void init() throws IOException {
+        this.directory = TempDirectoryUtils.createTempDirectory();
+        this.path = this.directory.resolve("target/checked-files.bin");
+        this.repository = new FileCheckedFileRepository(this.path);
+    }
+
+    @AfterEach
+    public void clean() throws IOException {
+        TempDirectoryUtils.delete(this.directory);
+    }
+
+    /**
+     * Find all test without the file.
+     */
+    @Test
+    public void testFindAll_withoutFile() {
+
+        // Arrange : No file
+
+        // Act : Find all files
+        List<CheckedFile> files = this.repository.findAll();
+
+        // Assert : No file found
+        Assertions.assertTrue(files.isEmpty(), "File(s) found whereas there are none");
+    }
+
+    /**
+     * Find all test with an unknown file format.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testFindAll_unknownFormat() throws IOException {
+
+        // Arrange : A file which has not been written by the repository
+        Files.createDirectories(this.path.getParent());
+        Files.write(this.path, "Not a checked files file".getBytes());
+
+        // Act : Find all files
+        List<CheckedFile> files = this.repository.findAll();
+
+        // Assert : The file should be ignored
+        Assertions.assertTrue(files.isEmpty(), "File(s) found whereas the file is unreadable");
+    }
+
+    /**
+     * Replace all test, with and without size and hash.
+     */
+    @Test
+    public void testReplaceAll() {
+
+        // Arrange : Files to store, sorted by name
+        List<CheckedFile> replacement = Arrays.asList(
+                new CheckedFile("MyClass1.java", LocalDateTime.now()),
+                new CheckedFile("MyClass2.java", LocalDateTime.now(), 42L, "abcdef"));
+        this.repository.insertOrUpdateFile(new CheckedFile("MyOldClass.java", LocalDateTime.now()));
+
+        // Act : Replace the repository content
+        this.repository.replaceAll(replacement);
+
+        // Assert : Only the new files should be in the repository
+        Assertions.assertEquals(replacement, this.repository.findAll(),
+                "The repository content is not the replacement one");
+    }
+
+    /**
+     * Insert or update test with an existing file.
+     */
+    @Test
+    public void testInsertOrUpdateFile_existing() {
+
+        // Arrange : A file that already exist in the repository
+        this.repository.insertOrUpdateFile(new CheckedFile("MyClass.java", LocalDateTime.now()));
+        CheckedFile updatedFile = new CheckedFile("MyClass.java",
+                LocalDateTime.now().plusMinutes(10));
+
+        // Act : Update the file
+        this.repository.insertOrUpdateFile(updatedFile);
+
+        // Assert : Only the updated file should be in the repository
+        Assertions.assertEquals(Arrays.asList(updatedFile), this.repository.findAll(),
+                "The file has not been updated");
+    }
+
+    /**
+     * Apply changes test.
+     */
+    @Test
+    public void testApplyChanges() {
+
+        // Arrange : Two files in the repository, one to be modified and one to be deleted
+        CheckedFile modifiedFile = new CheckedFile("MyModifiedClass.java", LocalDateTime.now());
+        CheckedFile deletedFile = new CheckedFile("MyDeletedClass.java", LocalDateTime.now());
+        this.repository.replaceAll(Arrays.asList(modifiedFile, deletedFile));
+        CheckedFile addedFile = new CheckedFile("MyAddedClass.java", LocalDateTime.now());
+        CheckedFile updatedFile = new CheckedFile("MyModifiedClass.java",
+                LocalDateTime.now().plusMinutes(10));
+        ChangeSet changes = new ChangeSet(Arrays.asList(addedFile), Arrays.asList(updatedFile),
+                Arrays.asList(deletedFile));
+
+        // Act : Apply the changes
+        this.repository.applyChanges(changes);
+
+        // Assert : The repository should contain the added and the updated files
+        Assertions.assertEquals(Arrays.asList(addedFile, updatedFile), this.repository.findAll(),
+                "The repository content doesn't match the applied changes");
+    }
+
+    /**
+     * Delete all test.
+     */
+    @Test
+    public void testDeleteAll() {
+
+        // Arrange : One file in the repository
+        this.repository.replaceAll(
+                Collections.singletonList(new CheckedFile("MyClass.java", LocalDateTime.now())));
+
+        // Act : Delete all files
+        this.repository.deleteAll();
+
+        // Assert : No file left in the repository
+        Assertions.assertTrue(this.repository.findAll().isEmpty(),
+                "File(s) found whereas they have been deleted");
+    }
+
+    /**
+     * Find root hash test after applying changes.
+     */
+    @Test
+    public void testFindRootHash() {
+
+        // Arrange : Changes with a root hash have been applied
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now());
+        this.repository.applyChanges(new ChangeSet(Arrays.asList(file), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), "root"));
+
+        // Act : Find the root hash, then replace the files and find it again
+        String rootHash = this.repository.findRootHash();
+        this.repository.replaceAll(Arrays.asList(file));
+        String replacedRootHash = this.repository.findRootHash();
+
+        // Assert : The root hash should have been stored, then cleared
+        Assertions.assertEquals("root", rootHash, "The root hash should have been stored");
+        Assertions.assertNull(replacedRootHash, "The root hash should have been cleared");
+    }
+
+    /**
+     * Find root hash test with a truncated list of files.
+     *
+     * @throws IOException
+     *             I/O Error
+     */
+    @Test
+    public void testFindRootHash_truncatedFiles() throws IOException {
+
+        // Arrange : The end of the stored files is missing
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now());
+        this.repository.applyChanges(new ChangeSet(Arrays.asList(file), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), "root"));
+        byte[] bytes = Files.readAllBytes(this.path);
+        Files.write(this.path, Arrays.copyOf(bytes, bytes.length - Integer.BYTES));
+
+        // Act : Find the root hash, and the files
+        String rootHash = this.repository.findRootHash();
+        List<CheckedFile> files = this.repository.findAll();
+
+        // Assert : Only the header should have been read to find the root hash
+        Assertions.assertEquals("root", rootHash, "The root hash should have been read");
+        Assertions.assertTrue(files.isEmpty(), "The truncated file should have been ignored");
+    }
+
+    /**
+     * Save state test.
+     */
+    @Test
+    public void testSaveState() {
+
+        // Arrange : One file and a root hash in the repository
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now());
+        this.repository.applyChanges(new ChangeSet(Arrays.asList(file), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), "root"));
+
+        // Act : Save a state
+        this.repository.saveState("KEY", "value");
+
+        // Assert : The state should have been stored, without changing anything else
+        Assertions.assertEquals("value", this.repository.findState("KEY"),
+                "The state should have been stored");
+        Assertions.assertEquals("root", this.repository.findRootHash(),
+                "The root hash should have been kept");
+        Assertions.assertEquals(Arrays.asList(file), this.repository.findAll(),
+                "The files should have been kept");
+    }
+
+    /**
+     * Find file set test.
+     */
+    @Test
+    public void testFindFileSet() {
+
+        // Arrange : Files with and without size and hash in the repository
+        List<CheckedFile> files = Arrays.asList(
+                new CheckedFile("src/main/java/a/MyClass.java",
+                        LocalDateTime.parse("2018-07-18T19:26:32.123456789"), 12L, "hash"),
+                new CheckedFile("src/main/java/a/MyOtherClass.java",
+                        LocalDateTime.parse("2018-07-18T19:26:33.000")));
+        this.repository.replaceAll(files);
+
+        // Act : Find the file set
+        CheckedFileSet fileSet = this.repository.findFileSet();
+
+        // Assert : The set should contain the files, as well as the stream
+        Assertions.assertEquals(files, fileSet.toList(), "Unexpected file set");
+        try (Stream<CheckedFile> stream = this.repository.streamAll()) {
+            Assertions.assertEquals(files, stream.collect(Collectors.toList()),
+                    "Unexpected streamed files");
+        }
+    }
+
+    /**
+     * Default path test with several scopes.
+     */
+    @Test
+    public void testDefaultPath() {
+
+        // Arrange : The default scope, a persistence unit and a scope with unsafe characters
+        String persistenceUnit = "audit";
+        String unsafeScope = "../audit";
+
+        // Act : Get the default paths
+        Path defaultPath = FileCheckedFileRepository.defaultPath(RepositoryConstants.DEFAULT_SCOPE);
+        Path persistenceUnitPath = FileCheckedFileRepository.defaultPath(persistenceUnit);
+        Path unsafePath = FileCheckedFileRepository.defaultPath(unsafeScope);
+
+        // Assert : Each scope should have its own file, in the same folder
+        Assertions.assertEquals(Paths.get(FileCheckedFileRepository.DEFAULT_PATH), defaultPath,
+                "The default scope should use the default path");
+        Assertions.assertEquals(Paths.get("target/chuse/checked-files-audit.bin"),
+                persistenceUnitPath, "Unexpected persistence unit path");
+        Assertions.assertEquals(defaultPath.getParent(), unsafePath.getParent(),
+                "The unsafe scope should not change the folder");
+        Assertions.assertNotEquals(persistenceUnitPath, unsafePath,
+                "The scopes should not share the same file");
+    }
+}
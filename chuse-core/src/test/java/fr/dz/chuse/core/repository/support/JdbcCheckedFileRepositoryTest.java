@@ -1,15 +1,23 @@
 package fr.dz.chuse.core.repository.support;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
+import org.apache.commons.dbutils.QueryRunner;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.repository.RepositoryConstants;
 import fr.dz.chuse.core.utils.DataSourceUtils;
 
 /**
@@ -145,4 +153,231 @@ public class JdbcCheckedFileRepositoryTest {
         Assertions.assertTrue(this.repository.findAll().isEmpty(),
                 "File(s) found whereas they have been deleted");
     }
+
+    /**
+     * Replace all test with existing files, using several batches.
+     */
+    @Test
+    public void testReplaceAll_severalBatches() {
+
+        // Arrange : An existing file and a repository using small batches
+        this.repository = new JdbcCheckedFileRepository(this.datasource, null, 2);
+        CheckedFile existingFile = new CheckedFile("MyOldClass.java", LocalDateTime.now());
+        this.repository.insertOrUpdateFile(existingFile);
+        List<CheckedFile> replacement = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            replacement.add(new CheckedFile("MyClass" + i + ".java", LocalDateTime.now()));
+        }
+
+        // Act : Replace the repository content
+        this.repository.replaceAll(replacement);
+
+        // Assert : Only the new files should be in the repository
+        List<CheckedFile> files = this.repository.findAll();
+        Assertions.assertEquals(replacement, files,
+                "The repository content is not the replacement one");
+    }
+
+    /**
+     * Replace all test without the table.
+     */
+    @Test
+    public void testReplaceAll_withoutTable() {
+
+        // Arrange : No table and a file to store
+        List<CheckedFile> replacement = Arrays
+                .asList(new CheckedFile("MyClass.java", LocalDateTime.now()));
+
+        // Act : Replace the repository content
+        this.repository.replaceAll(replacement);
+
+        // Assert : The file should be in the repository
+        Assertions.assertEquals(replacement, this.repository.findAll(),
+                "The repository content is not the replacement one");
+    }
+
+    /**
+     * Replace all test with no file.
+     */
+    @Test
+    public void testReplaceAll_empty() {
+
+        // Arrange : One file in database
+        this.repository.insertOrUpdateFile(new CheckedFile("MyClass.java", LocalDateTime.now()));
+
+        // Act : Replace the repository content with nothing
+        this.repository.replaceAll(Collections.emptyList());
+
+        // Assert : No file left in the repository
+        Assertions.assertTrue(this.repository.findAll().isEmpty(),
+                "File(s) found whereas they have been replaced");
+    }
+
+    /**
+     * Apply changes test.
+     */
+    @Test
+    public void testApplyChanges() {
+
+        // Arrange : Two files in database, one to be modified and one to be deleted
+        CheckedFile modifiedFile = new CheckedFile("MyModifiedClass.java", LocalDateTime.now());
+        CheckedFile deletedFile = new CheckedFile("MyDeletedClass.java", LocalDateTime.now());
+        this.repository.replaceAll(Arrays.asList(modifiedFile, deletedFile));
+        CheckedFile addedFile = new CheckedFile("MyAddedClass.java", LocalDateTime.now());
+        CheckedFile updatedFile = new CheckedFile("MyModifiedClass.java",
+                LocalDateTime.now().plusMinutes(10));
+        ChangeSet changes = new ChangeSet(Arrays.asList(addedFile), Arrays.asList(updatedFile),
+                Arrays.asList(deletedFile));
+
+        // Act : Apply the changes
+        this.repository.applyChanges(changes);
+
+        // Assert : The repository should contain the added and the updated files
+        Assertions.assertEquals(Arrays.asList(addedFile, updatedFile), this.repository.findAll(),
+                "The repository content doesn't match the applied changes");
+    }
+
+    /**
+     * Apply changes test with a modified file missing from the repository.
+     */
+    @Test
+    public void testApplyChanges_missingModifiedFile() {
+
+        // Arrange : A modified file that is not in database
+        CheckedFile modifiedFile = new CheckedFile("MyClass.java", LocalDateTime.now());
+        ChangeSet changes = new ChangeSet(Collections.emptyList(), Arrays.asList(modifiedFile),
+                Collections.emptyList());
+
+        // Act : Apply the changes
+        this.repository.applyChanges(changes);
+
+        // Assert : The modified file should have been inserted
+        Assertions.assertEquals(Arrays.asList(modifiedFile), this.repository.findAll(),
+                "The modified file should have been inserted");
+    }
+
+    /**
+     * Find all test with a file having a size and a hash.
+     */
+    @Test
+    public void testFindAll_withSizeAndHash() {
+
+        // Arrange : One file with a size and a hash in database
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now(), 42L, "abcdef");
+        this.repository.replaceAll(Arrays.asList(file));
+
+        // Act : Find all files
+        List<CheckedFile> files = this.repository.findAll();
+
+        // Assert : The size and the hash should have been stored
+        Assertions.assertEquals(Arrays.asList(file), files,
+                "The found file is not what it is expected");
+    }
+
+    /**
+     * Find all test with a table created by a previous version.
+     *
+     * @throws Exception
+     *             SQL Error
+     */
+    @Test
+    public void testFindAll_withOutdatedTable() throws Exception {
+
+        // Arrange : A table without size and hash
+        new QueryRunner(this.datasource).update("CREATE TABLE "
+                + RepositoryConstants.CHECKED_FILES_TABLE_NAME
+                + " (NAME VARCHAR(4096) NOT NULL PRIMARY KEY, LAST_MODIFIED_TIME TIMESTAMP)");
+
+        // Act : Store and find a file
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now(), 42L, "abcdef");
+        this.repository.replaceAll(Arrays.asList(file));
+        List<CheckedFile> files = this.repository.findAll();
+
+        // Assert : The table should have been re-created
+        Assertions.assertEquals(Arrays.asList(file), files,
+                "The found file is not what it is expected");
+    }
+
+    /**
+     * Find root hash test after applying changes.
+     */
+    @Test
+    public void testFindRootHash() {
+
+        // Arrange : Changes with a root hash have been applied
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now());
+        this.repository.applyChanges(new ChangeSet(Arrays.asList(file), Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), "root"));
+
+        // Act : Find the root hash, then replace the files and find it again
+        String rootHash = this.repository.findRootHash();
+        this.repository.replaceAll(Arrays.asList(file));
+        String replacedRootHash = this.repository.findRootHash();
+
+        // Assert : The root hash should have been stored, then cleared
+        Assertions.assertEquals("root", rootHash, "The root hash should have been stored");
+        Assertions.assertNull(replacedRootHash, "The root hash should have been cleared");
+    }
+
+    /**
+     * Replace all test with two scopes sharing the same tables.
+     */
+    @Test
+    public void testReplaceAll_otherScope() {
+
+        // Arrange : Files and a state stored in another scope
+        JdbcCheckedFileRepository otherRepository = new JdbcCheckedFileRepository(
+                this.datasource, null, JdbcCheckedFileRepository.DEFAULT_BATCH_SIZE, "other");
+        CheckedFile otherFile = new CheckedFile("OtherClass.java", LocalDateTime.now());
+        otherRepository.replaceAll(Arrays.asList(otherFile));
+        otherRepository.saveState(RepositoryConstants.DATABASE_FINGERPRINT_KEY, "other");
+
+        // Act : Replace the files, then delete them, in the default scope
+        CheckedFile file = new CheckedFile("MyClass.java", LocalDateTime.now());
+        this.repository.replaceAll(Arrays.asList(file));
+        this.repository.saveState(RepositoryConstants.DATABASE_FINGERPRINT_KEY, "default");
+        List<CheckedFile> files = this.repository.findAll();
+        this.repository.deleteAll();
+
+        // Assert : Each scope should only see its own files and states
+        Assertions.assertEquals(Arrays.asList(file), files,
+                "Only the files of the scope should be found");
+        Assertions.assertEquals(Arrays.asList(otherFile), otherRepository.findAll(),
+                "The files of the other scope should have been kept");
+        Assertions.assertEquals("other",
+                otherRepository.findState(RepositoryConstants.DATABASE_FINGERPRINT_KEY),
+                "The state of the other scope should have been kept");
+    }
+
+    /**
+     * Stream all test, the stream being closed before being fully read.
+     */
+    @Test
+    public void testStreamAll() {
+
+        // Arrange : More files than fetched at once, not inserted in name order
+        List<CheckedFile> files = new ArrayList<>();
+        for (int i = JdbcCheckedFileRepository.FETCH_SIZE * 2; i > 0; i--) {
+            files.add(new CheckedFile(String.format("MyClass%05d.java", i),
+                    LocalDateTime.parse("2018-07-18T19:26:32.000")));
+        }
+        this.repository.replaceAll(files);
+
+        // Act : Stream all files, then only the first one
+        List<CheckedFile> streamed;
+        try (Stream<CheckedFile> stream = this.repository.streamAll()) {
+            streamed = stream.collect(Collectors.toList());
+        }
+        CheckedFile first;
+        try (Stream<CheckedFile> stream = this.repository.streamAll()) {
+            first = stream.findFirst().get();
+        }
+
+        // Assert : Files should be sorted by name, and the repository still usable
+        Collections.reverse(files);
+        Assertions.assertEquals(files, streamed, "Unexpected streamed files");
+        Assertions.assertEquals(files.get(0), first, "Unexpected first file");
+        this.repository.deleteAll();
+        Assertions.assertTrue(this.repository.findAll().isEmpty(), "Files have not been deleted");
+    }
 }
@@ -1,5 +1,7 @@
 package fr.dz.chuse.core.utils;
 
+import java.util.UUID;
+
 import javax.sql.DataSource;
 
 import org.apache.commons.dbcp2.BasicDataSource;
@@ -11,13 +13,14 @@ public final class DataSourceUtils {
 
     /**
      * In memory database initialization.
+     * The database is named so that all the pooled connections share the same content.
      *
      * @return The DataSource
      */
     public static DataSource createInMemoryDatabase() {
         BasicDataSource dataSource = new BasicDataSource();
         dataSource.setDriverClassName("org.h2.Driver");
-        dataSource.setUrl("jdbc:h2:mem:");
+        dataSource.setUrl("jdbc:h2:mem:" + UUID.randomUUID());
         dataSource.setUsername("sa");
         dataSource.setPassword("");
         dataSource.setMaxTotal(10);
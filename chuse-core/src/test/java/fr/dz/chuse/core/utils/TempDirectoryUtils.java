@@ -0,0 +1,41 @@
+package fr.dz.chuse.core.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Utils for tests with temporary directories.
+ */
+public final class TempDirectoryUtils {
+
+    /**
+     * Creates a temporary directory.
+     *
+     * @return The directory
+     * @throws IOException
+     *             I/O Error
+     */
+    public static Path createTempDirectory() throws IOException {
+        return Files.createTempDirectory("chuse");
+    }
+
+    /**
+     * Deletes a directory and all its content.
+     *
+     * @param directory
+     *            The directory
+     * @throws IOException
+     *             I/O Error
+     */
+    public static void delete(final Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private TempDirectoryUtils() {
+    }
+}
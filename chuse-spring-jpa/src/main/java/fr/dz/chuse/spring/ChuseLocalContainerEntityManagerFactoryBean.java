@@ -1,21 +1,63 @@
 package fr.dz.chuse.spring;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.persistence.Entity;
 import javax.persistence.spi.PersistenceUnitInfo;
+import javax.sql.DataSource;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.lang.Nullable;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.persistenceunit.PersistenceUnitManager;
 
+import fr.dz.chuse.core.check.index.FileWatcher;
+import fr.dz.chuse.core.check.listener.CheckDecision;
+import fr.dz.chuse.core.check.listener.CheckListener;
+import fr.dz.chuse.core.check.listener.CheckListeners;
+import fr.dz.chuse.core.check.listener.CheckPhase;
+import fr.dz.chuse.core.check.listener.JsonSummaryWriter;
+import fr.dz.chuse.core.check.service.CheckResultCache;
 import fr.dz.chuse.core.check.service.CheckService;
 import fr.dz.chuse.core.check.service.support.CheckServiceImpl;
+import fr.dz.chuse.core.config.ChangeDetectionMode;
+import fr.dz.chuse.core.config.RepositoryType;
+import fr.dz.chuse.core.data.ChangeSet;
 import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.core.rebuild.RebuildLock;
+import fr.dz.chuse.core.rebuild.ScriptImporter;
+import fr.dz.chuse.core.rebuild.SnapshotCache;
+import fr.dz.chuse.core.rebuild.TableDropper;
+import fr.dz.chuse.core.rebuild.TableTruncator;
+import fr.dz.chuse.core.rebuild.UnitObjects;
+import fr.dz.chuse.core.repository.CheckedFileRepository;
+import fr.dz.chuse.core.repository.RepositoryConstants;
+import fr.dz.chuse.core.repository.support.FileCheckedFileRepository;
 import fr.dz.chuse.core.repository.support.JdbcCheckedFileRepository;
+import fr.dz.chuse.core.utils.ExecutorUtils;
+import fr.dz.chuse.core.utils.HashUtils;
+import lombok.AccessLevel;
 import lombok.Setter;
 
 /**
@@ -24,7 +66,48 @@ import lombok.Setter;
 public class ChuseLocalContainerEntityManagerFactoryBean
         extends LocalContainerEntityManagerFactoryBean {
 
-    // The Chuse service
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ChuseLocalContainerEntityManagerFactoryBean.class);
+
+    private static final String HBM2DDL_AUTO_PROPERTY = "hibernate.hbm2ddl.auto";
+
+    private static final String IMPORT_FILES_PROPERTY = "hibernate.hbm2ddl.import_files";
+
+    private static final String IMPORT_EXTRACTOR_PROPERTY =
+            "hibernate.hbm2ddl.import_files_sql_extractor";
+
+    private static final String IMPORT_CHARSET_PROPERTY = "hibernate.hbm2ddl.charset_name";
+
+    private static final String HALT_ON_ERROR_PROPERTY = "hibernate.hbm2ddl.halt_on_error";
+
+    private static final String DEFAULT_SCHEMA_PROPERTY = "hibernate.default_schema";
+
+    private static final String IMPLICIT_NAMING_STRATEGY_PROPERTY =
+            "hibernate.implicit_naming_strategy";
+
+    private static final String PHYSICAL_NAMING_STRATEGY_PROPERTY =
+            "hibernate.physical_naming_strategy";
+
+    // Hibernate default naming strategies (short names or simple class names)
+    private static final Set<String> HIBERNATE_NAMING_STRATEGIES = new HashSet<>(Arrays.asList(
+            "default", "jpa", "ImplicitNamingStrategyJpaCompliantImpl",
+            "PhysicalNamingStrategyStandardImpl"));
+
+    // Spring Boot default naming strategies (simple class names)
+    private static final Set<String> SPRING_NAMING_STRATEGIES = new HashSet<>(Arrays.asList(
+            "SpringImplicitNamingStrategy", "SpringPhysicalNamingStrategy",
+            "CamelCaseToUnderscoresNamingStrategy"));
+
+    // Script imported by Hibernate when no import file is configured
+    private static final String DEFAULT_IMPORT_SCRIPT = "import.sql";
+
+    // Database (URL and current schema) of each DataSource, so that only the first persistence
+    // unit using a DataSource connects to read it
+    private static final Map<DataSource, String> DATABASES = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    // The Chuse service (created once the properties are set)
+    @Setter(AccessLevel.PACKAGE)
     private transient CheckService checkService;
 
     // Additional folders for searching resources
@@ -37,18 +120,217 @@ public class ChuseLocalContainerEntityManagerFactoryBean
     @Nullable
     private List<String> additionalJavaClassesFolders;
 
-    // Determined using the PersistenceUnitInfo wheter the repository needs to be updated or not
-    private boolean updateRepository;
+    // How modifications are detected (last modified time by default)
+    @Setter
+    @Nullable
+    private ChangeDetectionMode changeDetectionMode;
+
+    // Where the checked files are stored (in the database by default)
+    @Setter
+    @Nullable
+    private RepositoryType checkedFilesRepositoryType;
+
+    // Location of the checked files when they are stored in a file (by default, it depends on
+    // the checked files scope)
+    @Setter
+    @Nullable
+    private String checkedFilesPath;
+
+    // Scope of the checked files (the persistence unit name by default), so that several
+    // persistence units can share the same database, or the same folder
+    @Setter
+    @Nullable
+    private String checkedFilesScope;
+
+    // Executor used to find and hash files (the common fork-join pool by default)
+    @Setter
+    @Nullable
+    private transient Executor checkExecutor;
+
+    // Whether files are found and hashed using virtual threads, if the runtime supports them
+    @Setter
+    private boolean virtualThreads;
+
+    // Whether classes and resources which are not in the source folders are searched in JARs
+    @Setter
+    private boolean jarLookup = true;
+
+    // Whether JPA classes are checked using the schema fingerprint of their compiled class, so
+    // that code-only changes (comments, helper methods...) don't re-build the database
+    @Setter
+    private boolean bytecodeFingerprint;
+
+    // Whether the types the JPA classes depend on (mapped super classes, embeddables, enums,
+    // converters...) are checked too, even if they are not listed in the persistence unit (off
+    // by default : the new checked files would re-build the database once after an upgrade)
+    @Setter
+    private boolean schemaDependencies;
+
+    // Location of the schema dependencies graph cache
+    @Setter
+    @Nullable
+    private String schemaDependenciesPath;
+
+    // Whether the database schema is fingerprinted once built, and verified before skipping a
+    // re-build, so that a dropped table or a deleted database file triggers a re-build
+    @Setter
+    private boolean databaseFingerprint;
+
+    // Whether all the changes are found and logged : otherwise, the check stops at the first
+    // change (always true with a partial re-build or a data reload, which need all of them)
+    @Setter
+    private boolean detailedChangeLog = true;
+
+    // Whether only the tables of the changed entities are re-created (using hbm2ddl.auto=update
+    // instead of create), when nothing else has changed
+    @Setter
+    private boolean partialRebuild;
+
+    // Whether a snapshot of the database is saved after each re-build, and restored instead of
+    // re-building the database when the checked files have the same content again (H2 only)
+    @Setter
+    private boolean snapshotCache;
+
+    // Location of the database snapshots
+    @Setter
+    @Nullable
+    private String snapshotDirectory;
+
+    // Maximum size of the database snapshots, in bytes
+    @Setter
+    private long snapshotMaxSize = SnapshotCache.DEFAULT_MAX_SIZE;
+
+    // Whether the import files are imported by Chuse, using JDBC batches and multi-row INSERT
+    // statements, instead of Hibernate (which executes their statements one at a time)
+    @Setter
+    private boolean fastImport;
+
+    // Whether only the data is reloaded (tables truncated and import files replayed, keeping the
+    // schema) when only import files have changed
+    @Setter
+    private boolean dataReload;
+
+    // Number of statements sent in a single JDBC batch by the fast import
+    @Setter
+    private int importBatchSize = ScriptImporter.DEFAULT_BATCH_SIZE;
+
+    // Whether re-builds are coordinated between JVMs sharing the same database (parallel test
+    // forks for instance) : only one re-builds it, the other ones wait and don't re-build it
+    @Setter
+    private boolean rebuildCoordination;
+
+    // Location of the lock file used to coordinate re-builds (by default, one per database)
+    @Setter
+    @Nullable
+    private String rebuildLockPath;
+
+    // Whether file system events are watched, so that a JVM re-creating the persistence unit
+    // (development restarts, IDE test runners...) doesn't find nor compare the files again when
+    // none of them has changed
+    @Setter
+    private boolean liveMode;
+
+    // Whether the check results are shared by the persistence units of this JVM using the same
+    // database (one per Spring test context for instance) : once a database has been verified or
+    // re-built, it is not checked again
+    @Setter
+    private boolean checkResultCache;
+
+    // Listeners of the checks (phases durations, decisions...)
+    @Setter
+    @Nullable
+    private transient List<CheckListener> checkListeners;
+
+    // Whether JDK Flight Recorder events are committed for the checks, if the runtime supports
+    // them (they cost nothing when no recording is running)
+    @Setter
+    private boolean flightRecorderEvents = true;
+
+    // Whether a JSON summary of each check is appended to a file, for CI dashboards
+    @Setter
+    private boolean checkSummary;
+
+    // Location of the JSON summary file
+    @Setter
+    @Nullable
+    private String checkSummaryPath;
+
+    // Number of checked files written to the repository in a single JDBC batch
+    @Setter
+    private int checkedFilesBatchSize = JdbcCheckedFileRepository.DEFAULT_BATCH_SIZE;
+
+    // The changes to be applied to the repository once the database is built (null if none)
+    private transient ChangeSet changes;
+
+    // The files to be stored in the repository once a snapshot has been restored (null if none)
+    private transient List<CheckedFile> restoredFiles;
+
+    // The import files to be imported once the database is built (null if none)
+    private transient List<String> importScripts;
+
+    // The lock held until the database is re-built (null if none)
+    private transient RebuildLock rebuildLock;
 
-    // The actual files to be updated in the repository (if updateRepository is true)
-    private transient List<CheckedFile> actualFiles;
+    // The key of the snapshot to be saved once the database is built (null if none)
+    private transient String snapshotKey;
+
+    // The tables and sequences of the snapshot to be saved (null if none)
+    private transient UnitObjects snapshotObjects;
+
+    // The live mode key (null if the live mode is disabled)
+    private transient String liveKey;
+
+    // The listener of the check
+    private transient CheckListener listener;
+
+    // What has been decided by the check
+    private transient CheckDecision decision;
+
+    // The number of changed files found by the check
+    private transient int changedFileCount;
+
+    // The database key of the check result cache (null if it is disabled)
+    private transient String databaseKey;
+
+    // The fingerprint of the checked files names
+    private transient String checkedNames;
+
+    // Whether the database doesn't outlive the persistence unit
+    private transient boolean droppedOnClose;
+
+    // The default schema of the persistence unit (null to use the current one)
+    private transient String defaultSchema;
 
     @Override
     public void afterPropertiesSet() {
+        long start = System.nanoTime();
+        this.listener = this.createListener();
+        this.decision = CheckDecision.UNCHANGED;
+        this.changedFileCount = 0;
 
         // Initialization of CheckService
-        this.checkService = new CheckServiceImpl(
-                new JdbcCheckedFileRepository(this.getDataSource()));
+        CheckServiceImpl checkServiceImpl = new CheckServiceImpl(this.createRepository());
+        checkServiceImpl.setListener(this.listener);
+        if (this.changeDetectionMode != null) {
+            checkServiceImpl.setChangeDetectionMode(this.changeDetectionMode);
+        }
+        checkServiceImpl.setExecutor(this.determineCheckExecutor());
+        checkServiceImpl.setClassLoader(this.getBeanClassLoader());
+        checkServiceImpl.setJarLookup(this.jarLookup);
+        checkServiceImpl.setBytecodeFingerprint(this.bytecodeFingerprint);
+        checkServiceImpl.setDetailedChanges(
+                this.detailedChangeLog || this.partialRebuild || this.dataReload);
+        if (this.schemaDependenciesPath != null) {
+            checkServiceImpl.setSchemaDependenciesPath(Paths.get(this.schemaDependenciesPath));
+        }
+        if (this.liveMode) {
+            this.liveKey = this.determineLiveKey();
+            checkServiceImpl.setLiveKey(this.liveKey);
+        }
+        if (this.checkResultCache && this.getDataSource() != null) {
+            this.databaseKey = this.determineDatabaseKey();
+        }
+        this.checkService = checkServiceImpl;
 
         // Check for null parameters
         this.additionalResourcesFolders = this.additionalResourcesFolders == null
@@ -58,13 +340,75 @@ public class ChuseLocalContainerEntityManagerFactoryBean
                 ? Collections.emptyList()
                 : this.additionalJavaClassesFolders;
 
+        // Read the repository and index the folders while the persistence unit is scanned
+        // (unless the database has probably already been checked by this JVM)
+        if (this.databaseKey == null || !CheckResultCache.contains(this.databaseKey)) {
+            this.checkService.prefetch(this.additionalResourcesFolders,
+                    this.additionalJavaClassesFolders);
+        }
+
         // Do the FactoryBean job (whatever, it doesn't matter)
-        super.afterPropertiesSet();
+        try {
+            long buildStart = System.nanoTime();
+            super.afterPropertiesSet();
+
+            // Update repository and release a bit of memory
+            if (this.restoredFiles != null) {
+                this.listener.phaseCompleted(CheckPhase.REBUILD, System.nanoTime() - buildStart,
+                        this.restoredFiles.size());
 
-        // Update repository and release a bit of memory
-        if (this.updateRepository) {
-            this.checkService.updateCheckedFiles(this.actualFiles);
-            this.actualFiles = null;
+                // The repository may have been restored with the database : replace all files
+                this.checkService.updateCheckedFiles(this.restoredFiles);
+                if (this.isDatabaseFingerprintEnabled()) {
+                    this.checkService.updateDatabaseFingerprint(this.getDataSource(),
+                            this.defaultSchema);
+                }
+                this.restoredFiles = null;
+            } else if (this.changes != null) {
+                if (this.importScripts != null) {
+                    this.importScripts(this.importScripts);
+                    this.importScripts = null;
+                }
+                this.listener.phaseCompleted(CheckPhase.REBUILD, System.nanoTime() - buildStart,
+                        this.changes.size());
+                this.checkService.updateCheckedFiles(this.changes);
+                if (this.isDatabaseFingerprintEnabled()) {
+                    this.checkService.updateDatabaseFingerprint(this.getDataSource(),
+                            this.defaultSchema);
+                }
+                if (this.snapshotKey != null) {
+                    this.createSnapshotCache().save(this.getDataSource(), this.snapshotObjects,
+                            this.snapshotKey);
+                }
+                this.changes = null;
+            }
+            this.snapshotKey = null;
+            this.snapshotObjects = null;
+
+            // The other persistence units of this JVM don't need to check the database again
+            if (this.databaseKey != null) {
+                CheckResultCache.verified(this.databaseKey, this.checkedNames);
+            }
+            this.listener.checkCompleted(this.determineCheckedFilesScope(), this.decision,
+                    this.changedFileCount, System.nanoTime() - start);
+        } finally {
+
+            // Other JVMs waiting for the re-build can check the repository again
+            this.releaseRebuildLock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+
+        // The database doesn't outlive the persistence unit : files must be checked again
+        if (this.liveKey != null && (this.droppedOnClose || this.liveKey.contains(":mem:"))) {
+            FileWatcher.get().removeBaseline(this.liveKey);
+        }
+        if (this.databaseKey != null
+                && (this.droppedOnClose || this.databaseKey.contains(":mem:"))) {
+            CheckResultCache.invalidate(this.databaseKey);
         }
     }
 
@@ -76,6 +420,30 @@ public class ChuseLocalContainerEntityManagerFactoryBean
          *  Get the PersistenceUnitInfo in order to extract needed informations
          */
         PersistenceUnitInfo pui = super.determinePersistenceUnitInfo(persistenceUnitManager);
+        this.droppedOnClose = "create-drop".equals(this.getProperty(pui, HBM2DDL_AUTO_PROPERTY));
+        Object schema = this.getProperty(pui, DEFAULT_SCHEMA_PROPERTY);
+        this.defaultSchema = schema == null ? null : schema.toString();
+
+        /*
+         * The database may have already been checked by this JVM, or in live mode, files are
+         * not found again if none of them has changed
+         */
+        List<String> names = new ArrayList<>(pui.getMappingFileNames());
+        names.addAll(this.extractInitScripts());
+        names.addAll(pui.getManagedClassNames());
+        this.checkedNames = HashUtils.hash(names);
+        if (this.databaseKey != null
+                && CheckResultCache.isVerified(this.databaseKey, this.checkedNames)) {
+            LOGGER.info("Database has already been checked by this JVM : "
+                    + "Database will not be re-built.");
+            this.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "none");
+            return pui;
+        }
+        if (this.checkService.isUnchanged(names) && !this.needsRebuild(ChangeSet.empty())) {
+            LOGGER.info("No modification has been watched : Database will not be re-built.");
+            this.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "none");
+            return pui;
+        }
 
         /*
          * List all files to check
@@ -87,33 +455,643 @@ public class ChuseLocalContainerEntityManagerFactoryBean
                 this.additionalResourcesFolders));
 
         // Initialization scripts
-        toBeChecked.addAll(this.checkService.extractResources(this.extractInitScripts(),
-                this.additionalResourcesFolders));
+        List<CheckedFile> scriptFiles = this.checkService
+                .extractResources(this.extractInitScripts(), this.additionalResourcesFolders);
+        toBeChecked.addAll(scriptFiles);
 
-        // JPA Classes
-        toBeChecked.addAll(this.checkService.extractJavaClasses(pui.getManagedClassNames(),
+        // JPA Classes, and the types they depend on
+        List<String> classes = new ArrayList<>(pui.getManagedClassNames());
+        if (this.schemaDependencies) {
+            classes.addAll(this.checkService.findSchemaDependencies(classes));
+        }
+        toBeChecked.addAll(this.checkService.extractJavaClasses(classes,
                 this.additionalJavaClassesFolders));
 
         /*
          *  Check if there are changes
          */
-        if (this.checkService.hasChanged(toBeChecked)) {
+        ChangeSet foundChanges = this.checkService.checkChanges(toBeChecked);
+        boolean rebuild = this.needsRebuild(foundChanges);
+        if (rebuild && this.rebuildCoordination) {
+
+            // Another JVM may be re-building the database : wait for it, and check again
+            this.rebuildLock = RebuildLock.acquire(this.determineRebuildLockPath());
+            foundChanges = this.checkService.checkChanges(toBeChecked);
+            rebuild = this.needsRebuild(foundChanges);
+            if (!rebuild) {
+                LOGGER.info("Database has been re-built by another JVM.");
+                this.releaseRebuildLock();
+            }
+        }
+        if (rebuild) {
 
-            // There are some changes
+            // There are some changes (or the database has drifted)
             // Let the user defined hbm2ddl.auto strategy update the database
-            // And prepare for update checked file repository (empty it until it has finished)
-            this.checkService.updateCheckedFiles(Collections.emptyList());
-            this.updateRepository = true;
-            this.actualFiles = toBeChecked;
+            // And prepare for update checked file repository (invalidate changes until it has
+            // finished)
+            this.checkService.invalidateCheckedFiles(foundChanges);
+            this.changes = foundChanges;
+            this.decision = CheckDecision.REBUILD;
+            this.changedFileCount = foundChanges.size();
+
+            // The database may have already been built with the same files
+            if (this.isSnapshotCacheEnabled(pui)) {
+                this.snapshotKey = this.determineSnapshotKey(toBeChecked);
+                if (this.createSnapshotCache().restore(this.getDataSource(), this.snapshotObjects,
+                        this.snapshotKey)) {
+                    this.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "none");
+                    this.restoredFiles = toBeChecked;
+                    this.changes = null;
+                    this.decision = CheckDecision.SNAPSHOT_RESTORE;
+                    return pui;
+                }
+            }
+
+            // Only the data may be reloaded
+            if (this.dataReload && this.prepareDataReload(pui, foundChanges, scriptFiles)) {
+                this.decision = CheckDecision.DATA_RELOAD;
+                return pui;
+            }
+
+            // Only changed entities may be re-built
+            if (this.partialRebuild && foundChanges.hasChanged()
+                    && this.preparePartialRebuild(pui, foundChanges, classes)) {
+                this.decision = CheckDecision.PARTIAL_REBUILD;
+            }
+
+            // Import files may be imported by Chuse, once the schema is created
+            if (this.fastImport) {
+                this.prepareFastImport(pui);
+            }
         } else {
 
             // No changes, skip database build using hbm2ddl.auto=none
-            this.getJpaPropertyMap().put("hibernate.hbm2ddl.auto", "none");
+            this.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "none");
+
+            // Touched files are refreshed, so that their content is not hashed again next time,
+            // and the root hash is stored, so that files are not compared again next time
+            if (foundChanges.hasUpdates() || foundChanges.hasRootHash()) {
+                this.checkService.updateCheckedFiles(foundChanges);
+            }
         }
 
         return pui;
     }
 
+    /**
+     * Checks if the database must be re-built : if there are some changes, or if the database
+     * has drifted.
+     *
+     * @param foundChanges
+     *            The changes
+     * @return true if the database must be re-built
+     */
+    private boolean needsRebuild(final ChangeSet foundChanges) {
+        return foundChanges.hasChanged() || this.isDatabaseFingerprintEnabled()
+                && !this.checkService.checkDatabaseFingerprint(this.getDataSource(),
+                        this.defaultSchema);
+    }
+
+    /**
+     * Releases the re-build lock, if it is held.
+     */
+    private void releaseRebuildLock() {
+        if (this.rebuildLock != null) {
+            this.rebuildLock.close();
+            this.rebuildLock = null;
+        }
+    }
+
+    /**
+     * Prepares a data reload, if only import files have changed : the tables of the persistence
+     * unit are emptied, and the import files will be imported again once the persistence unit is
+     * built, without re-building the schema.
+     * It is possible only if the strategy is create or create-only (with create-drop, the schema
+     * doesn't outlive the application), if the schema has not drifted, and if the tables of the
+     * persistence unit can be determined from its entities (the other tables of the schema must
+     * be kept).
+     *
+     * @param pui
+     *            The persistence unit
+     * @param changes
+     *            The changes
+     * @param scriptFiles
+     *            The checked import files
+     * @return true if the data will be reloaded, false if the database must be re-built
+     */
+    private boolean prepareDataReload(final PersistenceUnitInfo pui, final ChangeSet changes,
+            final List<CheckedFile> scriptFiles) {
+        Set<String> scriptNames = scriptFiles.stream().map(CheckedFile::getName)
+                .collect(Collectors.toSet());
+        if (!changes.hasChanged() || !changes.getDeletedFiles().isEmpty()
+                || !Stream.concat(changes.getAddedFiles().stream(),
+                        changes.getModifiedFiles().stream())
+                        .allMatch(file -> scriptNames.contains(file.getName()))) {
+            return false;
+        }
+        Object strategy = this.getProperty(pui, HBM2DDL_AUTO_PROPERTY);
+        if (!"create".equals(strategy) && !"create-only".equals(strategy)
+                || this.getDataSource() == null) {
+            LOGGER.info("Data reload is only possible with hbm2ddl.auto=create or create-only, "
+                    + "and a DataSource : Database will be re-built.");
+            return false;
+        }
+        if (this.isDatabaseFingerprintEnabled()
+                && !this.checkService.checkDatabaseFingerprint(this.getDataSource(),
+                        this.defaultSchema)) {
+            return false;
+        }
+        UnitObjects unitObjects = this.determineUnitObjects(pui);
+        if (unitObjects == null) {
+            LOGGER.info("The persistence unit tables can't be determined from its entities : "
+                    + "Database will be re-built.");
+            return false;
+        }
+        if (!TableTruncator.truncate(this.getDataSource(), unitObjects)) {
+            return false;
+        }
+
+        // Keep the schema, and import the files again
+        this.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "none");
+        this.importScripts = this.extractInitScripts();
+        LOGGER.info("Only import files have changed : tables have been truncated, "
+                + "data will be reloaded.");
+        return true;
+    }
+
+    /**
+     * Prepares a partial re-build, if the changes allow it : the tables of the changed entities
+     * are dropped, and hbm2ddl.auto=update re-creates them. Otherwise, the user defined
+     * strategy re-builds the whole database.
+     * It is possible only if the strategy is create (with create-drop, update wouldn't drop the
+     * schema on close), if there is no import script (the other tables data would be imported
+     * again), if all the changes are entities changes (mapping files, mapped super classes,
+     * embeddables... can change any table), and if no other table references the dropped ones
+     * (update doesn't re-create the foreign keys of the kept tables).
+     *
+     * @param pui
+     *            The persistence unit
+     * @param changes
+     *            The changes
+     * @param classes
+     *            The checked classes
+     * @return true if only the tables of the changed entities will be re-built
+     */
+    private boolean preparePartialRebuild(final PersistenceUnitInfo pui, final ChangeSet changes,
+            final List<String> classes) {
+        Object strategy = this.getProperty(pui, HBM2DDL_AUTO_PROPERTY);
+        if (!"create".equals(strategy) || this.getDataSource() == null) {
+            LOGGER.info("Partial re-build is only possible with hbm2ddl.auto=create, "
+                    + "and a DataSource : Database will be fully re-built.");
+            return false;
+        }
+        if (!changes.getDeletedFiles().isEmpty() || !this.extractInitScripts().isEmpty()
+                || this.getBeanClassLoader().getResource(DEFAULT_IMPORT_SCRIPT) != null) {
+            LOGGER.info("Files have been deleted, or import scripts are used : "
+                    + "Database will be fully re-built.");
+            return false;
+        }
+
+        // Find the tables of the changed entities, named as the naming strategies name them
+        Boolean springNaming = this.usesSpringNaming(pui);
+        if (springNaming == null) {
+            LOGGER.info("Custom naming strategies are used : Database will be fully re-built.");
+            return false;
+        }
+        ClassLoader classLoader = this.determineTempClassLoader(pui);
+        List<CheckedFile> changedFiles = new ArrayList<>(changes.getAddedFiles());
+        changedFiles.addAll(changes.getModifiedFiles());
+        Set<String> tables = new LinkedHashSet<>();
+        for (CheckedFile changedFile : changedFiles) {
+            Class<?> changedClass = findClassName(changedFile, classes)
+                    .map(className -> loadClass(className, classLoader)).orElse(null);
+            if (changedClass == null || !changedClass.isAnnotationPresent(Entity.class)) {
+                LOGGER.info("{} is not an entity : Database will be fully re-built.",
+                        changedFile.getName());
+                return false;
+            }
+            tables.addAll(EntityTables.of(changedClass, springNaming));
+        }
+
+        // Drop them, so that they are created again, unless kept tables reference them
+        Set<String> referencingTables = TableDropper.findReferencingTables(this.getDataSource(),
+                this.defaultSchema, tables);
+        if (!referencingTables.isEmpty()) {
+            LOGGER.info("Tables {} reference the changed entities tables : "
+                    + "Database will be fully re-built.", referencingTables);
+            return false;
+        }
+        List<String> droppedTables = TableDropper.drop(this.getDataSource(), this.defaultSchema,
+                tables);
+        this.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "update");
+        LOGGER.info("Partial re-build : tables {} have been dropped to be re-created.",
+                droppedTables);
+        return true;
+    }
+
+    /**
+     * Determines the tables and sequences of the persistence unit, from the annotations of its
+     * entities.
+     *
+     * @param pui
+     *            The persistence unit
+     * @return The objects, null if they can't be determined (mapping files or custom naming
+     *         strategies are used, or a managed class can't be loaded)
+     */
+    private UnitObjects determineUnitObjects(final PersistenceUnitInfo pui) {
+        Boolean springNaming = this.usesSpringNaming(pui);
+        if (springNaming == null || !pui.getMappingFileNames().isEmpty()) {
+            return null;
+        }
+        ClassLoader classLoader = this.determineTempClassLoader(pui);
+        Set<String> tables = new LinkedHashSet<>();
+        Set<String> sequences = new LinkedHashSet<>();
+        for (String className : pui.getManagedClassNames()) {
+            Class<?> managedClass = loadClass(className, classLoader);
+            if (managedClass == null) {
+                return null;
+            }
+            if (managedClass.isAnnotationPresent(Entity.class)) {
+                tables.addAll(EntityTables.of(managedClass, springNaming));
+                sequences.addAll(EntityTables.sequencesOf(managedClass, springNaming));
+            }
+        }
+        return new UnitObjects(this.defaultSchema, tables, sequences);
+    }
+
+    /**
+     * Determines the class loader used to read the entities annotations, without loading them
+     * for good.
+     *
+     * @param pui
+     *            The persistence unit
+     * @return The class loader
+     */
+    private ClassLoader determineTempClassLoader(final PersistenceUnitInfo pui) {
+        ClassLoader classLoader = pui.getNewTempClassLoader();
+        return classLoader == null ? this.getBeanClassLoader() : classLoader;
+    }
+
+    /**
+     * Loads a class, without initializing it.
+     *
+     * @param className
+     *            The class name
+     * @param classLoader
+     *            The class loader
+     * @return The class, null if it can't be loaded
+     */
+    private static Class<?> loadClass(final String className, final ClassLoader classLoader) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOGGER.debug("Unable to load class {}", className, e);
+            return null;
+        }
+    }
+
+    /**
+     * Prepares the fast import of the import files : Hibernate won't import them, they will be
+     * imported once the schema is created.
+     * Like Hibernate, they are imported only if the schema is created (create, create-drop or
+     * create-only strategy).
+     *
+     * @param pui
+     *            The persistence unit
+     */
+    private void prepareFastImport(final PersistenceUnitInfo pui) {
+        Object strategy = this.getProperty(pui, HBM2DDL_AUTO_PROPERTY);
+        List<String> scripts = this.extractInitScripts();
+        if (scripts.isEmpty() || this.getDataSource() == null || !"create".equals(strategy)
+                && !"create-drop".equals(strategy) && !"create-only".equals(strategy)) {
+            return;
+        }
+        this.getJpaPropertyMap().put(IMPORT_FILES_PROPERTY, "");
+        this.importScripts = scripts;
+    }
+
+    /**
+     * Imports the import files, using the Hibernate settings (SQL extractor, charset and halt on
+     * error : like Hibernate, failing statements are skipped by default).
+     *
+     * @param scripts
+     *            The import files
+     */
+    private void importScripts(final List<String> scripts) {
+        List<URL> urls = new ArrayList<>();
+        for (String script : scripts) {
+            URL url = this.getBeanClassLoader().getResource(script.startsWith("/")
+                    ? script.substring(1)
+                    : script);
+            Path path = Paths.get(script);
+            if (url == null && Files.isRegularFile(path)) {
+                try {
+                    url = path.toUri().toURL();
+                } catch (MalformedURLException e) {
+                    throw new IllegalStateException("Invalid import file " + script, e);
+                }
+            }
+            if (url == null) {
+                LOGGER.warn("Import file {} was not found : it will not be imported", script);
+            } else {
+                urls.add(url);
+            }
+        }
+        ScriptImporter importer = new ScriptImporter(this.getDataSource());
+        Object extractor = this.getJpaPropertyMap().get(IMPORT_EXTRACTOR_PROPERTY);
+        importer.setMultipleLines(extractor != null
+                && String.valueOf(extractor).contains("MultipleLines"));
+        Object charset = this.getJpaPropertyMap().get(IMPORT_CHARSET_PROPERTY);
+        importer.setCharset(charset == null ? Charset.defaultCharset()
+                : Charset.forName(String.valueOf(charset)));
+        importer.setBatchSize(this.importBatchSize);
+        Object haltOnError = this.getJpaPropertyMap().get(HALT_ON_ERROR_PROPERTY);
+        importer.setHaltOnError(haltOnError != null
+                && Boolean.parseBoolean(String.valueOf(haltOnError).trim()));
+        importer.importScripts(urls);
+    }
+
+    /**
+     * Gets a JPA property, from the bean configuration or the persistence unit.
+     *
+     * @param pui
+     *            The persistence unit
+     * @param name
+     *            The property name
+     * @return The property value, null if it is not set
+     */
+    private Object getProperty(final PersistenceUnitInfo pui, final String name) {
+        return this.getJpaPropertyMap().getOrDefault(name,
+                pui.getProperties().getProperty(name));
+    }
+
+    /**
+     * Determines the naming strategies of the persistence unit, which give the table names.
+     *
+     * @param pui
+     *            The persistence unit
+     * @return true for the Spring Boot ones, false for the Hibernate ones (the default), null for
+     *         other ones
+     */
+    private Boolean usesSpringNaming(final PersistenceUnitInfo pui) {
+        String implicit = strategyName(this.getProperty(pui, IMPLICIT_NAMING_STRATEGY_PROPERTY));
+        String physical = strategyName(this.getProperty(pui, PHYSICAL_NAMING_STRATEGY_PROPERTY));
+        if ((implicit == null || HIBERNATE_NAMING_STRATEGIES.contains(implicit))
+                && (physical == null || HIBERNATE_NAMING_STRATEGIES.contains(physical))) {
+            return false;
+        }
+        if (SPRING_NAMING_STRATEGIES.contains(implicit)
+                && SPRING_NAMING_STRATEGIES.contains(physical)) {
+            return true;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the name of a naming strategy, as given by its property.
+     *
+     * @param strategy
+     *            The strategy short name, class name, class or instance (null if not set)
+     * @return The short name or the simple class name, null if not set
+     */
+    private static String strategyName(final Object strategy) {
+        if (strategy == null) {
+            return null;
+        }
+        String name = strategy instanceof Class ? ((Class<?>) strategy).getName()
+                : strategy instanceof String ? (String) strategy
+                        : strategy.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1).trim();
+    }
+
+    /**
+     * Finds the class a checked file (source or compiled class) belongs to.
+     *
+     * @param file
+     *            The checked file
+     * @param classes
+     *            The checked classes
+     * @return The class name, if the file is a class
+     */
+    private static Optional<String> findClassName(final CheckedFile file,
+            final List<String> classes) {
+        String name = file.getName();
+        if (!name.endsWith(".java") && !name.endsWith(".class")) {
+            return Optional.empty();
+        }
+        String path = name.substring(0, name.lastIndexOf('.'));
+        return classes.stream().filter(className -> {
+            String classPath = className.replace('.', '/');
+            int start = path.length() - classPath.length();
+            return path.endsWith(classPath)
+                    && (start == 0 || path.charAt(start - 1) == '/');
+        }).findFirst();
+    }
+
+    /**
+     * Checks if the database schema is fingerprinted, which requires a DataSource.
+     *
+     * @return true if the database fingerprint is enabled
+     */
+    private boolean isDatabaseFingerprintEnabled() {
+        return this.databaseFingerprint && this.getDataSource() != null;
+    }
+
+    /**
+     * Checks if the database snapshot cache is enabled, which requires a H2 DataSource, and
+     * persistence unit tables which can be determined from its entities (snapshots are limited
+     * to them). These tables are then kept for the snapshot.
+     *
+     * @param pui
+     *            The persistence unit
+     * @return true if the snapshot cache is enabled
+     */
+    private boolean isSnapshotCacheEnabled(final PersistenceUnitInfo pui) {
+        if (!this.snapshotCache || this.getDataSource() == null) {
+            return false;
+        }
+        if (!SnapshotCache.isSupported(this.getDataSource())) {
+            LOGGER.warn("Database snapshots are only supported by H2 : "
+                    + "the snapshot cache will not be used");
+            return false;
+        }
+        this.snapshotObjects = this.determineUnitObjects(pui);
+        if (this.snapshotObjects == null) {
+            LOGGER.info("The persistence unit tables can't be determined from its entities : "
+                    + "the snapshot cache will not be used");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the database snapshot cache.
+     *
+     * @return The snapshot cache
+     */
+    private SnapshotCache createSnapshotCache() {
+        return new SnapshotCache(Paths.get(this.snapshotDirectory == null
+                ? SnapshotCache.DEFAULT_DIRECTORY
+                : this.snapshotDirectory), this.snapshotMaxSize);
+    }
+
+    /**
+     * Determines the snapshot key : the content key of the checked files, for the database and
+     * the schema of the persistence unit, and the checked files scope.
+     *
+     * @param toBeChecked
+     *            The checked files
+     * @return The key
+     */
+    private String determineSnapshotKey(final List<CheckedFile> toBeChecked) {
+        return HashUtils.hash(Arrays.asList("database " + this.determineDatabaseKey(),
+                "schema " + this.defaultSchema,
+                "content " + this.checkService.computeContentKey(toBeChecked)));
+    }
+
+    /**
+     * Creates the listener of the check : the configured listeners, the JDK Flight Recorder
+     * events and the JSON summary.
+     *
+     * @return The listener
+     */
+    private CheckListener createListener() {
+        List<CheckListener> listeners = new ArrayList<>();
+        if (this.checkListeners != null) {
+            listeners.addAll(this.checkListeners);
+        }
+        if (this.flightRecorderEvents) {
+            CheckListeners.flightRecorder().ifPresent(listeners::add);
+        }
+        if (this.checkSummary) {
+            listeners.add(new JsonSummaryWriter(Paths.get(this.checkSummaryPath == null
+                    ? JsonSummaryWriter.DEFAULT_PATH
+                    : this.checkSummaryPath)));
+        }
+        return CheckListeners.composite(listeners);
+    }
+
+    /**
+     * Creates the checked files repository, according to the configured type.
+     *
+     * @return The repository
+     */
+    private CheckedFileRepository createRepository() {
+        if (this.checkedFilesRepositoryType == RepositoryType.FILE) {
+            return new FileCheckedFileRepository(this.determineCheckedFilesPath());
+        }
+        return new JdbcCheckedFileRepository(this.getDataSource(), null,
+                this.checkedFilesBatchSize, this.determineCheckedFilesScope());
+    }
+
+    /**
+     * Determines the scope of the checked files : the configured one, or the persistence unit
+     * name.
+     *
+     * @return The scope
+     */
+    private String determineCheckedFilesScope() {
+        if (this.checkedFilesScope != null && !this.checkedFilesScope.trim().isEmpty()) {
+            return this.checkedFilesScope;
+        }
+        String persistenceUnitName = this.getPersistenceUnitName();
+        return persistenceUnitName == null || persistenceUnitName.trim().isEmpty()
+                ? RepositoryConstants.DEFAULT_SCOPE
+                : persistenceUnitName;
+    }
+
+    /**
+     * Determines the location of the checked files, when they are stored in a file : by default,
+     * it depends on the checked files scope, so that persistence units don't share the same file.
+     *
+     * @return The location
+     */
+    private Path determineCheckedFilesPath() {
+        return this.checkedFilesPath == null
+                ? FileCheckedFileRepository.defaultPath(this.determineCheckedFilesScope())
+                : Paths.get(this.checkedFilesPath);
+    }
+
+    /**
+     * Determines the location of the re-build lock : by default, it depends on the database and
+     * the checked files scope, so that only the re-builds of the same database wait for each
+     * other.
+     *
+     * @return The location
+     */
+    private Path determineRebuildLockPath() {
+        if (this.rebuildLockPath != null) {
+            return Paths.get(this.rebuildLockPath);
+        }
+        return RebuildLock.defaultPath(this.getDataSource() == null
+                ? this.determineCheckedFilesScope()
+                : this.determineDatabaseKey() + "#" + this.defaultSchema);
+    }
+
+    /**
+     * Determines the live mode key : checks of the same persistence unit, using the same
+     * repository, share the same baseline.
+     *
+     * @return The key
+     */
+    private String determineLiveKey() {
+        if (this.checkedFilesRepositoryType == RepositoryType.FILE) {
+            return this.determineCheckedFilesPath().toAbsolutePath().normalize() + "#"
+                    + this.determineCheckedFilesScope();
+        }
+        return this.determineDatabaseKey();
+    }
+
+    /**
+     * Determines the database key : the database URL, current schema and configured default
+     * schema, and the checked files scope (the persistence unit name by default).
+     * The database is only read once per DataSource.
+     *
+     * @return The key
+     */
+    private String determineDatabaseKey() {
+        String database = DATABASES.computeIfAbsent(this.getDataSource(),
+                ChuseLocalContainerEntityManagerFactoryBean::readDatabase);
+        return database + "#" + this.getJpaPropertyMap().get(DEFAULT_SCHEMA_PROPERTY) + "#"
+                + this.determineCheckedFilesScope();
+    }
+
+    /**
+     * Reads the database of a DataSource : its URL and its current schema.
+     *
+     * @param dataSource
+     *            The DataSource
+     * @return The database URL and schema
+     */
+    private static String readDatabase(final DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getURL() + "#" + connection.getSchema();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to read the database URL", e);
+        }
+    }
+
+    /**
+     * Determines the executor used to find and hash files.
+     *
+     * @return The executor
+     */
+    private Executor determineCheckExecutor() {
+        if (this.checkExecutor != null) {
+            return this.checkExecutor;
+        }
+        if (this.virtualThreads) {
+            Optional<? extends Executor> virtualThreadExecutor = ExecutorUtils
+                    .virtualThreadExecutor();
+            if (virtualThreadExecutor.isPresent()) {
+                return virtualThreadExecutor.get();
+            }
+            LOGGER.warn("Virtual threads are not supported by this runtime : "
+                    + "the default executor will be used");
+        }
+        return ExecutorUtils.defaultExecutor();
+    }
+
     /**
      * Extract initialization scripts from "hibernate.hbm2ddl.import_files" property.
      * 
@@ -121,7 +1099,8 @@ public class ChuseLocalContainerEntityManagerFactoryBean
      */
     private List<String> extractInitScripts() {
         String importFiles = (String) this.getJpaPropertyMap()
-                .getOrDefault("hibernate.hbm2ddl.import_files", "");
-        return Stream.of(importFiles.split(",")).map(String::trim).collect(Collectors.toList());
+                .getOrDefault(IMPORT_FILES_PROPERTY, "");
+        return Stream.of(importFiles.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
     }
 }
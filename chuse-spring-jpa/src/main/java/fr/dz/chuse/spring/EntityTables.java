@@ -0,0 +1,252 @@
+package fr.dz.chuse.spring;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Inheritance;
+import javax.persistence.InheritanceType;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.SecondaryTable;
+import javax.persistence.SecondaryTables;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+
+/**
+ * Finds the tables owned by an entity, from its JPA annotations : its table, its secondary
+ * tables, and the join and collection tables of its associations. The sequences of its
+ * identifier generators can be found as well.
+ * Names are given as the naming strategies build them : either the Hibernate ones (JPA compliant
+ * implicit names, kept as is), or the Spring Boot ones (attribute based join tables, in snake
+ * case). Other strategies are not supported.
+ */
+public final class EntityTables {
+
+    // Sequence of the generated values which don't name a generator (Hibernate 5 default)
+    private static final String DEFAULT_SEQUENCE = "hibernate_sequence";
+
+    /**
+     * Finds the tables owned by an entity.
+     *
+     * @param entityClass
+     *            The entity class
+     * @param springNaming
+     *            true for the Spring Boot naming strategies, false for the Hibernate ones
+     * @return The table names
+     */
+    public static Set<String> of(final Class<?> entityClass, final boolean springNaming) {
+        Set<String> tables = new LinkedHashSet<>();
+
+        // Main table (the root one for a single table inheritance)
+        Class<?> tableClass = tableClass(entityClass);
+        addName(tables, tableName(tableClass), springNaming);
+        SecondaryTables secondaryTables = entityClass.getAnnotation(SecondaryTables.class);
+        if (secondaryTables != null) {
+            for (SecondaryTable secondaryTable : secondaryTables.value()) {
+                addName(tables, secondaryTable.name(), springNaming);
+            }
+        }
+        SecondaryTable secondaryTable = entityClass.getAnnotation(SecondaryTable.class);
+        if (secondaryTable != null) {
+            addName(tables, secondaryTable.name(), springNaming);
+        }
+
+        // Join and collection tables
+        for (AnnotatedElement member : members(entityClass)) {
+            String attribute = attributeName(member);
+            JoinTable joinTable = member.getAnnotation(JoinTable.class);
+            CollectionTable collectionTable = member.getAnnotation(CollectionTable.class);
+            ManyToMany manyToMany = member.getAnnotation(ManyToMany.class);
+            OneToMany oneToMany = member.getAnnotation(OneToMany.class);
+            if (joinTable != null && !joinTable.name().isEmpty()) {
+                addName(tables, joinTable.name(), springNaming);
+            } else if (collectionTable != null && !collectionTable.name().isEmpty()) {
+                addName(tables, collectionTable.name(), springNaming);
+            } else if (member.isAnnotationPresent(ElementCollection.class)) {
+                addName(tables, entityName(entityClass) + "_" + attribute, springNaming);
+            } else if (manyToMany != null && manyToMany.mappedBy().isEmpty()
+                    || oneToMany != null && oneToMany.mappedBy().isEmpty()
+                            && !member.isAnnotationPresent(JoinColumn.class)) {
+                Class<?> target = targetEntity(member,
+                        manyToMany != null ? manyToMany.targetEntity()
+                                : oneToMany.targetEntity());
+                if (target != null) {
+                    addName(tables, tableName(tableClass) + "_"
+                            + (springNaming ? attribute : tableName(tableClass(target))),
+                            springNaming);
+                }
+            }
+
+            // A unidirectional one-to-many with a join column updates the target table
+            if (oneToMany != null && oneToMany.mappedBy().isEmpty()
+                    && member.isAnnotationPresent(JoinColumn.class)) {
+                Class<?> target = targetEntity(member, oneToMany.targetEntity());
+                if (target != null) {
+                    addName(tables, tableName(tableClass(target)), springNaming);
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Finds the sequences of the identifier generators of an entity : the ones declared by its
+     * sequence generators, and the default one used by the generated values which don't name a
+     * generator. Sequences of identity columns are not included (they belong to their table).
+     *
+     * @param entityClass
+     *            The entity class
+     * @param springNaming
+     *            true for the Spring Boot naming strategies, false for the Hibernate ones
+     * @return The sequence names
+     */
+    public static Set<String> sequencesOf(final Class<?> entityClass,
+            final boolean springNaming) {
+        Set<String> sequences = new LinkedHashSet<>();
+        List<AnnotatedElement> elements = new ArrayList<>(members(entityClass));
+        for (Class<?> current = entityClass; current != null && current != Object.class;
+                current = current.getSuperclass()) {
+            if (current != entityClass && current.isAnnotationPresent(Entity.class)) {
+                break;
+            }
+            elements.add(current);
+        }
+        for (AnnotatedElement element : elements) {
+            SequenceGenerator sequenceGenerator = element.getAnnotation(SequenceGenerator.class);
+            if (sequenceGenerator != null) {
+                addName(sequences, sequenceGenerator.sequenceName().isEmpty()
+                        ? sequenceGenerator.name()
+                        : sequenceGenerator.sequenceName(), springNaming);
+            }
+            GeneratedValue generatedValue = element.getAnnotation(GeneratedValue.class);
+            if (generatedValue != null && generatedValue.generator().isEmpty()
+                    && (generatedValue.strategy() == GenerationType.AUTO
+                            || generatedValue.strategy() == GenerationType.SEQUENCE)) {
+                addName(sequences, DEFAULT_SEQUENCE, springNaming);
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Finds the class whose table stores an entity : the root entity of a single table
+     * inheritance (the default strategy), the entity itself otherwise.
+     *
+     * @param entityClass
+     *            The entity class
+     * @return The class owning the table
+     */
+    private static Class<?> tableClass(final Class<?> entityClass) {
+        Class<?> root = entityClass;
+        for (Class<?> current = entityClass.getSuperclass(); current != null;
+                current = current.getSuperclass()) {
+            if (current.isAnnotationPresent(Entity.class)) {
+                root = current;
+            }
+        }
+        Inheritance inheritance = root.getAnnotation(Inheritance.class);
+        if (inheritance == null || inheritance.strategy() == InheritanceType.SINGLE_TABLE) {
+            return root;
+        }
+        return entityClass;
+    }
+
+    private static String tableName(final Class<?> entityClass) {
+        Table table = entityClass.getAnnotation(Table.class);
+        return table != null && !table.name().isEmpty() ? table.name() : entityName(entityClass);
+    }
+
+    private static String entityName(final Class<?> entityClass) {
+        Entity entity = entityClass.getAnnotation(Entity.class);
+        return entity != null && !entity.name().isEmpty() ? entity.name()
+                : entityClass.getSimpleName();
+    }
+
+    /**
+     * Lists the persistent members of an entity and its mapped super classes : the fields and
+     * the getters.
+     *
+     * @param entityClass
+     *            The entity class
+     * @return The members
+     */
+    private static List<AnnotatedElement> members(final Class<?> entityClass) {
+        List<AnnotatedElement> members = new ArrayList<>();
+        for (Class<?> current = entityClass; current != null && current != Object.class;
+                current = current.getSuperclass()) {
+            if (current != entityClass && current.isAnnotationPresent(Entity.class)) {
+                break;
+            }
+            for (Field field : current.getDeclaredFields()) {
+                members.add(field);
+            }
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getParameterCount() == 0 && method.getName().startsWith("get")) {
+                    members.add(method);
+                }
+            }
+        }
+        return members;
+    }
+
+    private static String attributeName(final AnnotatedElement member) {
+        if (member instanceof Field) {
+            return ((Field) member).getName();
+        }
+        String name = ((Method) member).getName().substring(3);
+        return name.isEmpty() ? name : Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Finds the target entity of an association.
+     *
+     * @param member
+     *            The association field or getter
+     * @param targetEntity
+     *            The target entity given by the annotation (void.class if none)
+     * @return The target entity, null if it is unknown
+     */
+    private static Class<?> targetEntity(final AnnotatedElement member,
+            final Class<?> targetEntity) {
+        if (targetEntity != void.class) {
+            return targetEntity;
+        }
+        Type type = member instanceof Field ? ((Field) member).getGenericType()
+                : ((Method) member).getGenericReturnType();
+        if (type instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            Type element = arguments[arguments.length - 1];
+            if (element instanceof Class) {
+                return (Class<?>) element;
+            }
+        }
+        return null;
+    }
+
+    private static void addName(final Set<String> names, final String name,
+            final boolean springNaming) {
+        if (name == null || name.isEmpty()) {
+            return;
+        }
+        names.add(springNaming ? name.replace('.', '_')
+                .replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT) : name);
+    }
+
+    private EntityTables() {
+    }
+}
@@ -0,0 +1,283 @@
+package fr.dz.chuse.spring;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import javax.persistence.spi.PersistenceUnitInfo;
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.orm.jpa.persistenceunit.PersistenceUnitManager;
+
+import fr.dz.chuse.core.check.service.CheckService;
+import fr.dz.chuse.core.data.ChangeSet;
+import fr.dz.chuse.core.data.CheckedFile;
+import fr.dz.chuse.spring.entity.Author;
+import fr.dz.chuse.spring.entity.Book;
+import fr.dz.chuse.spring.entity.BookPublisher;
+
+/**
+ * Tests for the decisions of the ChuseLocalContainerEntityManagerFactoryBean, once the changes
+ * are found.
+ */
+public class ChuseLocalContainerEntityManagerFactoryBeanTest {
+
+    private static final String HBM2DDL_AUTO_PROPERTY = "hibernate.hbm2ddl.auto";
+
+    private static final String IMPORT_FILE = "import-test.sql";
+
+    private ChuseLocalContainerEntityManagerFactoryBean bean;
+
+    private CheckService checkService;
+
+    private PersistenceUnitManager persistenceUnitManager;
+
+    private PersistenceUnitInfo pui;
+
+    private QueryRunner queryRunner;
+
+    @BeforeEach
+    public void init() throws SQLException {
+
+        // The database of the persistence unit, with Hibernate names, and another table
+        DataSource dataSource = createInMemoryDatabase();
+        this.queryRunner = new QueryRunner(dataSource);
+        this.queryRunner.update("CREATE TABLE BOOK (ID BIGINT PRIMARY KEY, PUBLISHER_ID BIGINT)");
+        this.queryRunner.update("CREATE TABLE BOOK_DETAIL (ID BIGINT PRIMARY KEY, "
+                + "FOREIGN KEY (ID) REFERENCES BOOK(ID))");
+        this.queryRunner.update("CREATE TABLE BOOKPUBLISHER (ID BIGINT IDENTITY PRIMARY KEY)");
+        this.queryRunner.update("CREATE TABLE AUTHOR (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("CREATE TABLE AUTHOR_NICKNAMES (AUTHOR_ID BIGINT, "
+                + "NICKNAMES VARCHAR(50), FOREIGN KEY (AUTHOR_ID) REFERENCES AUTHOR(ID))");
+        this.queryRunner.update("CREATE TABLE AUTHOR_BOOK (AUTHOR_ID BIGINT, BOOKS_ID BIGINT, "
+                + "FOREIGN KEY (AUTHOR_ID) REFERENCES AUTHOR(ID), "
+                + "FOREIGN KEY (BOOKS_ID) REFERENCES BOOK(ID))");
+        this.queryRunner.update("CREATE SEQUENCE BOOK_SEQ");
+        this.queryRunner.update("CREATE SEQUENCE HIBERNATE_SEQUENCE");
+        this.queryRunner.update("CREATE TABLE OTHER_TABLE (ID BIGINT PRIMARY KEY)");
+        this.queryRunner.update("INSERT INTO BOOK VALUES (1, NULL)");
+        this.queryRunner.update("INSERT INTO AUTHOR VALUES (1)");
+        this.queryRunner.update("INSERT INTO AUTHOR_BOOK VALUES (1, 1)");
+        this.queryRunner.update("INSERT INTO OTHER_TABLE VALUES (1)");
+
+        // The persistence unit, with the default naming strategies
+        this.pui = Mockito.mock(PersistenceUnitInfo.class);
+        Mockito.when(this.pui.getManagedClassNames()).thenReturn(Arrays.asList(
+                Author.class.getName(), Book.class.getName(), BookPublisher.class.getName()));
+        Mockito.when(this.pui.getMappingFileNames()).thenReturn(Collections.emptyList());
+        Mockito.when(this.pui.getProperties()).thenReturn(new Properties());
+        this.persistenceUnitManager = Mockito.mock(PersistenceUnitManager.class);
+        Mockito.when(this.persistenceUnitManager.obtainDefaultPersistenceUnitInfo())
+                .thenReturn(this.pui);
+
+        // The bean, with a mocked Chuse service
+        this.checkService = Mockito.mock(CheckService.class);
+        this.bean = new ChuseLocalContainerEntityManagerFactoryBean();
+        this.bean.setDataSource(dataSource);
+        this.bean.setCheckService(this.checkService);
+        this.bean.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "create");
+    }
+
+    /**
+     * Decision test without any change.
+     */
+    @Test
+    public void testDeterminePersistenceUnitInfo_unchanged() {
+
+        // Arrange : No file has changed
+        this.mockChanges(changeSet(Collections.emptyList()));
+
+        // Act : Determine the persistence unit
+        this.bean.determinePersistenceUnitInfo(this.persistenceUnitManager);
+
+        // Assert : The database should not be re-built
+        Assertions.assertEquals("none", this.bean.getJpaPropertyMap().get(HBM2DDL_AUTO_PROPERTY),
+                "The database should not be re-built");
+        Mockito.verify(this.checkService, Mockito.never()).invalidateCheckedFiles(Mockito.any());
+    }
+
+    /**
+     * Decision test with a partial re-build.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDeterminePersistenceUnitInfo_partialRebuild() throws SQLException {
+
+        // Arrange : An entity whose tables are referenced by none of the other ones has changed
+        this.bean.setPartialRebuild(true);
+        this.mockChanges(changeSet(Arrays.asList(classFile(Author.class))));
+
+        // Act : Determine the persistence unit
+        this.bean.determinePersistenceUnitInfo(this.persistenceUnitManager);
+
+        // Assert : Only its tables should have been dropped, to be re-created
+        Assertions.assertEquals("update",
+                this.bean.getJpaPropertyMap().get(HBM2DDL_AUTO_PROPERTY),
+                "The dropped tables should be re-created");
+        Assertions.assertEquals(0L, this.countTables("AUTHOR"),
+                "The table of the entity should have been dropped");
+        Assertions.assertEquals(0L, this.countTables("AUTHOR_BOOK"),
+                "The join table of the entity should have been dropped");
+        Assertions.assertEquals(1L, this.countRows("BOOK"),
+                "The other tables should have been kept");
+    }
+
+    /**
+     * Decision test with a partial re-build, and a table referenced by a kept table.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDeterminePersistenceUnitInfo_partialRebuildReferenced() throws SQLException {
+
+        // Arrange : An entity whose table is referenced by a join table has changed
+        this.bean.setPartialRebuild(true);
+        this.mockChanges(changeSet(Arrays.asList(classFile(Book.class))));
+
+        // Act : Determine the persistence unit
+        this.bean.determinePersistenceUnitInfo(this.persistenceUnitManager);
+
+        // Assert : The whole database should be re-built
+        Assertions.assertEquals("create",
+                this.bean.getJpaPropertyMap().get(HBM2DDL_AUTO_PROPERTY),
+                "The whole database should be re-built");
+        Assertions.assertEquals(1L, this.countTables("BOOK"),
+                "The table should not have been dropped");
+        Mockito.verify(this.checkService).invalidateCheckedFiles(Mockito.any());
+    }
+
+    /**
+     * Decision test with a partial re-build, and the create-drop strategy.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDeterminePersistenceUnitInfo_partialRebuildCreateDrop() throws SQLException {
+
+        // Arrange : The schema is dropped on close
+        this.bean.setPartialRebuild(true);
+        this.bean.getJpaPropertyMap().put(HBM2DDL_AUTO_PROPERTY, "create-drop");
+        this.mockChanges(changeSet(Arrays.asList(classFile(Author.class))));
+
+        // Act : Determine the persistence unit
+        this.bean.determinePersistenceUnitInfo(this.persistenceUnitManager);
+
+        // Assert : The strategy should have been kept
+        Assertions.assertEquals("create-drop",
+                this.bean.getJpaPropertyMap().get(HBM2DDL_AUTO_PROPERTY),
+                "The schema should still be dropped on close");
+        Assertions.assertEquals(1L, this.countTables("AUTHOR"),
+                "The table should not have been dropped");
+    }
+
+    /**
+     * Decision test with a data reload.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDeterminePersistenceUnitInfo_dataReload() throws SQLException {
+
+        // Arrange : Only the import file has changed
+        this.bean.setDataReload(true);
+        this.mockImportFileChange();
+
+        // Act : Determine the persistence unit
+        this.bean.determinePersistenceUnitInfo(this.persistenceUnitManager);
+
+        // Assert : Only the tables of the persistence unit should have been truncated
+        Assertions.assertEquals("none", this.bean.getJpaPropertyMap().get(HBM2DDL_AUTO_PROPERTY),
+                "The schema should be kept");
+        Assertions.assertEquals(0L, this.countRows("BOOK"),
+                "The tables of the persistence unit should have been truncated");
+        Assertions.assertEquals(0L, this.countRows("AUTHOR_BOOK"),
+                "The join tables should have been truncated");
+        Assertions.assertEquals(1L, this.countRows("OTHER_TABLE"),
+                "The other tables should have been kept");
+    }
+
+    /**
+     * Decision test with a data reload, and mapping files.
+     *
+     * @throws SQLException
+     *             SQL Error
+     */
+    @Test
+    public void testDeterminePersistenceUnitInfo_dataReloadMappingFiles() throws SQLException {
+
+        // Arrange : Only the import file has changed, but the tables are mapped by files too
+        this.bean.setDataReload(true);
+        Mockito.when(this.pui.getMappingFileNames()).thenReturn(Arrays.asList("orm.xml"));
+        this.mockImportFileChange();
+
+        // Act : Determine the persistence unit
+        this.bean.determinePersistenceUnitInfo(this.persistenceUnitManager);
+
+        // Assert : The whole database should be re-built
+        Assertions.assertEquals("create",
+                this.bean.getJpaPropertyMap().get(HBM2DDL_AUTO_PROPERTY),
+                "The whole database should be re-built");
+        Assertions.assertEquals(1L, this.countRows("BOOK"),
+                "The tables should not have been truncated");
+    }
+
+    private void mockChanges(final ChangeSet changes) {
+        Mockito.when(this.checkService.checkChanges(Mockito.any())).thenReturn(changes);
+    }
+
+    private void mockImportFileChange() {
+        this.bean.getJpaPropertyMap().put("hibernate.hbm2ddl.import_files", IMPORT_FILE);
+        List<CheckedFile> scriptFiles = Arrays.asList(
+                new CheckedFile(IMPORT_FILE, LocalDateTime.now()));
+        Mockito.when(this.checkService.extractResources(
+                Mockito.eq(Arrays.asList(IMPORT_FILE)), Mockito.any()))
+                .thenReturn(scriptFiles);
+        this.mockChanges(changeSet(scriptFiles));
+    }
+
+    private long countTables(final String table) throws SQLException {
+        return this.queryRunner.query(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME=?",
+                new ScalarHandler<Long>(), table);
+    }
+
+    private long countRows(final String table) throws SQLException {
+        return this.queryRunner.query("SELECT COUNT(*) FROM " + table,
+                new ScalarHandler<Long>());
+    }
+
+    private static ChangeSet changeSet(final List<CheckedFile> modifiedFiles) {
+        return new ChangeSet(Collections.emptyList(), modifiedFiles, Collections.emptyList(),
+                Collections.emptyList());
+    }
+
+    private static CheckedFile classFile(final Class<?> checkedClass) {
+        return new CheckedFile("src/main/java/" + checkedClass.getName().replace('.', '/')
+                + ".java", LocalDateTime.now());
+    }
+
+    private static DataSource createInMemoryDatabase() {
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:" + UUID.randomUUID());
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+}
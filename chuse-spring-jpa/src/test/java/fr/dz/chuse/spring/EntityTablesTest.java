@@ -0,0 +1,92 @@
+package fr.dz.chuse.spring;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import fr.dz.chuse.spring.entity.Author;
+import fr.dz.chuse.spring.entity.Book;
+import fr.dz.chuse.spring.entity.BookPublisher;
+import fr.dz.chuse.spring.entity.Novel;
+
+/**
+ * Tests for the EntityTables.
+ */
+public class EntityTablesTest {
+
+    /**
+     * Tables test with the Hibernate naming strategies.
+     */
+    @Test
+    public void testOf_hibernateNaming() {
+
+        // Act : Find the tables of the entities
+        Set<String> authorTables = EntityTables.of(Author.class, false);
+        Set<String> bookTables = EntityTables.of(Book.class, false);
+        Set<String> novelTables = EntityTables.of(Novel.class, false);
+        Set<String> publisherTables = EntityTables.of(BookPublisher.class, false);
+
+        // Assert : Join tables should be named after the tables, and names should be kept as is
+        Assertions.assertEquals(names("AUTHOR", "Author_nicknames", "AUTHOR_Book"), authorTables,
+                "The collection and join tables should be found");
+        Assertions.assertEquals(names("Book", "BOOK_DETAIL"), bookTables,
+                "The secondary table should be found");
+        Assertions.assertEquals(names("Book"), novelTables,
+                "The table of the parent entity should be found");
+        Assertions.assertEquals(names("BookPublisher", "Book"), publisherTables,
+                "The table of the join column should be found");
+    }
+
+    /**
+     * Tables test with the Spring Boot naming strategies.
+     */
+    @Test
+    public void testOf_springNaming() {
+
+        // Act : Find the tables of the entities
+        Set<String> authorTables = EntityTables.of(Author.class, true);
+        Set<String> bookTables = EntityTables.of(Book.class, true);
+        Set<String> publisherTables = EntityTables.of(BookPublisher.class, true);
+
+        // Assert : Join tables should be named after the attribute, and names in snake case
+        Assertions.assertEquals(names("author", "author_nicknames", "author_books"),
+                authorTables, "The collection and join tables should be found");
+        Assertions.assertEquals(names("book", "book_detail"), bookTables,
+                "The secondary table should be found");
+        Assertions.assertEquals(names("book_publisher", "book"), publisherTables,
+                "The table of the join column should be found");
+    }
+
+    /**
+     * Sequences test with both naming strategies.
+     */
+    @Test
+    public void testSequencesOf() {
+
+        // Act : Find the sequences of the entities
+        Set<String> authorSequences = EntityTables.sequencesOf(Author.class, false);
+        Set<String> bookSequences = EntityTables.sequencesOf(Book.class, false);
+        Set<String> springBookSequences = EntityTables.sequencesOf(Book.class, true);
+        Set<String> novelSequences = EntityTables.sequencesOf(Novel.class, false);
+        Set<String> publisherSequences = EntityTables.sequencesOf(BookPublisher.class, false);
+
+        // Assert : Only the generators and the default sequence should be found
+        Assertions.assertEquals(names("hibernate_sequence"), authorSequences,
+                "The default sequence should be found");
+        Assertions.assertEquals(names("BOOK_SEQ"), bookSequences,
+                "The generator sequence should be found");
+        Assertions.assertEquals(names("book_seq"), springBookSequences,
+                "The generator sequence should be in snake case");
+        Assertions.assertTrue(novelSequences.isEmpty(),
+                "The sequences of the parent entity should not be found");
+        Assertions.assertTrue(publisherSequences.isEmpty(),
+                "The identity column should not have a sequence");
+    }
+
+    private static Set<String> names(final String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+}
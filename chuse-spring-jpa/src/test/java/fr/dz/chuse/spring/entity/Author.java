@@ -0,0 +1,29 @@
+package fr.dz.chuse.spring.entity;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.ElementCollection;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.ManyToMany;
+import javax.persistence.Table;
+
+/**
+ * Test entity : a named table, with a collection table and a join table.
+ */
+@Entity
+@Table(name = "AUTHOR")
+public class Author {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+
+    @ElementCollection
+    private Set<String> nicknames;
+
+    @ManyToMany
+    private List<Book> books;
+}
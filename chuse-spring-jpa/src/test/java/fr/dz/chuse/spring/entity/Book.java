@@ -0,0 +1,21 @@
+package fr.dz.chuse.spring.entity;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SecondaryTable;
+import javax.persistence.SequenceGenerator;
+
+/**
+ * Test entity : a secondary table, and a sequence generator.
+ */
+@Entity
+@SecondaryTable(name = "BOOK_DETAIL")
+public class Book {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookGenerator")
+    @SequenceGenerator(name = "bookGenerator", sequenceName = "BOOK_SEQ")
+    private Long id;
+}
@@ -0,0 +1,26 @@
+package fr.dz.chuse.spring.entity;
+
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToMany;
+
+/**
+ * Test entity : a unidirectional one-to-many association, with a join column in the target
+ * table, and an identity column.
+ */
+@Entity
+public class BookPublisher {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @OneToMany
+    @JoinColumn(name = "PUBLISHER_ID")
+    private List<Book> books;
+}
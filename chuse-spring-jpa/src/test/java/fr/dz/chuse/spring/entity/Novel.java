@@ -0,0 +1,12 @@
+package fr.dz.chuse.spring.entity;
+
+import javax.persistence.Entity;
+
+/**
+ * Test entity : stored in the table of its parent (single table inheritance).
+ */
+@Entity
+public class Novel extends Book {
+
+    private String genre;
+}